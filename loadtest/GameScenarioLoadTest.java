@@ -0,0 +1,220 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ゲームシナリオの負荷試験
+ *
+ * MockGeminiServer を組み込みで起動し、仮想ユーザーごとに
+ * 「新しいゲーム → 質問10回 → ヒント3回 → 回答2回」を実行して、
+ * スループットと操作ごとの p50 / p95 / p99 を計測する（実際のGemini APIは呼び出さない）。
+ * 各操作の時間はPOSTとリダイレクト先の画面表示（GET）の合計。
+ *
+ * 実行方法（Java 17以上）:
+ *   1. javac -encoding UTF-8 -d target/loadtest loadtest/MockGeminiServer.java loadtest/GameScenarioLoadTest.java
+ *   2. java -Dfile.encoding=UTF-8 -cp target/loadtest GameScenarioLoadTest \
+ *           --users 200 --concurrency 50 --latency lognormal:300:0.5 --error-rate 0.01
+ *   3. 代替サーバーに向けてアプリケーションを起動
+ *      java -jar target/flag-quiz-jv-0.0.1-SNAPSHOT.jar --gemini.api.key=loadtest \
+ *           --gemini.api.base-url=http://127.0.0.1:19090/v1beta
+ *   4. アプリケーションの起動を検知すると負荷試験が始まる
+ *
+ * オプション:
+ *   --target            アプリケーションのURL（既定 http://localhost:8080）
+ *   --users             仮想ユーザー数（既定 200）
+ *   --concurrency       同時に実行する仮想ユーザー数（既定 50）
+ *   --unique-questions  true の場合はユーザーごとに異なる質問を送り、回答キャッシュに当たらないようにする（既定 true）
+ *   --mock              false の場合は代替サーバーを起動しない（別途起動した MockGeminiServer を使う場合、既定 true）
+ *   --port / --latency / --error-rate / --error-status / --answers  代替サーバーのオプション（MockGeminiServer を参照）
+ */
+public class GameScenarioLoadTest {
+
+    // 1ユーザーあたりの操作
+    private static final String[] QUESTIONS = {
+        "この国は海に面していますか？", "この国はアジアにありますか？", "この国はヨーロッパにありますか？",
+        "この国の人口は1億人以上ですか？", "この国は赤道より南にありますか？", "この国の国旗に赤が含まれていますか？",
+        "この国は島国ですか？", "この国の公用語は英語ですか？", "この国は砂漠がありますか？", "この国は王国ですか？",
+    };
+    private static final String[] HINT_TYPES = {"主食", "面積", "言語"};
+    private static final String[] ANSWERS = {"フランス", "ブラジル"};
+
+    private static final String[] OPERATIONS = {"new_game", "ask_question", "get_hint", "submit_answer"};
+
+    // 全ユーザーで共有するHTTPクライアント（セッションはCookieヘッダーで区別する）
+    private static final HttpClient CLIENT = HttpClient.newBuilder()
+        .followRedirects(HttpClient.Redirect.NEVER)
+        .connectTimeout(Duration.ofSeconds(10))
+        .build();
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = MockGeminiServer.parseOptions(args);
+        String target = options.getOrDefault("target", "http://localhost:8080");
+        int users = Integer.parseInt(options.getOrDefault("users", "200"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "50"));
+        boolean uniqueQuestions = Boolean.parseBoolean(options.getOrDefault("unique-questions", "true"));
+
+        MockGeminiServer mock = null;
+        if (Boolean.parseBoolean(options.getOrDefault("mock", "true"))) {
+            mock = MockGeminiServer.start(options);
+            System.out.printf("Gemini API代替サーバー: http://127.0.0.1:%d/v1beta (遅延 %s, エラー率 %s)%n",
+                mock.port(), options.getOrDefault("latency", "fixed:0"), options.getOrDefault("error-rate", "0"));
+        }
+
+        waitForTarget(target);
+        long mockRequestsBefore = mock != null ? mock.requests() : 0;
+        long mockErrorsBefore = mock != null ? mock.errors() : 0;
+
+        // 操作ごとの所要時間（マイクロ秒）
+        Map<String, List<Long>> latencies = new LinkedHashMap<>();
+        for (String operation : OPERATIONS) {
+            latencies.put(operation, Collections.synchronizedList(new ArrayList<>()));
+        }
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+
+        System.out.printf("負荷試験開始: %d ユーザー（同時 %d）→ %s%n", users, concurrency, target);
+        long started = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < users; i++) {
+                int userNo = i;
+                futures.add(executor.submit(() -> {
+                    try {
+                        runScenario(target, userNo, uniqueQuestions, latencies);
+                        completed.incrementAndGet();
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                        System.err.println("ユーザー" + userNo + "のシナリオが失敗しました: " + e.getMessage());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        long elapsedMs = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+
+        int operations = latencies.values().stream().mapToInt(List::size).sum();
+        System.out.println("===== 結果 =====");
+        System.out.printf("完了ユーザー: %d / 失敗: %d%n", completed.get(), failures.get());
+        System.out.printf("総所要時間: %d ms%n", elapsedMs);
+        System.out.printf("スループット: %.1f 操作/秒, %.2f ユーザー/秒%n",
+            operations * 1000.0 / elapsedMs, completed.get() * 1000.0 / elapsedMs);
+        System.out.printf("%-14s %7s %9s %9s %9s %9s%n", "操作", "件数", "p50(ms)", "p95(ms)", "p99(ms)", "max(ms)");
+        for (Map.Entry<String, List<Long>> entry : latencies.entrySet()) {
+            List<Long> sorted = new ArrayList<>(entry.getValue());
+            Collections.sort(sorted);
+            System.out.printf("%-14s %7d %9.1f %9.1f %9.1f %9.1f%n", entry.getKey(), sorted.size(),
+                percentile(sorted, 50) / 1000.0, percentile(sorted, 95) / 1000.0,
+                percentile(sorted, 99) / 1000.0, percentile(sorted, 100) / 1000.0);
+        }
+        if (mock != null) {
+            System.out.printf("Gemini API代替サーバーへの呼び出し: %d 件（エラー応答 %d 件）%n",
+                mock.requests() - mockRequestsBefore, mock.errors() - mockErrorsBefore);
+            mock.stop();
+        }
+    }
+
+    /**
+     * 1ユーザー分のシナリオを実行
+     */
+    private static void runScenario(String target, int userNo, boolean uniqueQuestions,
+                                     Map<String, List<Long>> latencies) throws IOException, InterruptedException {
+        String cookie = step(target, "new_game", "", null, latencies);
+        for (String question : QUESTIONS) {
+            // 回答キャッシュに当たらないよう、ユーザーごとに異なる質問にする
+            String text = uniqueQuestions ? "（" + userNo + "）" + question : question;
+            step(target, "ask_question", "question=" + encode(text), cookie, latencies);
+        }
+        for (String hintType : HINT_TYPES) {
+            step(target, "get_hint", "hintType=" + encode(hintType), cookie, latencies);
+        }
+        for (String answer : ANSWERS) {
+            step(target, "submit_answer", "answer=" + encode(answer), cookie, latencies);
+        }
+    }
+
+    /**
+     * フォームをPOSTし、リダイレクト先の画面を取得するまでを1操作として計測
+     * @return セッションCookie（応答に含まれない場合は送信したCookie）
+     */
+    private static String step(String target, String operation, String form, String cookie,
+                               Map<String, List<Long>> latencies) throws IOException, InterruptedException {
+        long started = System.nanoTime();
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(target + "/" + operation))
+            .timeout(Duration.ofMinutes(2))
+            .header("Content-Type", "application/x-www-form-urlencoded")
+            .POST(HttpRequest.BodyPublishers.ofString(form));
+        if (cookie != null) {
+            builder.header("Cookie", cookie);
+        }
+        HttpResponse<Void> response = CLIENT.send(builder.build(), HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 302) {
+            throw new IOException(operation + ": 想定外のステータス " + response.statusCode());
+        }
+        String session = response.headers().firstValue("Set-Cookie")
+            .map(value -> value.split(";", 2)[0])
+            .orElse(cookie);
+
+        String location = response.headers().firstValue("Location").orElse("/");
+        HttpRequest.Builder page = HttpRequest.newBuilder(URI.create(target).resolve(location))
+            .timeout(Duration.ofMinutes(2))
+            .GET();
+        if (session != null) {
+            page.header("Cookie", session);
+        }
+        HttpResponse<Void> pageResponse = CLIENT.send(page.build(), HttpResponse.BodyHandlers.discarding());
+        if (pageResponse.statusCode() != 200) {
+            throw new IOException(operation + ": 画面の取得に失敗 " + pageResponse.statusCode());
+        }
+        latencies.get(operation).add((System.nanoTime() - started) / 1_000);
+        return session;
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static void waitForTarget(String target) throws InterruptedException {
+        HttpClient client = HttpClient.newHttpClient();
+        System.out.println("アプリケーションの起動を待機しています: " + target);
+        while (true) {
+            try {
+                HttpResponse<Void> response = client.send(
+                    HttpRequest.newBuilder(URI.create(target + "/actuator/health")).build(),
+                    HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // 起動待ち
+            }
+            Thread.sleep(500);
+        }
+    }
+
+    private static long percentile(List<Long> sorted, int percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+    }
+}
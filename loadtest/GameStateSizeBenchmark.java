@@ -0,0 +1,96 @@
+import com.example.flagquiz.model.GameState;
+import com.example.flagquiz.model.GameStateCodec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * セッションあたりのゲーム状態サイズの計測
+ *
+ * 出題直後・途中・終了間際の各状態について、以下のバイト数を比較する。
+ *   - 従来形式: 文字列3つとArrayList2つを持つBeanをJavaシリアライズした場合
+ *   - Javaシリアライズ: GameState（Externalizable）をObjectOutputStreamで書き込んだ場合
+ *   - コーデック: GameStateCodec.encode の出力
+ *
+ * 実行方法:
+ *   mvn -B compile
+ *   java -Dfile.encoding=UTF-8 -cp target/classes loadtest/GameStateSizeBenchmark.java
+ */
+public class GameStateSizeBenchmark {
+
+    /**
+     * 従来のGameStateと同じフィールド構成のBean
+     */
+    static class LegacyGameState implements Serializable {
+        String currentCountryEnglish;
+        String currentCountryJapanese;
+        String countryFlag;
+        int answersLeft = 2;
+        int questionsLeft = 10;
+        int hintsLeft = 3;
+        List<String> hintsUsed = new ArrayList<>();
+        List<String> gameLog = new ArrayList<>();
+    }
+
+    private static final String[] QUESTIONS = {
+        "この国は南半球にありますか？",
+        "この国は海に面していますか？",
+        "この国の人口は1億人以上ですか？",
+        "この国の国旗に赤色は含まれますか？",
+        "この国はヨーロッパにありますか？",
+        "この国の公用語は英語ですか？",
+        "この国は島国ですか？",
+        "この国は夏季オリンピックを開催したことがありますか？",
+        "この国の首都は海沿いにありますか？",
+        "この国はEUに加盟していますか？"
+    };
+
+    public static void main(String[] args) throws IOException {
+        System.out.printf("%-28s %10s %14s %10s%n", "状態", "従来形式", "Javaシリアライズ", "コーデック");
+        report("出題直後", "France", "フランス", "https://flagcdn.com/h240/fr.png", 0, 0, 2);
+        report("質問5回・ヒント2回", "France", "フランス", "https://flagcdn.com/h240/fr.png", 5, 2, 2);
+        report("質問10回・ヒント3回・誤答1回", "France", "フランス", "https://flagcdn.com/h240/fr.png", 10, 3, 1);
+        report("カタログ外の国（出題直後）", "Republic of Atlantis", "アトランティス", "https://flagcdn.com/w640/xx.png", 0, 0, 2);
+    }
+
+    private static void report(String label, String english, String japanese, String flag,
+                               int questions, int hints, int answersLeft) throws IOException {
+        GameState state = new GameState(english, japanese, flag);
+        LegacyGameState legacy = new LegacyGameState();
+        legacy.currentCountryEnglish = english;
+        legacy.currentCountryJapanese = japanese;
+        legacy.countryFlag = flag;
+
+        for (int i = 0; i < questions; i++) {
+            String answer = i % 2 == 0 ? "はい" : "いいえ";
+            state.addLog(QUESTIONS[i], answer);
+            state.setQuestionsLeft(state.getQuestionsLeft() - 1);
+            legacy.gameLog.add("Q: " + QUESTIONS[i] + " → A: " + answer);
+            legacy.questionsLeft--;
+        }
+        for (int i = 0; i < hints; i++) {
+            String hintType = GameState.HINT_TYPES.get(i);
+            state.markHintUsed(hintType);
+            state.setHintsLeft(state.getHintsLeft() - 1);
+            legacy.hintsUsed.add(hintType);
+            legacy.hintsLeft--;
+        }
+        state.setAnswersLeft(answersLeft);
+        legacy.answersLeft = answersLeft;
+
+        System.out.printf("%-28s %10d %14d %10d%n", label,
+            serializedSize(legacy), serializedSize(state), GameStateCodec.encode(state).length);
+    }
+
+    private static int serializedSize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.size();
+    }
+}
@@ -0,0 +1,340 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Gemini APIの代替サーバー（負荷試験用）
+ *
+ * generateContent / streamGenerateContent（alt=sse）に、指定した遅延分布・エラー率で
+ * プロンプトの種類に応じた定型の回答を返す。アプリケーションは gemini.api.base-url をこのサーバーに向けて起動する。
+ *
+ * 実行方法:
+ *   java -Dfile.encoding=UTF-8 loadtest/MockGeminiServer.java --port 19090 --latency lognormal:400:0.5 --error-rate 0.01
+ *   java -jar target/flag-quiz-jv-0.0.1-SNAPSHOT.jar --gemini.api.key=loadtest \
+ *        --gemini.api.base-url=http://127.0.0.1:19090/v1beta
+ *
+ * オプション:
+ *   --port          待ち受けポート（既定 19090）
+ *   --latency       応答までの遅延の分布（ミリ秒、既定 fixed:0）
+ *                     fixed:<ms> | uniform:<min>:<max> | normal:<mean>:<stddev> | lognormal:<median>:<sigma>
+ *   --error-rate    エラーを返す割合 0〜1（既定 0）
+ *   --error-status  エラー時のHTTPステータス（既定 503）
+ *   --answers       定型回答ファイル（「キーワード=回答」の行。プロンプトにキーワードを含む場合はその回答を優先する）
+ *   --threads       リクエスト処理スレッド数（既定 256）
+ *
+ * GET /stats で受信数・エラー数を返す。
+ */
+public class MockGeminiServer {
+
+    // 国データ生成への回答候補（英語名, 日本語名, ISOコード）
+    private static final String[][] COUNTRIES = {
+        {"Japan", "日本", "jp"}, {"France", "フランス", "fr"}, {"Brazil", "ブラジル", "br"},
+        {"Kenya", "ケニア", "ke"}, {"Canada", "カナダ", "ca"}, {"Thailand", "タイ", "th"},
+        {"Norway", "ノルウェー", "no"}, {"Peru", "ペルー", "pe"}, {"Egypt", "エジプト", "eg"},
+        {"New Zealand", "ニュージーランド", "nz"},
+    };
+
+    // まとめて送信された依頼の区切り（GeminiBatcherの形式）
+    private static final Pattern BATCH_ITEM = Pattern.compile("\\n### 依頼\\d+\\n");
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Latency latency;
+    private final double errorRate;
+    private final int errorStatus;
+    private final Map<String, String> answers;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    /**
+     * 遅延の分布
+     */
+    public interface Latency {
+        long sampleMillis();
+
+        /**
+         * 「種類:パラメーター」形式の指定から分布を生成
+         */
+        static Latency parse(String spec) {
+            String[] parts = spec.split(":");
+            double a = parts.length > 1 ? Double.parseDouble(parts[1]) : 0;
+            double b = parts.length > 2 ? Double.parseDouble(parts[2]) : 0;
+            return switch (parts[0]) {
+                case "fixed" -> () -> (long) a;
+                case "uniform" -> () -> (long) (a + ThreadLocalRandom.current().nextDouble() * (b - a));
+                case "normal" -> () -> Math.max(0, Math.round(a + ThreadLocalRandom.current().nextGaussian() * b));
+                case "lognormal" -> () -> Math.round(a * Math.exp(b * ThreadLocalRandom.current().nextGaussian()));
+                default -> throw new IllegalArgumentException("不明な遅延分布: " + spec);
+            };
+        }
+    }
+
+    private MockGeminiServer(int port, Latency latency, double errorRate, int errorStatus,
+                             Map<String, String> answers, int threads) throws IOException {
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.errorStatus = errorStatus;
+        this.answers = answers;
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "mock-gemini");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 4096);
+        server.setExecutor(executor);
+        server.createContext("/stats", this::handleStats);
+        server.createContext("/", this::handleGenerate);
+    }
+
+    /**
+     * サーバーを起動
+     * @param options コマンドラインと同じ名前のオプション（先頭の -- は除く）
+     * @return 起動したサーバー
+     */
+    public static MockGeminiServer start(Map<String, String> options) throws IOException {
+        Map<String, String> answers = new LinkedHashMap<>();
+        String answersFile = options.get("answers");
+        if (answersFile != null) {
+            for (String line : Files.readAllLines(Path.of(answersFile), StandardCharsets.UTF_8)) {
+                int separator = line.indexOf('=');
+                if (separator > 0 && !line.startsWith("#")) {
+                    answers.put(line.substring(0, separator).trim(), line.substring(separator + 1).trim().replace("\\n", "\n"));
+                }
+            }
+        }
+
+        MockGeminiServer mock = new MockGeminiServer(
+            Integer.parseInt(options.getOrDefault("port", "19090")),
+            Latency.parse(options.getOrDefault("latency", "fixed:0")),
+            Double.parseDouble(options.getOrDefault("error-rate", "0")),
+            Integer.parseInt(options.getOrDefault("error-status", "503")),
+            answers,
+            Integer.parseInt(options.getOrDefault("threads", "256")));
+        mock.server.start();
+        return mock;
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public long requests() {
+        return requests.get();
+    }
+
+    public long errors() {
+        return errors.get();
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = parseOptions(args);
+        MockGeminiServer mock = start(options);
+        System.out.printf("Gemini API代替サーバー: http://127.0.0.1:%d/v1beta (遅延 %s, エラー率 %s)%n",
+            mock.port(), options.getOrDefault("latency", "fixed:0"), options.getOrDefault("error-rate", "0"));
+    }
+
+    private void handleGenerate(HttpExchange exchange) throws IOException {
+        try (exchange; InputStream in = exchange.getRequestBody()) {
+            String prompt = extractPrompt(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            requests.incrementAndGet();
+            sleep(latency.sampleMillis());
+
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                errors.incrementAndGet();
+                send(exchange, errorStatus, "application/json",
+                    "{\"error\":{\"code\":" + errorStatus + ",\"message\":\"mock error\",\"status\":\"UNAVAILABLE\"}}");
+                return;
+            }
+
+            String text = answerTo(prompt);
+            if (exchange.getRequestURI().getPath().endsWith(":streamGenerateContent")) {
+                sendStream(exchange, text);
+            } else {
+                send(exchange, 200, "application/json", candidateJson(text));
+            }
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            send(exchange, 200, "application/json",
+                "{\"requests\":" + requests.get() + ",\"errors\":" + errors.get() + "}");
+        }
+    }
+
+    /**
+     * プロンプトの種類に応じた定型の回答
+     */
+    String answerTo(String prompt) {
+        for (Map.Entry<String, String> answer : answers.entrySet()) {
+            if (prompt.contains(answer.getKey())) {
+                return answer.getValue();
+            }
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (prompt.contains("件の依頼に")) {
+            // まとめて送信された依頼には、それぞれの回答をJSON配列で返す
+            String[] items = BATCH_ITEM.split(prompt);
+            List<String> results = new ArrayList<>();
+            for (int i = 1; i < items.length; i++) {
+                results.add("\"" + escape(answerTo(items[i])) + "\"");
+            }
+            return "```json\n[" + String.join(", ", results) + "]\n```";
+        }
+        if (prompt.contains("JSONのみで回答")) {
+            return "{\"valid\": true, \"answer\": \"" + (random.nextBoolean() ? "はい" : "いいえ") + "\"}";
+        }
+        if (prompt.contains("条件を満たしているか")) {
+            return "Yes";
+        }
+        if (prompt.contains("国名（英語）")) {
+            String[] country = COUNTRIES[random.nextInt(COUNTRIES.length)];
+            return "国名（英語）: " + country[0] + "\n国名（日本語）: " + country[1]
+                + "\n国旗URL: https://flagcdn.com/h240/" + country[2] + ".png";
+        }
+        if (prompt.contains("正解の国")) {
+            return "不正解";
+        }
+        if (prompt.contains("主食")) {
+            return "米が主食です。";
+        }
+        if (prompt.contains("面積")) {
+            return "日本の約1.5倍の面積です。";
+        }
+        if (prompt.contains("公用語")) {
+            return "英語が公用語です。";
+        }
+        if (prompt.contains("はい」または「いいえ")) {
+            return random.nextBoolean() ? "はい" : "いいえ";
+        }
+        return "情報を取得できませんでした。";
+    }
+
+    private static void sendStream(HttpExchange exchange, String text) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            // 4文字ずつの断片に分けて送る
+            for (int i = 0; i < text.length(); i += 4) {
+                String chunk = text.substring(i, Math.min(text.length(), i + 4));
+                out.write(("data: " + candidateJson(chunk) + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String candidateJson(String text) {
+        return "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"" + escape(text)
+            + "\"}],\"role\":\"model\"},\"finishReason\":\"STOP\"}],\"modelVersion\":\"mock\"}";
+    }
+
+    /**
+     * リクエストボディから contents[0].parts[0].text を取り出す
+     */
+    private static String extractPrompt(String body) {
+        int key = body.indexOf("\"text\"");
+        if (key < 0) {
+            return "";
+        }
+        int start = body.indexOf('"', body.indexOf(':', key) + 1) + 1;
+        StringBuilder prompt = new StringBuilder();
+        for (int i = start; i < body.length(); i++) {
+            char c = body.charAt(i);
+            if (c == '"') {
+                break;
+            }
+            if (c == '\\' && i + 1 < body.length()) {
+                char escaped = body.charAt(++i);
+                switch (escaped) {
+                    case 'n' -> prompt.append('\n');
+                    case 'r' -> prompt.append('\r');
+                    case 't' -> prompt.append('\t');
+                    case 'b' -> prompt.append('\b');
+                    case 'f' -> prompt.append('\f');
+                    case 'u' -> {
+                        prompt.append((char) Integer.parseInt(body.substring(i + 1, i + 5), 16));
+                        i += 4;
+                    }
+                    default -> prompt.append(escaped);
+                }
+            } else {
+                prompt.append(c);
+            }
+        }
+        return prompt.toString();
+    }
+
+    private static String escape(String text) {
+        StringBuilder escaped = new StringBuilder(text.length() + 16);
+        for (char c : text.toCharArray()) {
+            switch (c) {
+                case '"' -> escaped.append("\\\"");
+                case '\\' -> escaped.append("\\\\");
+                case '\n' -> escaped.append("\\n");
+                case '\r' -> escaped.append("\\r");
+                case '\t' -> escaped.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        escaped.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        escaped.append(c);
+                    }
+                }
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        return options;
+    }
+}
@@ -0,0 +1,208 @@
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 同時セッション数の負荷試験
+ *
+ * 一定の遅延を返すGemini APIのスタブを起動し、多数のセッションから同時に
+ * 「新しいゲーム → 質問」を実行して、完了までの時間と上流への同時呼び出し数を計測する。
+ * 仮想スレッドモードの有無でアプリケーションを起動し直し、結果を比較する。
+ *
+ * 実行方法（Java 17でも実行できるが、負荷をかける側・スタブの仮想スレッドはJava 21以上でのみ使用する）:
+ *   1. java -Dfile.encoding=UTF-8 loadtest/SessionCapacityLoadTest.java --sessions 400 --stub-delay-ms 3000
+ *   2. 表示されるポートを指定してアプリケーションを起動
+ *      java -jar target/flag-quiz-jv-0.0.1-SNAPSHOT.jar --gemini.api.key=loadtest \
+ *           --gemini.api.base-url=http://127.0.0.1:19090/v1beta \
+ *           --gemini.http.max-in-flight=2048 --gemini.http.max-queued=4096 \
+ *           [--spring.profiles.active=virtual-threads]
+ *   3. アプリケーションの起動を検知すると負荷試験が始まる
+ */
+public class SessionCapacityLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        String target = options.getOrDefault("target", "http://localhost:8080");
+        int sessions = Integer.parseInt(options.getOrDefault("sessions", "400"));
+        int stubPort = Integer.parseInt(options.getOrDefault("stub-port", "19090"));
+        long stubDelayMs = Long.parseLong(options.getOrDefault("stub-delay-ms", "3000"));
+
+        // 一定時間待ってから応答するGemini APIスタブ
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger peakInFlight = new AtomicInteger();
+        HttpServer stub = HttpServer.create(new InetSocketAddress("127.0.0.1", stubPort), 4096);
+        stub.setExecutor(newPerTaskExecutor());
+        stub.createContext("/", exchange -> {
+            int current = inFlight.incrementAndGet();
+            peakInFlight.accumulateAndGet(current, Math::max);
+            try (InputStream in = exchange.getRequestBody()) {
+                String prompt = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                Thread.sleep(stubDelayMs);
+                byte[] body = geminiResponse(prompt.contains("条件を満たしているか") ? "Yes" : "はい");
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+        stub.start();
+        System.out.printf("Gemini APIスタブ: http://127.0.0.1:%d/v1beta (遅延 %dms)%n", stubPort, stubDelayMs);
+
+        waitForTarget(target);
+        peakInFlight.set(0);
+
+        // 各セッションを別々のスレッド（Java 21以上では仮想スレッド）で同時に実行
+        System.out.printf("負荷試験開始: %d セッション → %s%n", sessions, target);
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger failures = new AtomicInteger();
+        long started = System.nanoTime();
+        ExecutorService executor = newPerTaskExecutor();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < sessions; i++) {
+                int sessionNo = i;
+                futures.add(executor.submit(() -> {
+                    try {
+                        latencies.add(runSession(target, sessionNo));
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+        stub.stop(0);
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        System.out.println("===== 結果 =====");
+        System.out.printf("成功セッション: %d / 失敗: %d%n", sorted.size(), failures.get());
+        System.out.printf("総所要時間: %d ms (%.1f セッション/秒)%n", elapsedMs, sorted.size() * 1000.0 / elapsedMs);
+        System.out.printf("セッション所要時間 p50: %d ms, p95: %d ms, p99: %d ms, max: %d ms%n",
+            percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99), percentile(sorted, 100));
+        System.out.printf("上流への最大同時呼び出し数: %d%n", peakInFlight.get());
+    }
+
+    // 全セッションで共有するHTTPクライアント（セッションはCookieヘッダーで区別する）
+    private static final HttpClient CLIENT = HttpClient.newBuilder()
+        .followRedirects(HttpClient.Redirect.NEVER)
+        .connectTimeout(Duration.ofSeconds(10))
+        .build();
+
+    /**
+     * 1セッション分の操作（新しいゲーム → 質問）を実行
+     * @return 所要時間（ミリ秒）
+     */
+    private static long runSession(String target, int sessionNo) throws IOException, InterruptedException {
+        long started = System.nanoTime();
+        String cookie = post(target + "/new_game", "", null);
+        // キャッシュに当たらないよう、セッションごとに異なる質問を送る
+        String question = "セッション" + sessionNo + "の国は海に面していますか？";
+        post(target + "/ask_question", "question=" + URLEncoder.encode(question, StandardCharsets.UTF_8), cookie);
+        return (System.nanoTime() - started) / 1_000_000;
+    }
+
+    /**
+     * フォームをPOSTし、リダイレクト応答であることを確認
+     * @return セッションCookie（応答に含まれない場合は送信したCookie）
+     */
+    private static String post(String url, String form, String cookie) throws IOException, InterruptedException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+            .timeout(Duration.ofMinutes(2))
+            .header("Content-Type", "application/x-www-form-urlencoded")
+            .POST(HttpRequest.BodyPublishers.ofString(form));
+        if (cookie != null) {
+            builder.header("Cookie", cookie);
+        }
+        HttpResponse<Void> response = CLIENT.send(builder.build(), HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 302) {
+            throw new IOException("想定外のステータス: " + response.statusCode());
+        }
+        return response.headers().firstValue("Set-Cookie")
+            .map(value -> value.split(";", 2)[0])
+            .orElse(cookie);
+    }
+
+    /**
+     * タスクごとにスレッドを作るExecutor
+     * Java 21以上では仮想スレッド、それ以前はプラットフォームスレッドを使う（Java 17でもコンパイルできるよう実行時に切り替える）
+     */
+    private static ExecutorService newPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.out.println("仮想スレッドを使用できないため、プラットフォームスレッドで実行します（Java " + Runtime.version().feature() + "）");
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    private static void waitForTarget(String target) throws InterruptedException {
+        HttpClient client = HttpClient.newHttpClient();
+        System.out.println("アプリケーションの起動を待機しています: " + target);
+        while (true) {
+            try {
+                HttpResponse<Void> response = client.send(
+                    HttpRequest.newBuilder(URI.create(target + "/actuator/health")).build(),
+                    HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // 起動待ち
+            }
+            Thread.sleep(500);
+        }
+    }
+
+    private static byte[] geminiResponse(String text) {
+        String json = "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"" + text + "\"}],\"role\":\"model\"}}]}";
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long percentile(List<Long> sorted, int percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        return options;
+    }
+}
@@ -0,0 +1,122 @@
+#!/usr/bin/env bash
+#
+# 起動時間の計測
+#
+# アプリケーションを指定回数起動し、起動開始からトップページ（/）が200を返すまでの時間
+# （time-to-first-request）と、その時点の常駐メモリ（RSS）を計測する。
+#
+# 実行方法:
+#   # ローカルのコマンドを計測（コマンドは PORT 環境変数のポートで待ち受けること）
+#   loadtest/startup-benchmark.sh -n 5 -- java -jar target/flag-quiz-jv-0.0.1-SNAPSHOT.jar
+#
+#   # コンテナイメージを計測（docker run の追加オプションは -- の後に指定）
+#   docker build -t flag-quiz .
+#   loadtest/startup-benchmark.sh -n 5 --image flag-quiz -- -e GEMINI_API_KEY=dummy
+#
+# オプション:
+#   -n RUNS     起動回数（既定 5）
+#   -p PORT     待ち受けポート（既定 18080）
+#   -u PATH     初回リクエストのパス（既定 /）
+#   -t SECONDS  1回あたりの起動待ちの上限（既定 120）
+#   --image IMG コマンドの代わりにコンテナイメージを起動する
+#
+set -euo pipefail
+
+RUNS=5
+PORT=18080
+URL_PATH=/
+TIMEOUT=120
+IMAGE=
+
+while [[ $# -gt 0 ]]; do
+    case "$1" in
+        -n) RUNS=$2; shift 2 ;;
+        -p) PORT=$2; shift 2 ;;
+        -u) URL_PATH=$2; shift 2 ;;
+        -t) TIMEOUT=$2; shift 2 ;;
+        --image) IMAGE=$2; shift 2 ;;
+        --) shift; break ;;
+        *) echo "不明なオプション: $1" >&2; exit 2 ;;
+    esac
+done
+
+if [[ -z "$IMAGE" && $# -eq 0 ]]; then
+    echo "計測するコマンド（-- の後）または --image を指定してください" >&2
+    exit 2
+fi
+
+export PORT
+LOG=$(mktemp)
+trap 'rm -f "$LOG"' EXIT
+
+now_ms() {
+    echo $(( $(date +%s%N) / 1000000 ))
+}
+
+# プロセスとその子プロセスのRSS合計（KB）
+tree_rss_kb() {
+    local pids
+    pids=$(ps -o pid= --ppid "$1" 2>/dev/null || true)
+    ps -o rss= -p "$1" $pids 2>/dev/null | awk '{ sum += $1 } END { print sum + 0 }'
+}
+
+# docker stats のメモリ使用量（例: 180.5MiB）をKBに換算
+docker_rss_kb() {
+    docker stats --no-stream --format '{{.MemUsage}}' "$1" | awk -F' / ' '{
+        value = $1; unit = value; sub(/[0-9.]+/, "", unit); sub(/[A-Za-z]+/, "", value)
+        factor = (unit == "GiB") ? 1048576 : (unit == "MiB") ? 1024 : (unit == "KiB") ? 1 : 1 / 1024
+        printf "%d\n", value * factor
+    }'
+}
+
+results=()
+for run in $(seq 1 "$RUNS"); do
+    started=$(now_ms)
+    if [[ -n "$IMAGE" ]]; then
+        container=$(docker run -d --rm -p "$PORT:$PORT" -e PORT="$PORT" "$@" "$IMAGE")
+    else
+        "$@" > "$LOG" 2>&1 &
+        pid=$!
+    fi
+
+    ttfr=
+    deadline=$(( started + TIMEOUT * 1000 ))
+    while [[ $(now_ms) -lt $deadline ]]; do
+        if [[ $(curl -s -o /dev/null -w '%{http_code}' "http://127.0.0.1:$PORT$URL_PATH" || true) == 200 ]]; then
+            ttfr=$(( $(now_ms) - started ))
+            break
+        fi
+        sleep 0.02
+    done
+
+    if [[ -n "$IMAGE" ]]; then
+        rss=$( [[ -n "$ttfr" ]] && docker_rss_kb "$container" || echo 0 )
+        docker logs "$container" > "$LOG" 2>&1 || true
+        docker stop "$container" > /dev/null
+    else
+        rss=$( [[ -n "$ttfr" ]] && tree_rss_kb "$pid" || echo 0 )
+        kill "$pid" 2> /dev/null || true
+        wait "$pid" 2> /dev/null || true
+    fi
+
+    if [[ -z "$ttfr" ]]; then
+        echo "起動 $run: ${TIMEOUT}秒以内に応答がありませんでした（ログの末尾）" >&2
+        tail -20 "$LOG" >&2
+        exit 1
+    fi
+
+    # Spring Bootが出力する起動時間（例: Started FlagQuizApplication in 2.345 seconds）
+    spring=$(grep -o 'Started [A-Za-z]* in [0-9.]* seconds' "$LOG" | awk '{ print $4 * 1000 }' || true)
+    printf '起動 %d: 初回リクエストまで %6d ms, RSS %7.1f MB, Spring起動 %s ms\n' \
+        "$run" "$ttfr" "$(echo "$rss" | awk '{ print $1 / 1024 }')" "${spring:--}"
+    results+=("$ttfr $rss")
+    sleep 1
+done
+
+printf '%s\n' "${results[@]}" | sort -n | awk '
+    { ttfr[NR] = $1; rss[NR] = $2; rssSum += $2 }
+    END {
+        printf "===== %d回の結果 =====\n", NR
+        printf "初回リクエストまで: 中央値 %d ms, 最小 %d ms, 最大 %d ms\n", ttfr[int((NR + 1) / 2)], ttfr[1], ttfr[NR]
+        printf "RSS: 平均 %.1f MB\n", rssSum / NR / 1024
+    }'
@@ -0,0 +1,82 @@
+package com.example.flagquiz.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GameStateの生成とシリアライズ（コーデック・Javaシリアライズ）のベンチマーク
+ * 対象は質問5回・ヒント2回を使ったゲーム途中の状態
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GameStateBenchmark {
+
+    private GameState state;
+    private byte[] encoded;
+    private byte[] serialized;
+
+    @Setup
+    public void setup() throws IOException {
+        state = new GameState("France", "フランス", GameState.flagUrlOf("fr"));
+        for (int i = 0; i < 5; i++) {
+            state.addLog("この国はヨーロッパにありますか？" + i, i % 2 == 0 ? "はい" : "いいえ");
+        }
+        state.setQuestionsLeft(5);
+        state.markHintUsed("主食");
+        state.markHintUsed("言語");
+        state.setHintsLeft(1);
+
+        encoded = GameStateCodec.encode(state);
+        serialized = serialize();
+    }
+
+    @Benchmark
+    public GameState create() {
+        return new GameState("France", "フランス", GameState.flagUrlOf("fr"));
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return GameStateCodec.encode(state);
+    }
+
+    @Benchmark
+    public GameState decode() throws IOException {
+        return GameStateCodec.decode(encoded);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(state);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public Object deserialize() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+            return in.readObject();
+        }
+    }
+}
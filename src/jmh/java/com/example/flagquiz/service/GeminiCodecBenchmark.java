@@ -0,0 +1,105 @@
+package com.example.flagquiz.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * generateContentのリクエスト構築・レスポンス解析のベンチマーク
+ * legacy* は以前の実装（Mapを組み立ててObjectMapperでシリアライズ、応答全体をreadTreeで解析）で、
+ * GeminiCodecとの時間・割り当て量（gc.alloc.rate.norm）の比較用
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GeminiCodecBenchmark {
+
+    // generateContentの典型的な応答（ヒント1件分）
+    private static final String RESPONSE = """
+        {
+          "candidates": [
+            {
+              "content": {
+                "parts": [
+                  {
+                    "text": "小麦から作るパンが主食で、特に細長い形のものがよく食べられています。\\n"
+                  }
+                ],
+                "role": "model"
+              },
+              "finishReason": "STOP",
+              "avgLogprobs": -0.1834
+            }
+          ],
+          "usageMetadata": {
+            "promptTokenCount": 52,
+            "candidatesTokenCount": 24,
+            "totalTokenCount": 76,
+            "promptTokensDetails": [{"modality": "TEXT", "tokenCount": 52}],
+            "candidatesTokensDetails": [{"modality": "TEXT", "tokenCount": 24}]
+          },
+          "modelVersion": "gemini-2.0-flash-exp"
+        }
+        """;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private String prompt;
+    private byte[] response;
+
+    @Setup
+    public void setup() {
+        prompt = new GeminiService().getHintPrompt("主食", "フランス");
+        response = RESPONSE.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] encodeRequest() {
+        return GeminiCodec.encodeRequest(prompt);
+    }
+
+    @Benchmark
+    public byte[] legacyEncodeRequest() throws IOException {
+        Map<String, Object> requestBody = new HashMap<>();
+        Map<String, Object> content = new HashMap<>();
+        Map<String, Object> part = new HashMap<>();
+        part.put("text", prompt);
+        content.put("parts", List.of(part));
+        requestBody.put("contents", List.of(content));
+        // OkHttpがStringのボディを送信時にUTF-8へ変換する分も含める
+        return objectMapper.writeValueAsString(requestBody).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String extractText() throws IOException {
+        return GeminiCodec.extractText(new ByteArrayInputStream(response));
+    }
+
+    @Benchmark
+    public String legacyExtractText() throws IOException {
+        // 以前はResponseBody.string()で応答全体を文字列にしてからreadTreeしていた
+        String body = new String(response, StandardCharsets.UTF_8);
+        JsonNode json = objectMapper.readTree(body);
+        return json.path("candidates").get(0).path("content").path("parts").path(0).path("text").asText();
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.flagquiz.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GeminiServiceのAPI呼び出し以外の処理（プロンプト生成・応答パース）のベンチマーク
+ * リクエストの構築とレスポンスからのテキスト抽出は GeminiCodecBenchmark を参照
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GeminiServiceBenchmark {
+
+    // 国データ生成の典型的な応答
+    private static final String COUNTRY_RESPONSE = """
+        国名（英語）: France
+        国名（日本語）: フランス
+        国旗URL: https://flagcdn.com/h240/fr.png
+        """;
+
+    private GeminiService geminiService;
+
+    @Setup
+    public void setup() {
+        geminiService = new GeminiService();
+    }
+
+    @Benchmark
+    public String[] parseCountryResponse() {
+        return geminiService.parseCountryResponse(COUNTRY_RESPONSE);
+    }
+
+    @Benchmark
+    public String getHintPrompt() {
+        return geminiService.getHintPrompt("面積", "フランス");
+    }
+
+    @Benchmark
+    public boolean validateAnswerFallback() {
+        return GeminiService.matchesFallback(" France ", "France", "フランス");
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.flagquiz.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilder;
+import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilderFactory;
+import org.apache.logging.log4j.core.config.builder.impl.BuiltConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gemini API障害時に、リクエストスレッドがエラーログの出力に費やす時間のベンチマーク
+ * 全ての呼び出しが失敗する状況で、複数のリクエストスレッドが同時にエラーを出力する
+ * - systemErr: 従来の System.err.println + printStackTrace（標準エラーのロックを取り合い、書き込みまで待つ）
+ * - asyncLogger: 非同期ロガー（毎回スタックトレース付きでリングバッファに積む。満杯になると空くまで待つ）
+ * - asyncLoggerSampled: 非同期ロガー + ErrorLogSampler（期間内の2件目以降は件数を数えるのみ）
+ * 出力先はいずれも /dev/null（アプリケーションと同じJSON形式で出力する）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class OutageLoggingBenchmark {
+
+    private static final String MESSAGE = "質問回答中にエラーが発生しました";
+
+    private Logger log;
+    private ErrorLogSampler sampler;
+    private Exception failure;
+
+    @Setup
+    public void setup() throws IOException {
+        // アプリケーションと同じ非同期ロガー（log4j2.component.properties）とJSON形式で /dev/null に出力する
+        ConfigurationBuilder<BuiltConfiguration> builder = ConfigurationBuilderFactory.newConfigurationBuilder();
+        builder.add(builder.newAppender("Null", "File")
+            .addAttribute("fileName", "/dev/null")
+            .add(builder.newLayout("JsonTemplateLayout")
+                .addAttribute("eventTemplateUri", "classpath:logging/event-template.json")));
+        builder.add(builder.newRootLogger(Level.INFO).add(builder.newAppenderRef("Null")));
+        Configurator.reconfigure(builder.build());
+        log = LoggerFactory.getLogger(GeminiService.class);
+
+        sampler = new ErrorLogSampler(Duration.ofSeconds(60), new SimpleMeterRegistry());
+
+        // 従来の出力先（System.errと同じく自動フラッシュ）
+        System.setErr(new PrintStream(new FileOutputStream("/dev/null"), true));
+
+        // リクエストスレッドで発生する例外と同程度の深さのスタックトレースを持つ例外
+        failure = failAt(80);
+    }
+
+    @Benchmark
+    public void systemErr() {
+        System.err.println(MESSAGE + ": " + failure.getMessage());
+        failure.printStackTrace();
+    }
+
+    @Benchmark
+    public void asyncLogger() {
+        log.error(MESSAGE + ": " + failure.getMessage(), failure);
+    }
+
+    @Benchmark
+    public void asyncLoggerSampled() {
+        sampler.log(log, org.slf4j.event.Level.ERROR, "answerQuestion",
+            MESSAGE + ": " + failure.getMessage(), failure, failure.getClass());
+    }
+
+    private static Exception failAt(int depth) {
+        if (depth > 0) {
+            return failAt(depth - 1);
+        }
+        IOException cause = new IOException("Failed to connect to generativelanguage.googleapis.com/142.250.196.138:443");
+        return new Exception("Gemini API呼び出し中にネットワークエラーが発生しました: " + cause.getMessage(), cause);
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.flagquiz;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
@@ -7,24 +9,41 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 
 @SpringBootApplication
 public class FlagQuizApplication implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(FlagQuizApplication.class);
     
     @Value("${gemini.api.key:}")
     private String geminiApiKey;
 
+    @Value("${server.port:8080}")
+    private int serverPort;
+
+    // 仮想スレッドモード（virtual-threadsプロファイル）
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
     public static void main(String[] args) {
         SpringApplication.run(FlagQuizApplication.class, args);
     }
 
     @Override
     public void run(String... args) throws Exception {
-        System.out.println("=== 国旗クイズゲーム 起動 ===");
-        System.out.println("ポート: http://localhost:8080");
+        log.info("=== 国旗クイズゲーム 起動 ===");
+        log.info("ポート: http://localhost:{}", serverPort);
         
         if (geminiApiKey != null && !geminiApiKey.trim().isEmpty() && !geminiApiKey.contains("your-actual-gemini-api-key-here")) {
-            System.out.println("Gemini API: 設定済み (キー: " + geminiApiKey.substring(0, Math.min(10, geminiApiKey.length())) + "...)");
+            log.info("Gemini API: 設定済み (キー: {}...)", geminiApiKey.substring(0, Math.min(10, geminiApiKey.length())));
         } else {
-            System.out.println("Gemini API: 未設定 (フォールバック機能を使用)");
+            log.info("Gemini API: 未設定 (フォールバック機能を使用)");
+        }
+        if (virtualThreads) {
+            // Java 21未満ではSpring Bootが設定を無視し、プラットフォームスレッドで処理する
+            if (Runtime.version().feature() >= 21) {
+                log.info("仮想スレッド: 有効");
+            } else {
+                log.warn("仮想スレッド: Java {} では使用できないため無効です（Java 21以上で起動してください）", Runtime.version().feature());
+            }
         }
-        System.out.println("===============================");
+        log.info("===============================");
     }
 }
\ No newline at end of file
@@ -0,0 +1,32 @@
+package com.example.flagquiz.config;
+
+import com.example.flagquiz.model.CountryCatalog;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+
+/**
+ * 同梱の国データをSpringのBeanとして公開する設定
+ */
+@Configuration
+@ImportRuntimeHints(CountryDataConfig.DataResourceHints.class)
+public class CountryDataConfig {
+
+    @Bean
+    public CountryCatalog countryCatalog() {
+        return CountryCatalog.getDefault();
+    }
+
+    /**
+     * ネイティブイメージに同梱データ（国データ・ヒント）を含める
+     */
+    static class DataResourceHints implements RuntimeHintsRegistrar {
+
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+            hints.resources().registerPattern("data/*.tsv");
+        }
+    }
+}
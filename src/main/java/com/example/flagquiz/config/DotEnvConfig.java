@@ -1,6 +1,8 @@
 package com.example.flagquiz.config;
 
 import io.github.cdimascio.dotenv.Dotenv;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationContextInitializer;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.core.env.ConfigurableEnvironment;
@@ -11,6 +13,8 @@ import java.util.Map;
 
 public class DotEnvConfig implements ApplicationContextInitializer<ConfigurableApplicationContext> {
 
+    private static final Logger log = LoggerFactory.getLogger(DotEnvConfig.class);
+
     @Override
     public void initialize(ConfigurableApplicationContext applicationContext) {
         ConfigurableEnvironment environment = applicationContext.getEnvironment();
@@ -32,7 +36,7 @@ public class DotEnvConfig implements ApplicationContextInitializer<ConfigurableA
             environment.getPropertySources().addFirst(propertySource);
             
         } catch (Exception e) {
-            System.out.println("Could not load .env file: " + e.getMessage());
+            log.warn("Could not load .env file: {}", e.getMessage());
         }
     }
 }
\ No newline at end of file
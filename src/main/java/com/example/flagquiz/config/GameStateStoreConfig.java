@@ -0,0 +1,38 @@
+package com.example.flagquiz.config;
+
+import com.example.flagquiz.service.FileGameStateStore;
+import com.example.flagquiz.service.GameStateStore;
+import com.example.flagquiz.service.InMemoryGameStateStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * ゲーム状態ストアの選択
+ * AOT処理済みのイメージでも起動時の game.store.type で切り替えられるよう、
+ * 条件付きBeanではなくファクトリメソッドで生成する（終了時はcloseを呼び出す）
+ */
+@Configuration
+public class GameStateStoreConfig {
+
+    @Bean
+    public GameStateStore gameStateStore(
+            MeterRegistry meterRegistry,
+            // memory: プロセス内、file: メモリマップドファイル
+            @Value("${game.store.type:memory}") String type,
+            @Value("${game.store.ttl:30m}") Duration ttl,
+            @Value("${game.store.file.path:data/games.log}") String path,
+            @Value("${game.store.file.initial-size:1MB}") DataSize initialSize,
+            @Value("${game.store.file.compact-min-size:4MB}") DataSize compactMinSize,
+            @Value("${game.store.file.sweep-interval:1m}") Duration sweepInterval) {
+        return switch (type) {
+            case "memory" -> new InMemoryGameStateStore(meterRegistry, ttl);
+            case "file" -> new FileGameStateStore(meterRegistry, ttl, path, initialSize, compactMinSize, sweepInterval);
+            default -> throw new IllegalStateException("不明なゲーム状態ストアです: game.store.type=" + type);
+        };
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.flagquiz.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.slf4j.MDC;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * リクエスト中のログにセッションとゲームの識別子を付ける（MDC）
+ * セッションIDはそのままでは認証情報になるため、ハッシュ値のみを出力する
+ */
+@Component
+public class LoggingContextFilter extends OncePerRequestFilter {
+
+    // MDCのキー（JSON形式のログではフィールド名になる）
+    public static final String SESSION_KEY = "sessionId";
+    public static final String GAME_KEY = "gameId";
+
+    // セッションに保持するゲームIDの属性名（GameServiceと同じ）
+    private static final String GAME_ID_ATTRIBUTE = "gameId";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        HttpSession session = request.getSession(false);
+        if (session != null) {
+            MDC.put(SESSION_KEY, sessionHash(session.getId()));
+            Object gameId = session.getAttribute(GAME_ID_ATTRIBUTE);
+            if (gameId != null) {
+                MDC.put(GAME_KEY, gameId.toString());
+            }
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            MDC.remove(SESSION_KEY);
+            MDC.remove(GAME_KEY);
+        }
+    }
+
+    /**
+     * ログに出力するセッションの識別子
+     * 32ビットのhashCodeは衝突しやすく逆算もできるため、SHA-256の先頭8バイトを使う
+     * @param sessionId セッションID
+     * @return セッションIDのハッシュ値（16進数16桁）
+     */
+    public static String sessionHash(String sessionId) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(sessionId.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.flagquiz.config;
+
+import com.example.flagquiz.service.RequestTrace;
+import com.example.flagquiz.service.RequestTracer;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * リクエストごとの処理区間の記録を開始・終了する
+ * ストリーミング応答（非同期処理）の場合は、応答の完了時にリクエストを完了として記録する
+ */
+@Component
+public class RequestTraceFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private RequestTracer tracer;
+
+    // セッションに保持するゲームIDの属性名（GameServiceと同じ）
+    private static final String GAME_ID_ATTRIBUTE = "gameId";
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !tracer.isEnabled();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        RequestTrace trace = tracer.begin(request.getMethod(), request.getRequestURI());
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            tracer.detach();
+            // 新しいゲームを開始したリクエストでは新しいゲームIDを記録するため、処理後のセッションから取得する
+            HttpSession session = request.getSession(false);
+            String sessionId = null;
+            String gameId = null;
+            if (session != null) {
+                try {
+                    sessionId = LoggingContextFilter.sessionHash(session.getId());
+                    Object attribute = session.getAttribute(GAME_ID_ATTRIBUTE);
+                    gameId = attribute != null ? attribute.toString() : null;
+                } catch (IllegalStateException e) {
+                    // 処理中にセッションが無効になった場合
+                }
+            }
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new CompletionListener(trace, response, sessionId, gameId));
+            } else {
+                tracer.complete(trace, response.getStatus(), sessionId, gameId);
+            }
+        }
+    }
+
+    /**
+     * 非同期処理の完了（正常終了・タイムアウト・エラー）時にリクエストを完了として記録する
+     */
+    private class CompletionListener implements AsyncListener {
+
+        private final RequestTrace trace;
+        private final HttpServletResponse response;
+        private final String sessionId;
+        private final String gameId;
+
+        CompletionListener(RequestTrace trace, HttpServletResponse response, String sessionId, String gameId) {
+            this.trace = trace;
+            this.response = response;
+            this.sessionId = sessionId;
+            this.gameId = gameId;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            tracer.complete(trace, response.getStatus(), sessionId, gameId);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            tracer.complete(trace, HttpServletResponse.SC_SERVICE_UNAVAILABLE, sessionId, gameId);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            tracer.complete(trace, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, sessionId, gameId);
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.flagquiz.config;
+
+import com.example.flagquiz.service.RequestTracer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * コントローラーの処理（handler）とテンプレートの描画（render）を処理区間として記録する
+ */
+@Component
+public class RequestTraceInterceptor implements AsyncHandlerInterceptor, WebMvcConfigurer {
+
+    // 処理中の区間の番号を保持するリクエスト属性
+    private static final String HANDLER_SPAN = RequestTraceInterceptor.class.getName() + ".handler";
+    private static final String RENDER_SPAN = RequestTraceInterceptor.class.getName() + ".render";
+
+    @Autowired
+    private RequestTracer tracer;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(this);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof HandlerMethod method && tracer.current() != null) {
+            tracer.setHandler(method.getBeanType(), method.getMethod().getName());
+            request.setAttribute(HANDLER_SPAN, tracer.start("handler"));
+        }
+        return true;
+    }
+
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
+                           ModelAndView modelAndView) {
+        endSpan(request, HANDLER_SPAN);
+        // 画面を返す場合は、この後のテンプレートの描画を記録する
+        if (modelAndView != null && modelAndView.hasView() && tracer.current() != null) {
+            request.setAttribute(RENDER_SPAN, tracer.start("render"));
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        // 例外で postHandle が呼び出されなかった場合もここで終了する
+        endSpan(request, HANDLER_SPAN);
+        endSpan(request, RENDER_SPAN);
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // ストリーミング応答では、応答の送信を始めた時点でコントローラーの処理を終了とする
+        endSpan(request, HANDLER_SPAN);
+    }
+
+    private void endSpan(HttpServletRequest request, String attribute) {
+        if (request.getAttribute(attribute) instanceof Integer span) {
+            request.removeAttribute(attribute);
+            tracer.end(span);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.flagquiz.controller;
+
+import com.example.flagquiz.service.FlagStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.time.Duration;
+
+/**
+ * 国旗画像の配信 - 外部CDNを経由せず、ローカルストアの画像を返す（ローカルにない国旗のみ取得元に転送する）
+ * 内容から算出した強いETagとCache-Controlを付け、If-None-Matchが一致する場合は304を返す
+ * Tomcatのsendfileが使える場合は、ファイルからソケットへ直接送信する（アプリケーションでは書き込まない）
+ */
+@Controller
+public class FlagController {
+
+    // Tomcatのsendfileのリクエスト属性（NIOコネクタで useSendfile が有効な場合に support がtrueになる）
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @Autowired
+    private FlagStore flagStore;
+
+    // ブラウザ・中継キャッシュでの保持期間
+    @Value("${flags.cache-max-age:7d}")
+    private Duration cacheMaxAge;
+
+    @GetMapping("/flags/{iso}.png")
+    public void flag(@PathVariable String iso, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        FlagStore.FlagImage image = flagStore.get(iso);
+        if (image == null) {
+            // ローカルにない国旗は取得元に転送する（ストアがバックグラウンドで取得し、次回からはローカルで返す）
+            String location = flagStore.upstreamLocation(iso);
+            if (location == null) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+            response.sendRedirect(location);
+            return;
+        }
+
+        response.setHeader(HttpHeaders.ETAG, image.etag());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=" + cacheMaxAge.toSeconds());
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), image.etag())) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        // server.servlet.encoding.force で付けられる文字コードを外す
+        response.setCharacterEncoding((String) null);
+        response.setContentType("image/png");
+        response.setContentLength(image.size());
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, image.file().toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, (long) image.size());
+            return;
+        }
+        Channels.newChannel(response.getOutputStream()).write(image.bytes().duplicate());
+    }
+
+    /**
+     * If-None-Matchのいずれかのタグが一致するかどうか（弱い比較）
+     */
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            String candidate = tag.trim();
+            if (candidate.equals("*") || candidate.replaceFirst("^W/", "").equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
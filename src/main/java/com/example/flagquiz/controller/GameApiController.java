@@ -0,0 +1,259 @@
+package com.example.flagquiz.controller;
+
+import com.example.flagquiz.model.GameState;
+import com.example.flagquiz.service.GameService;
+import com.example.flagquiz.service.GeminiRateLimiter;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.servlet.http.HttpSession;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * ゲームのJSON API - 画面遷移なしで1回のリクエストでゲームを進める
+ * 各操作は結果と、変化したゲーム状態の項目のみを返す
+ * 質問・ヒント・回答はGemini AIの応答をリクエストのスレッドで待たず、非同期処理として応答する
+ * 質問とヒントはServer-Sent Eventsで生成途中のテキストを送ることもできる
+ */
+@RestController
+@RequestMapping("/api/game")
+public class GameApiController {
+
+    @Autowired
+    private GameService gameService;
+
+    // ストリーミング応答のタイムアウト
+    private static final long STREAM_TIMEOUT_MS = 60_000;
+
+    /**
+     * ゲーム状態（操作後に変化した項目のみ設定する）
+     * @param countryFlag 国旗URL
+     * @param answersLeft 残り回答数
+     * @param questionsLeft 残り質問数
+     * @param hintsLeft 残りヒント数
+     * @param hintsUsed 使用済みヒント
+     * @param gameLog 質問履歴（全体）
+     * @param newLogEntry 質問履歴に追加された項目
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record StateView(
+        String countryFlag,
+        Integer answersLeft,
+        Integer questionsLeft,
+        Integer hintsLeft,
+        List<String> hintsUsed,
+        List<String> gameLog,
+        String newLogEntry
+    ) {
+        static StateView full(GameState state) {
+            return new StateView(state.getCountryFlag(), state.getAnswersLeft(), state.getQuestionsLeft(),
+                state.getHintsLeft(), state.getHintsUsed(), state.getGameLog(), null);
+        }
+    }
+
+    public record QuestionRequest(String question) {
+    }
+
+    public record HintRequest(String hintType) {
+    }
+
+    public record AnswerRequest(String answer) {
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record GameResponse(String message, StateView state) {
+    }
+
+    public record QuestionResponse(String question, String answer, StateView state) {
+    }
+
+    public record HintResponse(String hintType, String hint, StateView state) {
+    }
+
+    public record AnswerResponse(boolean correct, String result, StateView state) {
+    }
+
+    @GetMapping
+    public ResponseEntity<?> getGame(HttpSession session) {
+        GameState state = gameService.getGameState(session);
+        if (state == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "ゲームが開始されていません"));
+        }
+        return ResponseEntity.ok(new GameResponse(null, StateView.full(state)));
+    }
+
+    @PostMapping("/new")
+    public GameResponse newGame(HttpSession session) throws Exception {
+        gameService.startNewGame(session);
+        return new GameResponse("新しいゲームを開始しました！", StateView.full(currentState(session)));
+    }
+
+    @PostMapping("/question")
+    public CompletableFuture<QuestionResponse> askQuestion(@RequestBody QuestionRequest request, HttpSession session) {
+        return gameService.askQuestion(request.question(), session).thenApply(answer -> {
+            GameState state = currentState(session);
+            StateView delta = new StateView(null, null, state.getQuestionsLeft(), null, null, null, lastLogEntry(state));
+            return new QuestionResponse(request.question(), answer, delta);
+        });
+    }
+
+    @PostMapping("/hint")
+    public CompletableFuture<HintResponse> getHint(@RequestBody HintRequest request, HttpSession session) {
+        return gameService.getHint(request.hintType(), session).thenApply(hint -> {
+            GameState state = currentState(session);
+            StateView delta = new StateView(null, null, null, state.getHintsLeft(), state.getHintsUsed(), null, null);
+            return new HintResponse(request.hintType(), hint, delta);
+        });
+    }
+
+    @PostMapping("/answer")
+    public CompletableFuture<AnswerResponse> submitAnswer(@RequestBody AnswerRequest request, HttpSession session) {
+        return gameService.submitAnswer(request.answer(), session).thenApply(result -> {
+            GameState state = currentState(session);
+            StateView delta = new StateView(null, state.getAnswersLeft(), null, null, null, null, null);
+            return new AnswerResponse(result.equals("正解！"), result, delta);
+        });
+    }
+
+    /**
+     * 質問への回答をストリーミングで返す（Server-Sent Events）
+     * 回答の断片を chunk イベント、完了時の回答と状態を done イベントで送る
+     * （gemini.question.mode=combined の場合は検証と回答を1回で行うため、chunk は回答全体の1回のみ）
+     */
+    @PostMapping("/question/stream")
+    public SseEmitter streamQuestion(@RequestBody QuestionRequest request, HttpSession session) {
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+        CompletableFuture<String> future = gameService.streamQuestion(request.question(), session, text -> sendChunk(emitter, text));
+        cancelOnDisconnect(emitter, future);
+        future.whenComplete((answer, error) -> {
+            if (error != null) {
+                sendError(emitter, error);
+                return;
+            }
+            try {
+                GameState state = gameService.getGameState(session);
+                StateView delta = state == null ? null
+                    : new StateView(null, null, state.getQuestionsLeft(), null, null, null, lastLogEntry(state));
+                sendDone(emitter, new QuestionResponse(request.question(), answer, delta));
+            } catch (RuntimeException e) {
+                sendError(emitter, e);
+            }
+        });
+        return emitter;
+    }
+
+    /**
+     * ヒントをストリーミングで返す（Server-Sent Events）
+     * ヒントの断片を chunk イベント、完了時のヒントと状態を done イベントで送る
+     */
+    @PostMapping("/hint/stream")
+    public SseEmitter streamHint(@RequestBody HintRequest request, HttpSession session) {
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+        CompletableFuture<String> future = gameService.streamHint(request.hintType(), session, text -> sendChunk(emitter, text));
+        cancelOnDisconnect(emitter, future);
+        future.whenComplete((hint, error) -> {
+            if (error != null) {
+                sendError(emitter, error);
+                return;
+            }
+            try {
+                GameState state = gameService.getGameState(session);
+                StateView delta = state == null ? null
+                    : new StateView(null, null, null, state.getHintsLeft(), state.getHintsUsed(), null, null);
+                sendDone(emitter, new HintResponse(request.hintType(), hint, delta));
+            } catch (RuntimeException e) {
+                sendError(emitter, e);
+            }
+        });
+        return emitter;
+    }
+
+    /**
+     * タイムアウト・クライアントの切断で送信を終えた場合に、生成中のGemini API呼び出しを中止する
+     * （正常に完了した後のキャンセルは何もしない）
+     */
+    private void cancelOnDisconnect(SseEmitter emitter, CompletableFuture<String> future) {
+        emitter.onTimeout(() -> future.cancel(true));
+        emitter.onError(error -> future.cancel(true));
+        emitter.onCompletion(() -> future.cancel(true));
+    }
+
+    private void sendChunk(SseEmitter emitter, String text) {
+        try {
+            emitter.send(SseEmitter.event().name("chunk").data(Map.of("text", text), MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            // クライアントが切断した場合
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void sendDone(SseEmitter emitter, Object response) {
+        try {
+            emitter.send(SseEmitter.event().name("done").data(response, MediaType.APPLICATION_JSON));
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void sendError(SseEmitter emitter, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        try {
+            emitter.send(SseEmitter.event().name("error")
+                .data(Map.of("error", String.valueOf(cause.getMessage())), MediaType.APPLICATION_JSON));
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    /**
+     * セッションの呼び出し数の上限超過
+     */
+    @ExceptionHandler(GeminiRateLimiter.SessionLimitExceededException.class)
+    public ResponseEntity<Map<String, String>> handleRateLimited(GeminiRateLimiter.SessionLimitExceededException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+            .header(HttpHeaders.RETRY_AFTER, "1")
+            .body(Map.of("error", String.valueOf(e.getMessage())));
+    }
+
+    /**
+     * ゲームの操作エラー（入力不正・回数超過など）
+     */
+    @ExceptionHandler(RuntimeException.class)
+    public ResponseEntity<Map<String, String>> handleGameError(RuntimeException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", String.valueOf(e.getMessage())));
+    }
+
+    /**
+     * ゲーム開始の失敗など、サーバー側のエラー
+     */
+    @ExceptionHandler(Exception.class)
+    public ResponseEntity<Map<String, String>> handleServerError(Exception e) {
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", String.valueOf(e.getMessage())));
+    }
+
+    // 最後の質問履歴（履歴が空の場合はnull）
+    private static String lastLogEntry(GameState state) {
+        List<String> log = state.getGameLog();
+        return log.isEmpty() ? null : log.get(log.size() - 1);
+    }
+
+    private GameState currentState(HttpSession session) {
+        GameState state = gameService.getGameState(session);
+        if (state == null) {
+            throw new IllegalStateException("ゲームが開始されていません");
+        }
+        return state;
+    }
+}
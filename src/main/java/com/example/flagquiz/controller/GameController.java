@@ -9,6 +9,10 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import jakarta.servlet.http.HttpSession;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @Controller
 public class GameController {
@@ -30,9 +34,33 @@ public class GameController {
         void execute() throws Exception;
     }
 
+    /**
+     * Gemini AIの応答をリクエストのスレッドで待たずに処理し、結果またはエラーを設定してリダイレクトする
+     * @param action 結果を返すFutureを作成する処理
+     * @param onResult 結果をリダイレクト先に渡す処理
+     */
+    private <T> CompletableFuture<String> handleAsync(RedirectAttributes redirectAttributes,
+                                                      Supplier<CompletableFuture<T>> action, Consumer<T> onResult) {
+        CompletableFuture<T> future;
+        try {
+            future = action.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        return future.handle((result, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                redirectAttributes.addFlashAttribute("error", cause.getMessage());
+            } else {
+                onResult.accept(result);
+            }
+            return "redirect:/";
+        });
+    }
+
     @GetMapping("/")
     public String index(Model model, HttpSession session) {
-        GameState gameState = (GameState) session.getAttribute("gameState");
+        GameState gameState = gameService.getGameState(session);
         if (gameState != null) {
             model.addAttribute("gameState", gameState);
         }
@@ -48,27 +76,24 @@ public class GameController {
     }
 
     @PostMapping("/ask_question")
-    public String askQuestion(@RequestParam String question, HttpSession session, RedirectAttributes redirectAttributes) {
-        return handleRequest(redirectAttributes, () -> {
-            String answer = gameService.askQuestion(question, session);
+    public CompletableFuture<String> askQuestion(@RequestParam String question, HttpSession session, RedirectAttributes redirectAttributes) {
+        return handleAsync(redirectAttributes, () -> gameService.askQuestion(question, session), answer -> {
             redirectAttributes.addFlashAttribute("answer", answer);
             redirectAttributes.addFlashAttribute("lastQuestion", question);
         });
     }
 
     @PostMapping("/get_hint")
-    public String getHint(@RequestParam String hintType, HttpSession session, RedirectAttributes redirectAttributes) {
-        return handleRequest(redirectAttributes, () -> {
-            String hint = gameService.getHint(hintType, session);
+    public CompletableFuture<String> getHint(@RequestParam String hintType, HttpSession session, RedirectAttributes redirectAttributes) {
+        return handleAsync(redirectAttributes, () -> gameService.getHint(hintType, session), hint -> {
             redirectAttributes.addFlashAttribute("hint", hint);
             redirectAttributes.addFlashAttribute("hintType", hintType);
         });
     }
 
     @PostMapping("/submit_answer")
-    public String submitAnswer(@RequestParam String answer, HttpSession session, RedirectAttributes redirectAttributes) {
-        return handleRequest(redirectAttributes, () -> {
-            String result = gameService.submitAnswer(answer, session);
+    public CompletableFuture<String> submitAnswer(@RequestParam String answer, HttpSession session, RedirectAttributes redirectAttributes) {
+        return handleAsync(redirectAttributes, () -> gameService.submitAnswer(answer, session), result -> {
             if (result.equals("正解！")) {
                 redirectAttributes.addFlashAttribute("success", result);
             } else {
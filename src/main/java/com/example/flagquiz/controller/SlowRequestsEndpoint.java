@@ -0,0 +1,93 @@
+package com.example.flagquiz.controller;
+
+import com.example.flagquiz.service.RequestTrace;
+import com.example.flagquiz.service.RequestTracer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 管理用エンドポイント - 直近のリクエストのうち処理時間の長いものと、その処理区間ごとの内訳を返す
+ * GET /actuator/slowrequests?limit=20
+ */
+@Component
+@Endpoint(id = "slowrequests")
+public class SlowRequestsEndpoint {
+
+    // 既定で返す件数
+    private static final int DEFAULT_LIMIT = 20;
+
+    @Autowired
+    private RequestTracer tracer;
+
+    /**
+     * 処理区間の内訳
+     * @param name 区間名（handler、render、gameState.load、validateQuestion など）
+     * @param depth 入れ子の深さ（0が最上位）
+     * @param startMs リクエスト開始からの開始時刻（ミリ秒）
+     * @param durationMs 処理時間（ミリ秒、リクエストの完了時に終了していなかった場合はnull）
+     */
+    public record Stage(String name, int depth, double startMs, Double durationMs) {
+    }
+
+    /**
+     * リクエスト1件
+     * @param start 開始時刻
+     * @param method HTTPメソッド
+     * @param path リクエストのパス
+     * @param handler 処理したコントローラーのメソッド
+     * @param status HTTPステータス
+     * @param sessionId セッションの識別子（ログと同じハッシュ値）
+     * @param gameId ゲームID
+     * @param durationMs リクエスト全体の処理時間（ミリ秒）
+     * @param untrackedMs 最上位の区間に含まれない時間（セッションの取得・リクエストの読み取り・応答の書き込みなど）
+     * @param stages 処理区間（開始順）
+     */
+    public record SlowRequest(Instant start, String method, String path, String handler, int status,
+                              String sessionId, String gameId, double durationMs, double untrackedMs,
+                              List<Stage> stages) {
+    }
+
+    /**
+     * @param recorded 保持している完了済みリクエストの数
+     * @param requests 処理時間の長い順のリクエスト
+     */
+    public record SlowRequests(int recorded, List<SlowRequest> requests) {
+    }
+
+    @ReadOperation
+    public SlowRequests slowRequests(@Nullable Integer limit) {
+        List<SlowRequest> requests = new ArrayList<>();
+        for (RequestTrace trace : tracer.slowest(limit != null && limit > 0 ? limit : DEFAULT_LIMIT)) {
+            requests.add(toSlowRequest(trace));
+        }
+        return new SlowRequests(tracer.size(), requests);
+    }
+
+    private static SlowRequest toSlowRequest(RequestTrace trace) {
+        long duration = trace.getDurationNanos();
+        long tracked = 0;
+        List<Stage> stages = new ArrayList<>();
+        for (RequestTrace.Span span : trace.spans()) {
+            stages.add(new Stage(span.name(), span.depth(), millis(span.startNanos()),
+                span.durationNanos() >= 0 ? millis(span.durationNanos()) : null));
+            if (span.depth() == 0 && span.durationNanos() >= 0) {
+                tracked += span.durationNanos();
+            }
+        }
+        return new SlowRequest(Instant.ofEpochMilli(trace.getStartEpochMillis()), trace.getMethod(), trace.getPath(),
+            trace.getHandler(), trace.getStatus(), trace.getSessionId(), trace.getGameId(),
+            millis(duration), millis(Math.max(0, duration - tracked)), stages);
+    }
+
+    // ミリ秒（小数点以下3桁）
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+}
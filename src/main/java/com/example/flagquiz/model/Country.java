@@ -0,0 +1,22 @@
+package com.example.flagquiz.model;
+
+import java.util.List;
+
+/**
+ * 国の基本データ
+ * @param isoCode ISO 3166-1 alpha-2 コード（小文字）
+ * @param iso3Code ISO 3166-1 alpha-3 コード（小文字）
+ * @param englishName 英語名
+ * @param japaneseName 日本語名
+ * @param region 地域（アジア、ヨーロッパ、アフリカ、北アメリカ、南アメリカ、オセアニア）
+ * @param aliases 略称・別名
+ */
+public record Country(
+    String isoCode,
+    String iso3Code,
+    String englishName,
+    String japaneseName,
+    String region,
+    List<String> aliases
+) {
+}
@@ -0,0 +1,167 @@
+package com.example.flagquiz.model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 国データカタログ - 同梱の国データファイルを読み込み、ISOコードや国名で検索できるようにする
+ * 起動後は変更されないため、複数スレッドから安全に参照できる
+ */
+public final class CountryCatalog {
+
+    // 同梱の国データファイル
+    private static final String RESOURCE = "/data/countries.tsv";
+
+    private final List<Country> countries;
+    private final Map<String, Country> byIso;
+    private final Map<String, Country> byName;
+    // ISOコード → 一覧上の位置
+    private final Map<String, Integer> indexByIso;
+
+    private CountryCatalog(List<Country> countries) {
+        this.countries = Collections.unmodifiableList(countries);
+
+        Map<String, Country> isoIndex = new HashMap<>();
+        Map<String, Country> nameIndex = new HashMap<>();
+        Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < countries.size(); i++) {
+            Country country = countries.get(i);
+            isoIndex.put(country.isoCode(), country);
+            positions.put(country.isoCode(), i);
+            nameIndex.put(country.englishName().toLowerCase(Locale.ROOT), country);
+            nameIndex.put(country.japaneseName(), country);
+        }
+        this.byIso = Map.copyOf(isoIndex);
+        this.byName = Map.copyOf(nameIndex);
+        this.indexByIso = Map.copyOf(positions);
+    }
+
+    /**
+     * 同梱データから読み込んだ共有カタログを取得
+     * @return 国データカタログ
+     */
+    public static CountryCatalog getDefault() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * すべての国を取得
+     * @return 国データの一覧（変更不可）
+     */
+    public List<Country> all() {
+        return countries;
+    }
+
+    /**
+     * 国の数を取得
+     * @return 国の数
+     */
+    public int size() {
+        return countries.size();
+    }
+
+    /**
+     * 一覧上の位置から国を取得
+     * @param index 位置（0 以上 size() 未満）
+     * @return 国データ
+     */
+    public Country get(int index) {
+        return countries.get(index);
+    }
+
+    /**
+     * 国の一覧上の位置を取得
+     * @param country 国データ
+     * @return 位置、カタログにない国の場合は-1
+     */
+    public int indexOf(Country country) {
+        Integer index = country != null ? indexByIso.get(country.isoCode()) : null;
+        return index != null ? index : -1;
+    }
+
+    /**
+     * ISOコードから国を検索
+     * @param isoCode ISO 3166-1 alpha-2 コード（大文字・小文字は区別しない）
+     * @return 該当する国、存在しない場合はnull
+     */
+    public Country findByIso(String isoCode) {
+        if (isoCode == null) {
+            return null;
+        }
+        return byIso.get(isoCode.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * 英語名または日本語名から国を検索
+     * @param name 国名（英語名は大文字・小文字を区別しない）
+     * @return 該当する国、存在しない場合はnull
+     */
+    public Country findByName(String name) {
+        if (name == null) {
+            return null;
+        }
+        String key = name.trim();
+        Country country = byName.get(key);
+        return country != null ? country : byName.get(key.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * 国データファイルを読み込んでカタログを生成
+     * @param in タブ区切りの国データ
+     * @return 国データカタログ
+     * @throws IOException 読み込みに失敗した場合
+     */
+    static CountryCatalog load(InputStream in) throws IOException {
+        List<Country> countries = new ArrayList<>();
+        // 地域名は同じインスタンスを共有する
+        Map<String, String> regions = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\t", -1);
+                List<String> aliases = fields[5].isEmpty()
+                    ? List.of()
+                    : List.copyOf(Arrays.asList(fields[5].split(";")));
+                countries.add(new Country(
+                    fields[0].toLowerCase(Locale.ROOT),
+                    fields[1].toLowerCase(Locale.ROOT),
+                    fields[2],
+                    fields[3],
+                    regions.computeIfAbsent(fields[4], value -> value),
+                    aliases
+                ));
+            }
+        }
+        return new CountryCatalog(countries);
+    }
+
+    // 初回参照時に一度だけ読み込む
+    private static final class Holder {
+        private static final CountryCatalog INSTANCE = loadDefault();
+
+        private static CountryCatalog loadDefault() {
+            try (InputStream in = CountryCatalog.class.getResourceAsStream(RESOURCE)) {
+                if (in == null) {
+                    throw new IllegalStateException("国データファイルが見つかりません: " + RESOURCE);
+                }
+                return load(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException("国データファイルの読み込みに失敗しました", e);
+            }
+        }
+    }
+}
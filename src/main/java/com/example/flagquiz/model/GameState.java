@@ -1,53 +1,144 @@
 package com.example.flagquiz.model;
 
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
-public class GameState {
-    private String currentCountryEnglish;
-    private String currentCountryJapanese;
-    private String countryFlag;
-    private int answersLeft = 2;
-    private int questionsLeft = 10;
-    private int hintsLeft = 3;
-    private List<String> hintsUsed = new ArrayList<>();
-    private List<String> gameLog = new ArrayList<>();
+/**
+ * ゲーム状態 - セッションごとに保持する1ゲーム分の状態
+ * セッションの複製・永続化に備え、GameStateCodecによる小さなバイナリ形式でシリアライズする
+ * 出題国はカタログの国への参照として持ち、カタログにない国のみ文字列で保持する
+ */
+public class GameState implements Externalizable {
+
+    private static final long serialVersionUID = 1L;
+
+    // ヒントの種類（ビット位置に対応）
+    public static final List<String> HINT_TYPES = List.of("主食", "面積", "言語");
+
+    // 初期値
+    static final int MAX_ANSWERS = 2;
+    static final int MAX_QUESTIONS = 10;
+    static final int MAX_HINTS = 3;
+
+    // flagcdn.comの国旗URL（サイズ指定部分は問わない）
+    private static final Pattern FLAGCDN_URL = Pattern.compile("https://flagcdn\\.com/[a-z0-9]+/([a-zA-Z]{2})\\.png");
+
+    // 回答文のうち「はい」「いいえ」は符号で保持する
+    static final String ANSWER_YES = "はい";
+    static final String ANSWER_NO = "いいえ";
+
+    // カタログ上の出題国（カタログにない国の場合はnull）
+    private Country country;
+    // カタログにない国の場合のみ使用
+    private String customEnglish;
+    private String customJapanese;
+    // 標準の国旗URLと異なる場合のみ使用
+    private String customFlag;
+
+    private int answersLeft = MAX_ANSWERS;
+    private int questionsLeft = MAX_QUESTIONS;
+    private int hintsLeft = MAX_HINTS;
+    // 使用済みヒント（HINT_TYPESのビット位置）
+    private int hintMask;
+    // 質問履歴（質問文と回答を別々に保持し、表示時に組み立てる）
+    private final List<String> questions = new ArrayList<>();
+    private final List<String> answers = new ArrayList<>();
 
     public GameState() {}
 
     public GameState(String englishName, String japaneseName, String flagUrl) {
-        this.currentCountryEnglish = englishName;
-        this.currentCountryJapanese = japaneseName;
-        this.countryFlag = flagUrl;
-        this.answersLeft = 2;
-        this.questionsLeft = 10;
-        this.hintsLeft = 3;
-        this.hintsUsed = new ArrayList<>();
-        this.gameLog = new ArrayList<>();
+        setCountry(englishName, japaneseName, flagUrl);
     }
 
-    public String getCurrentCountryEnglish() {
-        return currentCountryEnglish;
+    /**
+     * カタログの国を出題国とするゲーム状態を作成
+     * @param country カタログの国
+     */
+    public GameState(Country country) {
+        this.country = country;
     }
 
-    public void setCurrentCountryEnglish(String currentCountryEnglish) {
-        this.currentCountryEnglish = currentCountryEnglish;
+    /**
+     * 出題国を設定
+     * カタログの国名と完全に一致する場合はカタログへの参照のみ保持する
+     * @param englishName 英語名
+     * @param japaneseName 日本語名
+     * @param flagUrl 国旗URL
+     */
+    public void setCountry(String englishName, String japaneseName, String flagUrl) {
+        Country found = CountryCatalog.getDefault().findByName(englishName);
+        if (found != null && found.englishName().equals(englishName) && found.japaneseName().equals(japaneseName)) {
+            this.country = found;
+            this.customEnglish = null;
+            this.customJapanese = null;
+        } else {
+            this.country = null;
+            this.customEnglish = englishName;
+            this.customJapanese = japaneseName;
+        }
+        String normalized = normalizeFlagUrl(flagUrl);
+        this.customFlag = normalized != null && normalized.equals(defaultFlagUrl()) ? null : normalized;
     }
 
-    public String getCurrentCountryJapanese() {
-        return currentCountryJapanese;
+    /**
+     * カタログの国から得られる標準の国旗URL
+     * @return 国旗URL、カタログにない国の場合はnull
+     */
+    private String defaultFlagUrl() {
+        return country != null ? flagUrlOf(country.isoCode()) : null;
+    }
+
+    /**
+     * ISOコードから標準の国旗URLを生成（ローカルの国旗画像ストアから配信する）
+     * @param isoCode ISO 3166-1 alpha-2 コード（小文字）
+     * @return 国旗URL
+     */
+    public static String flagUrlOf(String isoCode) {
+        return "/flags/" + isoCode + ".png";
     }
 
-    public void setCurrentCountryJapanese(String currentCountryJapanese) {
-        this.currentCountryJapanese = currentCountryJapanese;
+    /**
+     * flagcdn.comの国旗URLを、サイズ（h240、w640など）によらず標準の国旗URLに置き換える
+     * @param flagUrl 国旗URL
+     * @return カタログにある国の国旗であれば標準の国旗URL、それ以外は元のURL
+     */
+    static String normalizeFlagUrl(String flagUrl) {
+        if (flagUrl == null) {
+            return null;
+        }
+        Matcher matcher = FLAGCDN_URL.matcher(flagUrl.trim());
+        if (matcher.matches() && CountryCatalog.getDefault().findByIso(matcher.group(1)) != null) {
+            return flagUrlOf(matcher.group(1).toLowerCase(Locale.ROOT));
+        }
+        return flagUrl;
+    }
+
+    public String getCurrentCountryEnglish() {
+        return country != null ? country.englishName() : customEnglish;
+    }
+
+    public String getCurrentCountryJapanese() {
+        return country != null ? country.japaneseName() : customJapanese;
     }
 
     public String getCountryFlag() {
-        return countryFlag;
+        return customFlag != null ? customFlag : defaultFlagUrl();
     }
 
-    public void setCountryFlag(String countryFlag) {
-        this.countryFlag = countryFlag;
+    /**
+     * カタログ上の出題国を取得
+     * @return カタログの国、カタログにない国の場合はnull
+     */
+    public Country getCountry() {
+        return country;
     }
 
     public int getAnswersLeft() {
@@ -74,19 +165,112 @@ public class GameState {
         this.hintsLeft = hintsLeft;
     }
 
+    /**
+     * 指定したヒントが使用済みかどうか
+     * @param hintType ヒントの種類
+     * @return 使用済みであればtrue
+     */
+    public boolean isHintUsed(String hintType) {
+        int index = HINT_TYPES.indexOf(hintType);
+        return index >= 0 && (hintMask & (1 << index)) != 0;
+    }
+
+    /**
+     * ヒントを使用済みにする
+     * @param hintType ヒントの種類
+     * @throws IllegalArgumentException 不明なヒントの種類の場合
+     */
+    public void markHintUsed(String hintType) {
+        int index = HINT_TYPES.indexOf(hintType);
+        if (index < 0) {
+            throw new IllegalArgumentException("不明なヒントの種類です: " + hintType);
+        }
+        hintMask |= 1 << index;
+    }
+
+    /**
+     * 使用済みヒントの一覧を取得
+     * @return 使用済みヒントの種類（変更不可）
+     */
     public List<String> getHintsUsed() {
-        return hintsUsed;
+        List<String> used = new ArrayList<>(Integer.bitCount(hintMask));
+        for (int i = 0; i < HINT_TYPES.size(); i++) {
+            if ((hintMask & (1 << i)) != 0) {
+                used.add(HINT_TYPES.get(i));
+            }
+        }
+        return Collections.unmodifiableList(used);
     }
 
-    public void setHintsUsed(List<String> hintsUsed) {
-        this.hintsUsed = hintsUsed;
+    /**
+     * 質問と回答を履歴に追加
+     * @param question 質問文
+     * @param answer 回答
+     */
+    public void addLog(String question, String answer) {
+        questions.add(question);
+        answers.add(answer);
     }
 
+    /**
+     * 表示用の質問履歴を取得
+     * @return 「Q: 質問 → A: 回答」形式の履歴（変更不可）
+     */
     public List<String> getGameLog() {
-        return gameLog;
+        List<String> log = new ArrayList<>(questions.size());
+        for (int i = 0; i < questions.size(); i++) {
+            log.add("Q: " + questions.get(i) + " → A: " + answers.get(i));
+        }
+        return Collections.unmodifiableList(log);
+    }
+
+    // GameStateCodecからの参照用
+
+    String getCustomEnglish() {
+        return customEnglish;
+    }
+
+    String getCustomJapanese() {
+        return customJapanese;
+    }
+
+    String getCustomFlag() {
+        return customFlag;
+    }
+
+    int getHintMask() {
+        return hintMask;
+    }
+
+    List<String> getQuestions() {
+        return questions;
+    }
+
+    List<String> getAnswers() {
+        return answers;
+    }
+
+    void restore(Country country, String customEnglish, String customJapanese, String customFlag,
+                 int answersLeft, int questionsLeft, int hintsLeft, int hintMask) {
+        this.country = country;
+        this.customEnglish = customEnglish;
+        this.customJapanese = customJapanese;
+        this.customFlag = customFlag;
+        this.answersLeft = answersLeft;
+        this.questionsLeft = questionsLeft;
+        this.hintsLeft = hintsLeft;
+        this.hintMask = hintMask;
+        this.questions.clear();
+        this.answers.clear();
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        GameStateCodec.write(this, out);
     }
 
-    public void setGameLog(List<String> gameLog) {
-        this.gameLog = gameLog;
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        GameStateCodec.read(in, this);
     }
-}
\ No newline at end of file
+}
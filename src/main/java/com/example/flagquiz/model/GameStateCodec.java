@@ -0,0 +1,213 @@
+package com.example.flagquiz.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * ゲーム状態のバイナリ形式への変換
+ *
+ * 形式（数値はすべて符号なし、文字列は可変長の長さ＋UTF-8。nullは長さ -1 として書き込む）:
+ * <pre>
+ *   header    1 byte  上位4ビット: 形式のバージョン、下位4ビット: フラグ
+ *   country   2 bytes カタログの国の場合はISOコード（ASCII）
+ *             または 英語名・日本語名の2文字列
+ *   flag      文字列  標準と異なる国旗URLの場合のみ
+ *   counters  1 byte  残り質問数(4bit) | 残り回答数(2bit) | 残りヒント数(2bit)
+ *   hints     1 byte  使用済みヒントのビット集合
+ *   log       可変長の件数 ＋ 各件（質問文、回答の符号、符号が「その他」の場合のみ回答文）
+ * </pre>
+ * 出題直後のカタログの国であれば6バイトになる
+ */
+public final class GameStateCodec {
+
+    private static final int VERSION = 1;
+
+    // ヘッダーのフラグ
+    private static final int FLAG_CATALOG_COUNTRY = 0x1;
+    private static final int FLAG_CUSTOM_FLAG_URL = 0x2;
+
+    // nullの文字列の長さ（可変長整数では5バイトになるが、出題前の状態でのみ使う）
+    private static final int NULL_LENGTH = -1;
+
+    // 回答の符号
+    private static final int ANSWER_YES = 0;
+    private static final int ANSWER_NO = 1;
+    private static final int ANSWER_OTHER = 2;
+
+    private GameStateCodec() {
+    }
+
+    /**
+     * ゲーム状態をバイト列に変換
+     * @param state ゲーム状態
+     * @return バイト列
+     */
+    public static byte[] encode(GameState state) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            write(state, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * バイト列からゲーム状態を復元
+     * @param data encodeで生成したバイト列
+     * @return ゲーム状態
+     * @throws IOException 形式が不正な場合
+     */
+    public static GameState decode(byte[] data) throws IOException {
+        GameState state = new GameState();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            read(in, state);
+        }
+        return state;
+    }
+
+    static void write(GameState state, DataOutput out) throws IOException {
+        Country country = state.getCountry();
+        int flags = (country != null ? FLAG_CATALOG_COUNTRY : 0)
+            | (state.getCustomFlag() != null ? FLAG_CUSTOM_FLAG_URL : 0);
+        out.writeByte(VERSION << 4 | flags);
+
+        if (country != null) {
+            out.writeByte(country.isoCode().charAt(0));
+            out.writeByte(country.isoCode().charAt(1));
+        } else {
+            writeString(out, state.getCustomEnglish());
+            writeString(out, state.getCustomJapanese());
+        }
+        if (state.getCustomFlag() != null) {
+            writeString(out, state.getCustomFlag());
+        }
+
+        out.writeByte(packCounters(state));
+        out.writeByte(state.getHintMask());
+
+        List<String> questions = state.getQuestions();
+        List<String> answers = state.getAnswers();
+        writeVarInt(out, questions.size());
+        for (int i = 0; i < questions.size(); i++) {
+            writeString(out, questions.get(i));
+            String answer = answers.get(i);
+            if (GameState.ANSWER_YES.equals(answer)) {
+                out.writeByte(ANSWER_YES);
+            } else if (GameState.ANSWER_NO.equals(answer)) {
+                out.writeByte(ANSWER_NO);
+            } else {
+                out.writeByte(ANSWER_OTHER);
+                writeString(out, answer);
+            }
+        }
+    }
+
+    static void read(DataInput in, GameState state) throws IOException {
+        int header = in.readUnsignedByte();
+        if (header >>> 4 != VERSION) {
+            throw new IOException("未対応のゲーム状態形式です: " + (header >>> 4));
+        }
+
+        Country country = null;
+        String customEnglish = null;
+        String customJapanese = null;
+        if ((header & FLAG_CATALOG_COUNTRY) != 0) {
+            String isoCode = new String(new char[]{(char) in.readUnsignedByte(), (char) in.readUnsignedByte()});
+            country = CountryCatalog.getDefault().findByIso(isoCode);
+            if (country == null) {
+                throw new IOException("カタログにない国コードです: " + isoCode);
+            }
+        } else {
+            customEnglish = readString(in);
+            customJapanese = readString(in);
+        }
+        String customFlag = (header & FLAG_CUSTOM_FLAG_URL) != 0 ? readString(in) : null;
+
+        int counters = in.readUnsignedByte();
+        int hintMask = in.readUnsignedByte();
+        state.restore(country, customEnglish, customJapanese, customFlag,
+            (counters >>> 2) & 0x3, counters >>> 4, counters & 0x3, hintMask);
+
+        int logSize = readVarInt(in);
+        for (int i = 0; i < logSize; i++) {
+            String question = readString(in);
+            int code = in.readUnsignedByte();
+            String answer = switch (code) {
+                case ANSWER_YES -> GameState.ANSWER_YES;
+                case ANSWER_NO -> GameState.ANSWER_NO;
+                case ANSWER_OTHER -> readString(in);
+                default -> throw new IOException("不正な回答の符号です: " + code);
+            };
+            state.addLog(question, answer);
+        }
+    }
+
+    /**
+     * 残り回数を1バイトにまとめる
+     */
+    private static int packCounters(GameState state) {
+        int questions = state.getQuestionsLeft();
+        int answers = state.getAnswersLeft();
+        int hints = state.getHintsLeft();
+        if (questions < 0 || questions > 15 || answers < 0 || answers > 3 || hints < 0 || hints > 3) {
+            throw new IllegalStateException(
+                "残り回数が範囲外です: 質問=" + questions + ", 回答=" + answers + ", ヒント=" + hints);
+        }
+        return questions << 4 | answers << 2 | hints;
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, NULL_LENGTH);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = readVarInt(in);
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (length < 0) {
+            throw new IOException("不正な文字列の長さです: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 7ビットずつの可変長整数を書き込む（127以下は1バイト）
+     */
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("可変長整数が長すぎます");
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.flagquiz.model;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * 出題済みの国 - カタログ上の位置をビット集合で保持する（193か国で long 4個）
+ * セッションに保持し、同じセッションで全ての国を出題し終えるまで同じ国を出さないために使う
+ */
+public final class PlayedCountries implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int size;
+    private final long[] bits;
+    private int count;
+
+    /**
+     * @param size 国の数
+     */
+    public PlayedCountries(int size) {
+        this.size = size;
+        this.bits = new long[(size + 63) >>> 6];
+    }
+
+    /**
+     * 対象の国の数
+     * @return 国の数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 未出題の国の数
+     * @return 未出題の国の数
+     */
+    public int remaining() {
+        return size - count;
+    }
+
+    /**
+     * 出題済みかどうか
+     * @param index カタログ上の位置
+     * @return 出題済みであればtrue
+     */
+    public boolean contains(int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * 出題済みにする
+     * @param index カタログ上の位置
+     */
+    public void add(int index) {
+        long mask = 1L << index;
+        if ((bits[index >>> 6] & mask) == 0) {
+            bits[index >>> 6] |= mask;
+            count++;
+        }
+    }
+
+    /**
+     * すべて未出題に戻す
+     */
+    public void clear() {
+        Arrays.fill(bits, 0L);
+        count = 0;
+    }
+
+    /**
+     * 未出題の国のうち n 番目（0始まり）の位置を取得
+     * 語ごとに未出題数を数えて該当する語を特定し、語の中では下位ビットから数える（国の数に比例しない定数回の処理）
+     * @param n 0 以上 remaining() 未満
+     * @return カタログ上の位置
+     * @throws IllegalArgumentException n が範囲外の場合
+     */
+    public int nthRemaining(int n) {
+        if (n < 0 || n >= remaining()) {
+            throw new IllegalArgumentException("範囲外の指定です: " + n);
+        }
+        for (int word = 0; word < bits.length; word++) {
+            // 未出題のビット（最後の語は国の数を超える部分を除く）
+            long free = ~bits[word];
+            int bitsInWord = Math.min(64, size - (word << 6));
+            if (bitsInWord < 64) {
+                free &= (1L << bitsInWord) - 1;
+            }
+            int freeCount = Long.bitCount(free);
+            if (n < freeCount) {
+                for (int i = 0; i < n; i++) {
+                    free &= free - 1;
+                }
+                return (word << 6) + Long.numberOfTrailingZeros(free);
+            }
+            n -= freeCount;
+        }
+        throw new IllegalStateException("未出題の国が見つかりません");
+    }
+}
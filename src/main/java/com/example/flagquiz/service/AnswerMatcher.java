@@ -0,0 +1,263 @@
+package com.example.flagquiz.service;
+
+import com.example.flagquiz.model.Country;
+import com.example.flagquiz.model.CountryCatalog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 回答照合サービス - ユーザーの回答を国名の別名インデックスと照合し、ネットワーク呼び出しなしで正誤を判定
+ * 判定できない回答のみGemini APIによる検証に回す
+ */
+@Service
+public class AnswerMatcher {
+
+    /**
+     * 照合結果
+     */
+    public enum Verdict {
+        // 正解の国の名前・別名と一致した
+        CORRECT,
+        // 別の国の名前・別名と一致した
+        INCORRECT,
+        // ローカルでは判定できない
+        UNDECIDED
+    }
+
+    @Autowired
+    private CountryCatalog countryCatalog;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 正規化した別名 → ISOコード
+    private Map<String, String> aliasIndex;
+    // ISOコード → 正規化した別名の一覧
+    private Map<String, List<String>> aliasesByIso;
+
+    private Counter localCounter;
+    private Counter llmCounter;
+
+    @PostConstruct
+    void init() {
+        Map<String, String> index = new HashMap<>();
+        Map<String, List<String>> byIso = new HashMap<>();
+
+        for (Country country : countryCatalog.all()) {
+            Set<String> aliases = new HashSet<>();
+            aliases.add(normalize(country.englishName()));
+            aliases.add(normalize(country.japaneseName()));
+            aliases.add(normalize(country.isoCode()));
+            aliases.add(normalize(country.iso3Code()));
+            for (String alias : country.aliases()) {
+                aliases.add(normalize(alias));
+            }
+            aliases.remove("");
+
+            for (String alias : aliases) {
+                index.putIfAbsent(alias, country.isoCode());
+            }
+            byIso.put(country.isoCode(), List.copyOf(aliases));
+        }
+
+        aliasIndex = Map.copyOf(index);
+        aliasesByIso = Map.copyOf(byIso);
+
+        // ローカル判定率をメトリクスとして登録
+        localCounter = Counter.builder("answer.matcher.verdicts")
+            .tag("source", "local")
+            .description("回答判定の件数")
+            .register(meterRegistry);
+        llmCounter = Counter.builder("answer.matcher.verdicts")
+            .tag("source", "llm")
+            .description("回答判定の件数")
+            .register(meterRegistry);
+        Gauge.builder("answer.matcher.local.ratio", this, AnswerMatcher::localRatio)
+            .description("ローカルで判定できた回答の割合")
+            .register(meterRegistry);
+    }
+
+    /**
+     * ユーザーの回答を正解の国と照合
+     * @param userAnswer ユーザーからの回答
+     * @param correctCountryEnglish 正解の国名（英語）
+     * @param correctCountryJapanese 正解の国名（日本語）
+     * @return 照合結果（UNDECIDEDの場合はGemini APIでの検証が必要）
+     */
+    public Verdict match(String userAnswer, String correctCountryEnglish, String correctCountryJapanese) {
+        Verdict verdict = decide(userAnswer, correctCountryEnglish, correctCountryJapanese);
+        if (verdict == Verdict.UNDECIDED) {
+            llmCounter.increment();
+        } else {
+            localCounter.increment();
+        }
+        return verdict;
+    }
+
+    /**
+     * 国名・別名・ISOコードから国を検索（回答と同じ正規化で照合する）
+     * @param name 国名
+     * @return 該当する国、存在しない場合はnull
+     */
+    Country findCountry(String name) {
+        String iso = aliasIndex.get(normalize(name));
+        return iso != null ? countryCatalog.findByIso(iso) : null;
+    }
+
+    private Verdict decide(String userAnswer, String correctCountryEnglish, String correctCountryJapanese) {
+        String answer = normalize(userAnswer);
+        if (answer.isEmpty()) {
+            return Verdict.UNDECIDED;
+        }
+
+        // 正解の国の別名を収集（カタログにない国は渡された国名のみ）
+        Country target = countryCatalog.findByName(correctCountryEnglish);
+        if (target == null) {
+            target = countryCatalog.findByName(correctCountryJapanese);
+        }
+        String targetIso = target != null ? target.isoCode() : null;
+        List<String> targetAliases = new ArrayList<>(
+            targetIso != null ? aliasesByIso.get(targetIso) : List.of());
+        targetAliases.add(normalize(correctCountryEnglish));
+        targetAliases.add(normalize(correctCountryJapanese));
+
+        // 完全一致
+        if (targetAliases.contains(answer)) {
+            return Verdict.CORRECT;
+        }
+        String matchedIso = aliasIndex.get(answer);
+        if (matchedIso != null && !matchedIso.equals(targetIso)) {
+            return Verdict.INCORRECT;
+        }
+
+        // 軽微な表記ゆれ（正解の国が他のどの国よりも明確に近い場合のみ正解とする）
+        int tolerance = tolerance(answer);
+        if (tolerance > 0) {
+            int targetDistance = closestDistance(answer, targetAliases, tolerance);
+            if (targetDistance <= tolerance) {
+                int otherDistance = Integer.MAX_VALUE;
+                for (Map.Entry<String, List<String>> entry : aliasesByIso.entrySet()) {
+                    if (!entry.getKey().equals(targetIso)) {
+                        otherDistance = Math.min(otherDistance,
+                            closestDistance(answer, entry.getValue(), targetDistance));
+                    }
+                }
+                if (targetDistance < otherDistance) {
+                    return Verdict.CORRECT;
+                }
+            }
+        }
+
+        return Verdict.UNDECIDED;
+    }
+
+    /**
+     * 照合用に文字列を正規化
+     * 全角・半角の統一、小文字化、ひらがな→カタカナ変換、記号・空白の除去を行う
+     * @param text 正規化する文字列
+     * @return 正規化後の文字列
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+
+        // 全角英数・半角カナを統一し、ラテン文字のアクセント記号を除去
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        normalized = Normalizer.normalize(normalized, Normalizer.Form.NFD)
+            .replaceAll("[\\u0300-\\u036f]", "");
+        normalized = Normalizer.normalize(normalized, Normalizer.Form.NFC);
+        normalized = normalized.replace("&", "and");
+        if (normalized.startsWith("the ")) {
+            normalized = normalized.substring(4);
+        }
+
+        StringBuilder sb = new StringBuilder(normalized.length());
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (c >= 'ぁ' && c <= 'ゖ') {
+                // ひらがなをカタカナに変換
+                sb.append((char) (c + 0x60));
+            } else if (Character.isLetterOrDigit(c) || c == 'ー') {
+                sb.append(c);
+            }
+        }
+
+        // 「ヴ」表記のゆれを統一
+        return sb.toString()
+            .replace("ヴァ", "バ")
+            .replace("ヴィ", "ビ")
+            .replace("ヴェ", "ベ")
+            .replace("ヴォ", "ボ")
+            .replace("ヴ", "ブ");
+    }
+
+    /**
+     * 回答の長さに応じて許容する編集距離を決定
+     */
+    private static int tolerance(String answer) {
+        if (answer.length() >= 9) {
+            return 2;
+        }
+        return answer.length() >= 5 ? 1 : 0;
+    }
+
+    private static int closestDistance(String answer, List<String> aliases, int limit) {
+        int best = Integer.MAX_VALUE;
+        for (String alias : aliases) {
+            best = Math.min(best, editDistance(answer, alias, limit));
+        }
+        return best;
+    }
+
+    /**
+     * 上限付きのレーベンシュタイン距離
+     * @return 編集距離（上限を超える場合は上限+1）
+     */
+    static int editDistance(String a, String b, int limit) {
+        if (Math.abs(a.length() - b.length()) > limit) {
+            return limit + 1;
+        }
+
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > limit) {
+                return limit + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length()], limit + 1);
+    }
+
+    private double localRatio() {
+        double total = localCounter.count() + llmCounter.count();
+        return total == 0 ? 0.0 : localCounter.count() / total;
+    }
+}
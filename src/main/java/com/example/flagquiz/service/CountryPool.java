@@ -0,0 +1,233 @@
+package com.example.flagquiz.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 国データプール - 事前生成した国データを保持し、新規ゲーム開始時の待ち時間をなくす
+ * 残量が下限値を下回るとバックグラウンドでGemini APIから補充する
+ * 補充はGemini APIで生成できた国データのみで行い、同梱カタログへのフォールバックはプールに入れない
+ * 出題国をGemini APIに選ばせる場合（country.source=llm）のみ使用する
+ */
+@Service
+public class CountryPool {
+
+    private static final Logger log = LoggerFactory.getLogger(CountryPool.class);
+
+    // 国データ生成用のGeminiサービス
+    @Autowired
+    private GeminiService geminiService;
+
+    // 遮断中は補充を見送る
+    @Autowired
+    private GeminiCircuitBreaker circuitBreaker;
+
+    // プール深度・ミス率の公開先
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // プールを有効にするかどうか
+    @Value("${country.pool.enabled:true}")
+    private boolean enabled;
+
+    // 出題国の選び方（llm 以外ではプールを補充しない）
+    @Value("${country.source:catalog}")
+    private String countrySource;
+
+    // プールに保持する国データの最大数
+    @Value("${country.pool.capacity:20}")
+    private int capacity;
+
+    // この件数以下になったら補充を開始する
+    @Value("${country.pool.low-water-mark:5}")
+    private int lowWaterMark;
+
+    // 同時に実行する補充タスク数の上限
+    @Value("${country.pool.refill-concurrency:2}")
+    private int refillConcurrency;
+
+    // 国旗URLとして受け付けるプレフィックス
+    private static final String FLAG_URL_PREFIX = "https://flagcdn.com/";
+
+    private BlockingQueue<String[]> pool;
+    private ExecutorService refillExecutor;
+    private final AtomicInteger refillsInFlight = new AtomicInteger();
+
+    private Counter hitCounter;
+    private Counter missCounter;
+    private Counter refillFailureCounter;
+
+    @PostConstruct
+    void init() {
+        // カタログから出題する場合は起動時の補充でGemini APIを呼び出さない
+        enabled = enabled && "llm".equals(countrySource);
+        if (!enabled) {
+            return;
+        }
+
+        pool = new ArrayBlockingQueue<>(capacity);
+        refillExecutor = Executors.newFixedThreadPool(refillConcurrency, daemonThreadFactory());
+
+        // プール深度とヒット/ミス数をメトリクスとして登録
+        Gauge.builder("country.pool.depth", pool, BlockingQueue::size)
+            .description("事前生成済みの国データ数")
+            .register(meterRegistry);
+        hitCounter = Counter.builder("country.pool.requests")
+            .tag("result", "hit")
+            .description("国データプールへの取得要求数")
+            .register(meterRegistry);
+        missCounter = Counter.builder("country.pool.requests")
+            .tag("result", "miss")
+            .description("国データプールへの取得要求数")
+            .register(meterRegistry);
+        refillFailureCounter = Counter.builder("country.pool.refill.failures")
+            .description("国データを生成できず補充を中断した回数")
+            .register(meterRegistry);
+        Gauge.builder("country.pool.miss.ratio", this, CountryPool::missRatio)
+            .description("国データ取得におけるプールミス率")
+            .register(meterRegistry);
+
+        // 起動直後にプールを満たしておく
+        triggerRefill();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (refillExecutor != null) {
+            refillExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * プールから国データを1件取得
+     * プールが空の場合のみGeminiサービスを同期的に呼び出す
+     * @return [英語名, 日本語名, 国旗URL]の配列
+     */
+    public String[] take() {
+        if (!enabled) {
+            return geminiService.generateRandomCountryAndFlag();
+        }
+
+        String[] country = pool.poll();
+        triggerRefill();
+
+        if (country != null) {
+            hitCounter.increment();
+            return country;
+        }
+
+        // プールが空の場合は同期呼び出し（内部で同梱カタログにフォールバックする）
+        missCounter.increment();
+        log.info("国データプールが空のため同期生成します");
+        return geminiService.generateRandomCountryAndFlag();
+    }
+
+    /**
+     * プールの現在の保持数を取得
+     * @return 保持している国データ数
+     */
+    public int depth() {
+        return enabled ? pool.size() : 0;
+    }
+
+    /**
+     * 残量が下限値以下であれば、同時実行数の上限まで補充タスクを起動
+     */
+    private void triggerRefill() {
+        if (pool.size() > lowWaterMark || circuitBreaker.isOpen()) {
+            return;
+        }
+
+        while (true) {
+            int inFlight = refillsInFlight.get();
+            if (inFlight >= refillConcurrency || pool.size() + inFlight >= capacity) {
+                return;
+            }
+            if (refillsInFlight.compareAndSet(inFlight, inFlight + 1)) {
+                refillExecutor.execute(this::refill);
+            }
+        }
+    }
+
+    /**
+     * プールが満杯になるまで国データを生成して追加
+     * 生成に失敗した場合・遮断中の場合は補充を打ち切り、次回の取得時に再試行する
+     */
+    private void refill() {
+        try {
+            while (pool.remainingCapacity() > 0 && !Thread.currentThread().isInterrupted()) {
+                if (circuitBreaker.isOpen()) {
+                    log.debug("Gemini APIの呼び出しを停止中のため、国データプールの補充を見送ります");
+                    break;
+                }
+                String[] country;
+                try {
+                    country = geminiService.generateCountry();
+                } catch (GeminiService.CountryGenerationException e) {
+                    // 同梱カタログへのフォールバックはプールに入れない
+                    refillFailureCounter.increment();
+                    log.warn("国データを生成できなかったため、国データプールの補充を中断します: {}", e.getMessage());
+                    break;
+                }
+                if (isValidCountry(country)) {
+                    pool.offer(country);
+                } else {
+                    // 生成が不安定な間は補充を打ち切り、次回の取得時に再試行する
+                    refillFailureCounter.increment();
+                    log.warn("不正な国データをプールから除外しました");
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.error("国データプールの補充中にエラーが発生しました", e);
+        } finally {
+            refillsInFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * 国データがゲームで使用できる形式かどうかを検証
+     * @param country [英語名, 日本語名, 国旗URL]の配列
+     * @return すべての項目が揃っていればtrue
+     */
+    private boolean isValidCountry(String[] country) {
+        if (country == null || country.length != 3) {
+            return false;
+        }
+        for (String value : country) {
+            if (value == null || value.isBlank()) {
+                return false;
+            }
+        }
+        return country[2].startsWith(FLAG_URL_PREFIX);
+    }
+
+    private double missRatio() {
+        double total = hitCounter.count() + missCounter.count();
+        return total == 0 ? 0.0 : missCounter.count() / total;
+    }
+
+    private static ThreadFactory daemonThreadFactory() {
+        AtomicInteger sequence = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "country-pool-refill-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.flagquiz.service;
+
+import com.example.flagquiz.model.Country;
+import com.example.flagquiz.model.CountryCatalog;
+import com.example.flagquiz.model.PlayedCountries;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 出題国の選択 - 同梱カタログの国から一様に選ぶ（Gemini APIは呼び出さない）
+ * 出題済みの国を渡すと、全ての国を出題し終えるまで同じ国を選ばない
+ */
+@Service
+public class CountrySampler {
+
+    @Autowired
+    private CountryCatalog countryCatalog;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Counter sampleCounter;
+    private Counter resetCounter;
+
+    @PostConstruct
+    void init() {
+        sampleCounter = Counter.builder("country.sampler.samples")
+            .description("カタログから選んだ出題国の数")
+            .register(meterRegistry);
+        resetCounter = Counter.builder("country.sampler.resets")
+            .description("全ての国を出題し終えて出題済みをリセットした回数")
+            .register(meterRegistry);
+    }
+
+    /**
+     * 出題済みの国の記録を新しく作成
+     * @return 空の出題済みの国
+     */
+    public PlayedCountries newPlayedCountries() {
+        return new PlayedCountries(countryCatalog.size());
+    }
+
+    /**
+     * カタログの全ての国から一様に1か国を選ぶ
+     * @return 国データ
+     */
+    public Country sample() {
+        sampleCounter.increment();
+        return countryCatalog.get(ThreadLocalRandom.current().nextInt(countryCatalog.size()));
+    }
+
+    /**
+     * 未出題の国から一様に1か国を選び、出題済みにする
+     * 全ての国を出題済みの場合は記録をリセットする（直前に出題した国は続けて選ばない）
+     * @param played 出題済みの国（セッションごと。同じセッションの同時呼び出しに備えて同期する）
+     * @param previous 直前に出題した国（ない場合はnull）
+     * @return 国データ
+     */
+    public Country sample(PlayedCountries played, Country previous) {
+        if (played == null || played.size() != countryCatalog.size()) {
+            return sample();
+        }
+        synchronized (played) {
+            if (played.remaining() == 0) {
+                played.clear();
+                int previousIndex = countryCatalog.indexOf(previous);
+                if (previousIndex >= 0 && played.size() > 1) {
+                    played.add(previousIndex);
+                }
+                resetCounter.increment();
+            }
+            int index = played.nthRemaining(ThreadLocalRandom.current().nextInt(played.remaining()));
+            played.add(index);
+            sampleCounter.increment();
+            return countryCatalog.get(index);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.flagquiz.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.event.Level;
+import org.slf4j.spi.LoggingEventBuilder;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 繰り返し発生するエラーログの間引き
+ * 操作と例外の種類の組み合わせごとに、一定時間内の最初の1件のみ（例外があればスタックトレース付きで）出力し、
+ * 残りは件数のみ数えて次に出力するときにまとめて報告する（API障害時に全リクエストがスタックトレースを出力しないため）
+ * 判定はロックを使わず、出力しない場合はカウンタの加算のみ行う
+ */
+final class ErrorLogSampler {
+
+    private final long windowNanos;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentHashMap<String, Window> windows = new ConcurrentHashMap<>();
+
+    /**
+     * @param window 同じエラーを1件のみ出力する期間（0以下の場合は間引かない）
+     * @param meterRegistry 間引いた件数の記録先
+     */
+    ErrorLogSampler(Duration window, MeterRegistry meterRegistry) {
+        this.windowNanos = window.toNanos();
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * エラーを出力（同じ操作・同じ種類のエラーを期間内に出力済みの場合は件数のみ数える）
+     * @param log 出力先のロガー
+     * @param level ログレベル
+     * @param operation 操作名（例: validateQuestion）
+     * @param message メッセージ
+     * @param e 発生した例外（スタックトレースを出力しない場合はnull）
+     * @param kind エラーの種類（同じ操作でも種類ごとに間引く）
+     */
+    void log(Logger log, Level level, String operation, String message, Throwable e, Class<?> kind) {
+        if (!log.isEnabledForLevel(level)) {
+            return;
+        }
+        long suppressed = acquire(operation, kind);
+        if (suppressed < 0) {
+            return;
+        }
+        LoggingEventBuilder event = log.atLevel(level);
+        if (e != null) {
+            event = event.setCause(e);
+        }
+        if (suppressed > 0) {
+            message += "（前回の出力以降に同じエラーを" + suppressed + "件省略）";
+        }
+        event.log(message);
+    }
+
+    /**
+     * 出力するかどうかを判定
+     * @return 出力する場合は前回の出力以降に省略した件数、出力しない場合は-1
+     */
+    private long acquire(String operation, Class<?> kind) {
+        if (windowNanos <= 0) {
+            return 0;
+        }
+        String key = operation + '/' + kind.getName();
+        Window window = windows.get(key);
+        if (window == null) {
+            window = windows.computeIfAbsent(key, k -> new Window(operation));
+        }
+        long now = System.nanoTime();
+        long last = window.lastLogged.get();
+        // 期間が過ぎていれば、最初に更新できたスレッドのみ出力する
+        if (now - last >= windowNanos && window.lastLogged.compareAndSet(last, now)) {
+            return window.suppressed.sumThenReset();
+        }
+        window.suppressed.increment();
+        window.suppressedCounter.increment();
+        return -1;
+    }
+
+    /**
+     * 操作と例外の種類の組み合わせごとの出力状況
+     */
+    private final class Window {
+        private final AtomicLong lastLogged = new AtomicLong(System.nanoTime() - windowNanos);
+        private final LongAdder suppressed = new LongAdder();
+        private final Counter suppressedCounter;
+
+        private Window(String operation) {
+            suppressedCounter = Counter.builder("logging.errors.suppressed")
+                .description("間引いたため出力しなかったエラーログの数")
+                .tag("operation", operation)
+                .register(meterRegistry);
+        }
+    }
+}
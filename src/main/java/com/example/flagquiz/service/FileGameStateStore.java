@@ -0,0 +1,494 @@
+package com.example.flagquiz.service;
+
+import com.example.flagquiz.model.GameState;
+import com.example.flagquiz.model.GameStateCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * ファイルに保存するゲーム状態ストア
+ * メモリマップドファイルへの追記ログとして保存し、再起動時はログを読み直して復元する
+ * 上書き・削除・期限切れで不要になった領域が増えたら、有効なレコードのみのファイルに作り直す（コンパクション）
+ * コンパクションはバックグラウンドのスレッドで行い、ロックを保持するのは最後の差分のコピーと置き換えの間のみ
+ * （仮想スレッドを固定しないよう、synchronizedではなくReentrantLockを使う）
+ *
+ * レコード形式:
+ * <pre>
+ *   length   4 bytes 以降のバイト数（0はログの終端）
+ *   type     1 byte  1: 保存、2: 削除
+ *   savedAt  8 bytes 保存時刻（エポックミリ秒）
+ *   id       2 bytesの長さ＋UTF-8
+ *   payload  GameStateCodecの出力（保存の場合のみ）
+ * </pre>
+ * 長さは本体を書き終えてから書き込むため、書き込み途中で停止したレコードは読み飛ばされる
+ */
+public class FileGameStateStore implements GameStateStore {
+
+    private static final Logger log = LoggerFactory.getLogger(FileGameStateStore.class);
+
+    private static final byte TYPE_PUT = 1;
+    private static final byte TYPE_DELETE = 2;
+    // length + type + savedAt + idの長さ
+    private static final int HEADER_SIZE = 4 + 1 + 8 + 2;
+
+    private final MeterRegistry meterRegistry;
+
+    // 最後に保存してからゲーム状態を保持する時間
+    private final Duration ttl;
+
+    // ログファイルのパス
+    private final Path logFile;
+
+    // 最初にマップする領域のサイズ（不足したら倍に拡張する）
+    private final DataSize initialSize;
+
+    // ログがこのサイズ以上、かつ半分以上が不要な領域になったらコンパクションする
+    private final DataSize compactMinSize;
+
+    // 期限切れのゲームを索引から取り除き、コンパクションの要否を確認する間隔
+    private final Duration sweepInterval;
+
+    /**
+     * 有効なレコードの位置
+     * @param offset レコード先頭の位置
+     * @param size レコード全体のバイト数
+     * @param savedAt 保存時刻（エポックミリ秒）
+     */
+    private record Slot(int offset, int size, long savedAt) {
+    }
+
+    // 索引・書き込み位置・マップした領域を保護する
+    private final ReentrantLock lock = new ReentrantLock();
+    // updateで同じゲームの読み込みから保存までを順に行うためのロック（ゲームIDのハッシュ値で分割）
+    private static final int UPDATE_STRIPES = 64;
+    private final ReentrantLock[] updateLocks = Stream.generate(ReentrantLock::new)
+        .limit(UPDATE_STRIPES)
+        .toArray(ReentrantLock[]::new);
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int writePosition;
+
+    // ゲームID → 最新レコードの位置
+    private Map<String, Slot> index = new HashMap<>();
+    // 有効なレコードの合計バイト数
+    private long liveBytes;
+
+    // コンパクションと期限切れの掃除を行うスレッド
+    private ScheduledExecutorService maintenance;
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+
+    private Counter compactions;
+
+    /**
+     * ログファイルを開いて読み直し、期限切れの掃除を開始する
+     * @param meterRegistry メトリクスの登録先
+     * @param ttl 最後に保存してからゲーム状態を保持する時間
+     * @param path ログファイルのパス
+     * @param initialSize 最初にマップする領域のサイズ
+     * @param compactMinSize コンパクションするログの最小サイズ
+     * @param sweepInterval 期限切れの掃除とコンパクションの要否の確認の間隔
+     */
+    public FileGameStateStore(MeterRegistry meterRegistry, Duration ttl, String path,
+                              DataSize initialSize, DataSize compactMinSize, Duration sweepInterval) {
+        this.meterRegistry = meterRegistry;
+        this.ttl = ttl;
+        this.logFile = Path.of(path).toAbsolutePath();
+        this.initialSize = initialSize;
+        this.compactMinSize = compactMinSize;
+        this.sweepInterval = sweepInterval;
+
+        try {
+            Files.createDirectories(logFile.getParent());
+            map();
+            replay();
+        } catch (IOException e) {
+            throw new UncheckedIOException("ゲーム状態ファイルを開けません: " + logFile, e);
+        }
+        log.info("ゲーム状態ファイルを読み込みました: {}件 ({})", index.size(), logFile);
+
+        Gauge.builder("game.store.games", this, FileGameStateStore::size)
+            .description("保存しているゲーム数")
+            .tag("type", "file")
+            .register(meterRegistry);
+        Gauge.builder("game.store.file.bytes", this, FileGameStateStore::fileBytes)
+            .description("ゲーム状態ログの使用バイト数")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        compactions = Counter.builder("game.store.file.compactions")
+            .description("ゲーム状態ログのコンパクション回数")
+            .register(meterRegistry);
+
+        maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "game-store-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenance.scheduleWithFixedDelay(this::maintain,
+            sweepInterval.toMillis(), sweepInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        maintenance.shutdownNow();
+        lock.lock();
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("ゲーム状態ファイルを閉じられません: " + logFile, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public GameState load(String gameId) {
+        byte[] payload;
+        lock.lock();
+        try {
+            Slot slot = index.get(gameId);
+            if (slot == null) {
+                return null;
+            }
+            if (isExpired(slot, System.currentTimeMillis())) {
+                index.remove(gameId);
+                liveBytes -= slot.size();
+                return null;
+            }
+
+            int payloadOffset = slot.offset() + HEADER_SIZE + buffer.getShort(slot.offset() + 13);
+            payload = new byte[slot.offset() + slot.size() - payloadOffset];
+            buffer.get(payloadOffset, payload);
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            return GameStateCodec.decode(payload);
+        } catch (IOException e) {
+            log.warn("ゲーム状態の復元に失敗しました: {}", e.toString());
+            return null;
+        }
+    }
+
+    @Override
+    public void save(String gameId, GameState state) {
+        // エンコードはロックの外で行う
+        byte[] payload = GameStateCodec.encode(state);
+        long now = System.currentTimeMillis();
+        lock.lock();
+        try {
+            int offset = append(TYPE_PUT, gameId, now, payload);
+            Slot previous = index.put(gameId, new Slot(offset, writePosition - offset, now));
+            liveBytes += writePosition - offset - (previous != null ? previous.size() : 0);
+        } finally {
+            lock.unlock();
+        }
+        scheduleCompactionIfNeeded();
+    }
+
+    @Override
+    public GameState update(String gameId, UnaryOperator<GameState> updater) {
+        // ファイル全体のロックはload・saveの中でのみ保持し、他のゲームの読み書きを待たせない
+        ReentrantLock updateLock = updateLocks[Math.floorMod(gameId.hashCode(), UPDATE_STRIPES)];
+        updateLock.lock();
+        try {
+            GameState state = load(gameId);
+            if (state == null) {
+                return null;
+            }
+            GameState updated = updater.apply(state);
+            save(gameId, updated);
+            return updated;
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    @Override
+    public void delete(String gameId) {
+        lock.lock();
+        try {
+            Slot previous = index.remove(gameId);
+            if (previous == null) {
+                return;
+            }
+            liveBytes -= previous.size();
+            append(TYPE_DELETE, gameId, System.currentTimeMillis(), new byte[0]);
+        } finally {
+            lock.unlock();
+        }
+        scheduleCompactionIfNeeded();
+    }
+
+    private int size() {
+        lock.lock();
+        try {
+            return index.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int fileBytes() {
+        lock.lock();
+        try {
+            return writePosition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isExpired(Slot slot, long now) {
+        return slot.savedAt() + ttl.toMillis() < now;
+    }
+
+    /**
+     * ログファイルを開いてマップする
+     */
+    private void map() throws IOException {
+        channel = FileChannel.open(logFile,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+            Math.max(channel.size(), initialSize.toBytes()));
+    }
+
+    /**
+     * 先頭からレコードを読み直して索引を作る
+     */
+    private void replay() {
+        index.clear();
+        liveBytes = 0;
+        long now = System.currentTimeMillis();
+        int position = 0;
+        while (position + HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + 4 + length > buffer.capacity()) {
+                break;
+            }
+            byte type = buffer.get(position + 4);
+            long savedAt = buffer.getLong(position + 5);
+            byte[] id = new byte[buffer.getShort(position + 13)];
+            buffer.get(position + HEADER_SIZE, id);
+            String gameId = new String(id, StandardCharsets.UTF_8);
+
+            Slot previous = type == TYPE_PUT
+                ? index.put(gameId, new Slot(position, 4 + length, savedAt))
+                : index.remove(gameId);
+            liveBytes += (type == TYPE_PUT ? 4 + length : 0) - (previous != null ? previous.size() : 0);
+            position += 4 + length;
+        }
+        writePosition = position;
+
+        // 期限切れのゲームは読み込まない
+        removeExpired(now);
+    }
+
+    /**
+     * 期限切れのゲームを索引から取り除く（読み込まれずに期限切れになったゲームも不要な領域として数える）
+     * ロックを保持した状態で呼び出すこと
+     * @return 取り除いたゲーム数
+     */
+    private int removeExpired(long now) {
+        int removed = 0;
+        Iterator<Slot> slots = index.values().iterator();
+        while (slots.hasNext()) {
+            Slot slot = slots.next();
+            if (isExpired(slot, now)) {
+                liveBytes -= slot.size();
+                slots.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * レコードをログの末尾に追記
+     * @return 追記したレコードの先頭位置
+     */
+    private int append(byte type, String gameId, long savedAt, byte[] payload) {
+        byte[] id = gameId.getBytes(StandardCharsets.UTF_8);
+        int recordSize = HEADER_SIZE + id.length + payload.length;
+        ensureCapacity(recordSize);
+
+        int offset = writePosition;
+        buffer.put(offset + 4, type);
+        buffer.putLong(offset + 5, savedAt);
+        buffer.putShort(offset + 13, (short) id.length);
+        buffer.put(offset + HEADER_SIZE, id);
+        buffer.put(offset + HEADER_SIZE + id.length, payload);
+        // 本体を書き終えてから長さを書き込む
+        buffer.putInt(offset, recordSize - 4);
+        writePosition += recordSize;
+        return offset;
+    }
+
+    /**
+     * 追記する領域が足りない場合はマップする領域を拡張
+     */
+    private void ensureCapacity(int recordSize) {
+        // 終端を示す長さ0の分も確保しておく
+        long required = (long) writePosition + recordSize + 4;
+        if (required <= buffer.capacity()) {
+            return;
+        }
+        long newSize = Math.max(required, (long) buffer.capacity() * 2);
+        if (newSize > Integer.MAX_VALUE) {
+            throw new IllegalStateException("ゲーム状態ファイルが上限サイズに達しました");
+        }
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("ゲーム状態ファイルを拡張できません", e);
+        }
+    }
+
+    private boolean needsCompaction() {
+        return writePosition >= compactMinSize.toBytes() && liveBytes * 2 <= writePosition;
+    }
+
+    /**
+     * コンパクションが必要であればバックグラウンドで実行する（リクエストを処理するスレッドでは行わない）
+     */
+    private void scheduleCompactionIfNeeded() {
+        boolean needed;
+        lock.lock();
+        try {
+            needed = needsCompaction();
+        } finally {
+            lock.unlock();
+        }
+        if (needed && compactionScheduled.compareAndSet(false, true)) {
+            maintenance.execute(this::maintain);
+        }
+    }
+
+    /**
+     * 期限切れのゲームを取り除き、必要であればコンパクションする（メンテナンス用のスレッドで実行）
+     */
+    void maintain() {
+        compactionScheduled.set(false);
+        boolean needed;
+        lock.lock();
+        try {
+            removeExpired(System.currentTimeMillis());
+            needed = needsCompaction();
+        } finally {
+            lock.unlock();
+        }
+        if (!needed) {
+            return;
+        }
+        try {
+            compact();
+        } catch (IOException | RuntimeException e) {
+            log.error("ゲーム状態ファイルのコンパクションに失敗しました", e);
+        }
+    }
+
+    /**
+     * 有効なレコードのみを新しいファイルに書き出し、元のファイルと置き換える
+     * 書き出しはロックの外で索引のスナップショットから行い、その間に追記されたレコードは置き換えの直前にまとめてコピーする
+     */
+    void compact() throws IOException {
+        // 1. 現時点の有効なレコードと書き込み位置を取得
+        Map<String, Slot> snapshot;
+        MappedByteBuffer source;
+        int snapshotEnd;
+        lock.lock();
+        try {
+            removeExpired(System.currentTimeMillis());
+            snapshot = new HashMap<>(index);
+            source = buffer;
+            snapshotEnd = writePosition;
+        } finally {
+            lock.unlock();
+        }
+
+        // 2. ロックを保持せずに新しいファイルへ書き出す（追記済みの領域は変更されない）
+        Path temp = Files.createTempFile(logFile.getParent(), "games", ".compact");
+        Map<String, Slot> compacted = new HashMap<>(snapshot.size() * 2);
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            int copied = 0;
+            for (Map.Entry<String, Slot> entry : snapshot.entrySet()) {
+                Slot slot = entry.getValue();
+                out.write(source.slice(slot.offset(), slot.size()));
+                compacted.put(entry.getKey(), new Slot(copied, slot.size(), slot.savedAt()));
+                copied += slot.size();
+            }
+            out.force(true);
+
+            // 3. 書き出し中に追記されたレコードをコピーし、索引を新しいファイルの位置に付け替えて置き換える
+            lock.lock();
+            try {
+                int tail = writePosition - snapshotEnd;
+                out.write(buffer.slice(snapshotEnd, tail));
+                out.force(true);
+
+                Map<String, Slot> rebuilt = new HashMap<>(index.size() * 2);
+                long rebuiltBytes = 0;
+                for (Map.Entry<String, Slot> entry : index.entrySet()) {
+                    Slot slot = entry.getValue();
+                    Slot moved;
+                    if (slot.offset() >= snapshotEnd) {
+                        moved = new Slot(copied + slot.offset() - snapshotEnd, slot.size(), slot.savedAt());
+                    } else {
+                        // 書き出し中に変更されていないレコード（変更されていれば追記した位置を指している）
+                        moved = compacted.get(entry.getKey());
+                    }
+                    if (moved != null) {
+                        rebuilt.put(entry.getKey(), moved);
+                        rebuiltBytes += moved.size();
+                    }
+                }
+
+                buffer.force();
+                channel.close();
+                try {
+                    Files.move(temp, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    // 置き換えられなかった場合は元のファイルを使い続ける
+                    map();
+                    throw e;
+                }
+                map();
+                index = rebuilt;
+                liveBytes = rebuiltBytes;
+                writePosition = copied + tail;
+            } finally {
+                lock.unlock();
+            }
+            compactions.increment();
+            log.info("ゲーム状態ファイルをコンパクションしました: {}件, {} bytes", compacted.size(), copied);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
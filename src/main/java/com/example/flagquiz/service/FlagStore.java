@@ -0,0 +1,359 @@
+package com.example.flagquiz.service;
+
+import com.example.flagquiz.model.Country;
+import com.example.flagquiz.model.CountryCatalog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Executors;
+
+/**
+ * 国旗画像のローカルストア
+ * flags.store.path のディレクトリに {ISOコード}.png として保存した画像をメモリマップし、ETagの算出と配信に使う
+ * ディレクトリにない国旗はリクエストを待たせずにバックグラウンドで flags.upstream-url から一度だけ取得して保存する。
+ * 取得が終わるまで（失敗した場合は flags.retry-interval の間）は、同じ国旗のリクエストでファイルを確認しない。
+ * 起動時に同梱カタログの全ての国旗をバックグラウンドで取得しておくこともできる（flags.seed-on-startup）
+ * （コンテナイメージではビルド時に全ての国旗を取得して同梱する）
+ */
+@Component
+public class FlagStore {
+
+    private static final Logger log = LoggerFactory.getLogger(FlagStore.class);
+
+    /**
+     * 配信する国旗画像
+     * @param bytes 画像データ（メモリマップした読み取り専用の領域。配信時はduplicateして使う）
+     * @param etag 内容から算出した強いETag（引用符付き）
+     * @param file 画像ファイルの絶対パス（マップした後に置き換えないため、bytesと同じ内容）
+     */
+    public record FlagImage(ByteBuffer bytes, String etag, Path file) {
+        public int size() {
+            return bytes.capacity();
+        }
+    }
+
+    // PNGファイルの先頭8バイト
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+
+    @Autowired
+    private CountryCatalog countryCatalog;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 国旗画像を保存するディレクトリ
+    @Value("${flags.store.path:data/flags}")
+    private String path;
+
+    // ローカルにない国旗の取得元（末尾に {ISOコード}.png を付ける。空の場合は取得しない）
+    @Value("${flags.upstream-url:https://flagcdn.com/h240/}")
+    private String upstreamUrl;
+
+    // 起動時に全ての国旗を取得しておくかどうか
+    @Value("${flags.seed-on-startup:true}")
+    private boolean seedOnStartup;
+
+    @Value("${flags.upstream-timeout:5s}")
+    private Duration upstreamTimeout;
+
+    // 取得に失敗した国旗を再度取得するまでの間隔（その間は取得元に問い合わせない）
+    @Value("${flags.retry-interval:1m}")
+    private Duration retryInterval;
+
+    private Path directory;
+    private OkHttpClient httpClient;
+    // 取得元からの取得（起動時の準備・ローカルにない国旗の取得）を行うスレッド
+    private ExecutorService fetchExecutor;
+
+    // ISOコード → メモリマップ済みの画像
+    private final ConcurrentHashMap<String, FlagImage> images = new ConcurrentHashMap<>();
+    // 取得中の国旗（同じ国旗の取得は1回にまとめる）
+    private final ConcurrentHashMap<String, CompletableFuture<FlagImage>> fetching = new ConcurrentHashMap<>();
+    // 取得に失敗した国旗 → 失敗した時刻（System.nanoTime）
+    private final ConcurrentHashMap<String, Long> failedAt = new ConcurrentHashMap<>();
+    // ローカルになく、バックグラウンドで取得中の国旗（取得が終わるまでファイルを確認しない）
+    private final Set<String> missing = ConcurrentHashMap.newKeySet();
+
+    private Counter memoryCounter;
+    private Counter diskCounter;
+    private Counter fetchCounter;
+    private Counter missingCounter;
+
+    @PostConstruct
+    void init() throws IOException {
+        directory = Path.of(path);
+        Files.createDirectories(directory);
+        httpClient = new OkHttpClient.Builder()
+            .callTimeout(upstreamTimeout)
+            .build();
+
+        memoryCounter = lookupCounter("memory");
+        diskCounter = lookupCounter("disk");
+        fetchCounter = lookupCounter("fetch");
+        missingCounter = lookupCounter("missing");
+        Gauge.builder("flags.store.mapped", images, ConcurrentHashMap::size)
+            .description("メモリマップ済みの国旗画像数")
+            .register(meterRegistry);
+
+        if (!upstreamUrl.isBlank()) {
+            // 起動時の準備中もローカルにない国旗を取得できるよう2スレッドにする
+            fetchExecutor = Executors.newFixedThreadPool(2, runnable -> {
+                Thread thread = new Thread(runnable, "flag-fetch");
+                thread.setDaemon(true);
+                return thread;
+            });
+            if (seedOnStartup) {
+                fetchExecutor.execute(this::seed);
+            }
+        }
+    }
+
+    private Counter lookupCounter(String result) {
+        return Counter.builder("flags.lookups")
+            .tag("result", result)
+            .description("国旗画像の取得元ごとの件数（memory: マップ済み、disk: ファイルからマップ、missing: ローカルになし、fetch: 取得元から保存）")
+            .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (fetchExecutor != null) {
+            fetchExecutor.shutdownNow();
+        }
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+    }
+
+    /**
+     * 国旗画像を取得
+     * ローカルにない場合は取得を待たずにnullを返し、取得元からの取得をバックグラウンドで始める
+     * @param isoCode ISO 3166-1 alpha-2 コード（大文字・小文字は区別しない）
+     * @return 国旗画像、カタログにない国またはローカルにない場合はnull
+     */
+    public FlagImage get(String isoCode) {
+        Country country = countryCatalog.findByIso(isoCode);
+        if (country == null) {
+            return null;
+        }
+        String iso = country.isoCode();
+
+        FlagImage image = images.get(iso);
+        if (image != null) {
+            memoryCounter.increment();
+            return image;
+        }
+
+        // 取得中、または直近で取得できなかった国旗はファイルを確認しない
+        if (missing.contains(iso) || recentlyFailed(iso)) {
+            missingCounter.increment();
+            return null;
+        }
+
+        image = loadFromDisk(iso);
+        if (image != null) {
+            diskCounter.increment();
+            return image;
+        }
+
+        missingCounter.increment();
+        if (fetchExecutor == null) {
+            // 取得元がない場合は、再試行の間隔が経過するまでファイルを確認しない
+            failedAt.put(iso, System.nanoTime());
+        } else if (missing.add(iso)) {
+            try {
+                fetchExecutor.execute(() -> {
+                    try {
+                        fetch(iso);
+                    } finally {
+                        missing.remove(iso);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // 停止中の場合
+                missing.remove(iso);
+            }
+        }
+        return null;
+    }
+
+    private boolean recentlyFailed(String iso) {
+        Long failed = failedAt.get(iso);
+        return failed != null && System.nanoTime() - failed < retryInterval.toNanos();
+    }
+
+    /**
+     * ローカルにない国旗の取得元のURL
+     * @param isoCode ISO 3166-1 alpha-2 コード（大文字・小文字は区別しない）
+     * @return 取得元のURL、カタログにない国または取得元を設定していない場合はnull
+     */
+    public String upstreamLocation(String isoCode) {
+        Country country = countryCatalog.findByIso(isoCode);
+        if (country == null || upstreamUrl.isBlank()) {
+            return null;
+        }
+        return upstreamUrl + country.isoCode() + ".png";
+    }
+
+    /**
+     * ディレクトリ内の画像ファイルをメモリマップ
+     * @return 画像、ファイルがないか読み込めない場合はnull
+     */
+    private FlagImage loadFromDisk(String iso) {
+        Path file = directory.resolve(iso + ".png");
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // マップした領域はチャネルを閉じた後も有効
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (!isPng(mapped)) {
+                log.warn("PNGではない国旗ファイルを無視しました: {}", file);
+                return null;
+            }
+            FlagImage image = new FlagImage(mapped.asReadOnlyBuffer(), etagOf(mapped), file.toAbsolutePath());
+            FlagImage existing = images.putIfAbsent(iso, image);
+            return existing != null ? existing : image;
+
+        } catch (IOException e) {
+            log.warn("国旗ファイルの読み込みに失敗しました: {} - {}", file, e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * 取得元から国旗を取得してディレクトリに保存し、メモリマップ
+     * 同じ国旗を同時に取得しようとした場合は、先に始めた取得の結果を共有する
+     * @return 画像、取得できなかった場合はnull
+     */
+    private FlagImage fetch(String iso) {
+        if (upstreamUrl.isBlank()) {
+            return null;
+        }
+        if (recentlyFailed(iso)) {
+            return null;
+        }
+
+        CompletableFuture<FlagImage> created = new CompletableFuture<>();
+        CompletableFuture<FlagImage> existing = fetching.putIfAbsent(iso, created);
+        if (existing != null) {
+            return existing.join();
+        }
+
+        FlagImage image = null;
+        try {
+            download(iso);
+            image = loadFromDisk(iso);
+            if (image != null) {
+                fetchCounter.increment();
+            }
+        } catch (IOException e) {
+            log.warn("国旗の取得に失敗しました: {} - {}", iso, e.toString());
+        } finally {
+            if (image == null) {
+                failedAt.put(iso, System.nanoTime());
+            } else {
+                failedAt.remove(iso);
+            }
+            fetching.remove(iso, created);
+            created.complete(image);
+        }
+        return image;
+    }
+
+    /**
+     * 取得元から国旗をダウンロードし、一時ファイル経由でディレクトリに保存
+     */
+    private void download(String iso) throws IOException {
+        Request request = new Request.Builder().url(upstreamUrl + iso + ".png").build();
+        try (Response response = httpClient.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new IOException("HTTPコード: " + response.code());
+            }
+            byte[] bytes = response.body().bytes();
+            if (!isPng(ByteBuffer.wrap(bytes))) {
+                throw new IOException("PNG形式ではありません");
+            }
+
+            // 書き込み途中のファイルをマップしないよう、書き終えてから置き換える
+            Path temp = Files.createTempFile(directory, iso, ".tmp");
+            try {
+                Files.write(temp, bytes);
+                Files.move(temp, directory.resolve(iso + ".png"),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * ディレクトリにない国旗をすべて取得
+     */
+    private void seed() {
+        int fetched = 0;
+        for (Country country : countryCatalog.all()) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            if (!images.containsKey(country.isoCode()) && loadFromDisk(country.isoCode()) == null
+                    && fetch(country.isoCode()) != null) {
+                fetched++;
+            }
+        }
+        log.info("国旗画像を準備しました（{}件、うち新規取得{}件）", images.size(), fetched);
+    }
+
+    private static boolean isPng(ByteBuffer buffer) {
+        if (buffer.remaining() < PNG_SIGNATURE.length) {
+            return false;
+        }
+        for (int i = 0; i < PNG_SIGNATURE.length; i++) {
+            if (buffer.get(buffer.position() + i) != PNG_SIGNATURE[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 画像の内容から強いETagを算出（SHA-256の先頭16バイト）
+     */
+    private static String etagOf(ByteBuffer buffer) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(buffer.duplicate());
+            return "\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
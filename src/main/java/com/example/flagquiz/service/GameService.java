@@ -1,11 +1,22 @@
 package com.example.flagquiz.service;
 
+import com.example.flagquiz.config.LoggingContextFilter;
+import com.example.flagquiz.model.Country;
 import com.example.flagquiz.model.GameState;
+import com.example.flagquiz.model.PlayedCountries;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import jakarta.servlet.http.HttpSession;
-import java.util.ArrayList;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 /**
  * ゲームサービス - 国旗クイズゲームのメインロジックを管理
@@ -14,10 +25,75 @@ import java.util.ArrayList;
 @Service
 public class GameService {
     
+    private static final Logger log = LoggerFactory.getLogger(GameService.class);
+    
     // Gemini AIサービスを注入（質問検証、回答生成、ヒント生成用）
     @Autowired
     private GeminiService geminiService;
 
+    // 事前生成済みの国データプール（country.source=llm の場合の新規ゲーム開始用）
+    @Autowired
+    private CountryPool countryPool;
+
+    // 同梱カタログからの出題国の選択（country.source=catalog の場合の新規ゲーム開始用）
+    @Autowired
+    private CountrySampler countrySampler;
+
+    // 質問のルール判定（属性を尋ねる質問はGemini AIに問い合わせずに回答）
+    @Autowired
+    private QuestionRules questionRules;
+
+    // ローカル回答照合（明確な正誤はGemini AIに問い合わせずに判定）
+    @Autowired
+    private AnswerMatcher answerMatcher;
+
+    // 同梱データによるヒント（テーブルにない国のみGemini AIで生成）
+    @Autowired
+    private HintTable hintTable;
+
+    // ゲーム状態の保存先（セッションにはゲームIDのみ保持）
+    @Autowired
+    private GameStateStore gameStateStore;
+
+    // セッションごとのGemini AI呼び出し数の制限
+    @Autowired
+    private GeminiRateLimiter rateLimiter;
+
+    // リクエストごとの処理区間の記録（ゲーム状態の読み書き・出題国の選択・質問のルール判定）
+    @Autowired
+    private RequestTracer tracer;
+
+    // 出題国の選び方（catalog: 同梱カタログから一様に選ぶ、llm: Gemini AIに選ばせる）
+    @Value("${country.source:catalog}")
+    private String countrySource;
+
+    // セッションに保持するゲームIDの属性名
+    private static final String GAME_ID_ATTRIBUTE = "gameId";
+
+    // セッションに保持する出題済みの国の属性名
+    private static final String PLAYED_COUNTRIES_ATTRIBUTE = "playedCountries";
+
+    // 不適切な質問へのメッセージ
+    private static final String INVALID_QUESTION_MESSAGE = "質問は Yes/No で回答できる形式で、答えに直結しない内容にしてください。";
+
+    /**
+     * セッションに対応するゲーム状態を取得
+     * @param session HTTPセッション
+     * @return ゲーム状態、ゲームが開始されていない場合はnull
+     */
+    public GameState getGameState(HttpSession session) {
+        String gameId = (String) session.getAttribute(GAME_ID_ATTRIBUTE);
+        if (gameId == null) {
+            return null;
+        }
+        int span = tracer.start("gameState.load");
+        try {
+            return gameStateStore.load(gameId);
+        } finally {
+            tracer.end(span);
+        }
+    }
+
     /**
      * セッションから有効なゲーム状態を取得
      * @param session HTTPセッション
@@ -25,40 +101,110 @@ public class GameService {
      * @throws RuntimeException ゲームが開始されていない場合
      */
     private GameState getValidGameState(HttpSession session) {
-        GameState gameState = (GameState) session.getAttribute("gameState");
+        GameState gameState = getGameState(session);
         if (gameState == null) {
             throw new RuntimeException("ゲームが開始されていません");
         }
         return gameState;
     }
 
+    /**
+     * ゲーム状態を不可分に変更して保存（同じゲームへの同時のリクエストが互いの変更を上書きしないようにする）
+     * @param gameId ゲームID
+     * @param updater 現在のゲーム状態を変更する処理（回数の確認もこの中で行う）
+     * @return 保存したゲーム状態
+     * @throws RuntimeException ゲームが開始されていない・終了した場合、またはupdaterが投げた例外
+     */
+    private GameState updateGameState(String gameId, UnaryOperator<GameState> updater) {
+        if (gameId == null) {
+            throw new RuntimeException("ゲームが開始されていません");
+        }
+        int span = tracer.start("gameState.update");
+        try {
+            GameState updated = gameStateStore.update(gameId, updater);
+            if (updated == null) {
+                throw new RuntimeException("ゲームが終了しました");
+            }
+            return updated;
+        } finally {
+            tracer.end(span);
+        }
+    }
+
+    private static String gameId(HttpSession session) {
+        return (String) session.getAttribute(GAME_ID_ATTRIBUTE);
+    }
+
     /**
      * 新しいゲームを開始
      * @param session HTTPセッション
      * @throws Exception 国データ生成に失敗した場合
+     * @throws GeminiRateLimiter.SessionLimitExceededException セッションの呼び出し数の上限を超えた場合（country.source=llm のみ）
      */
     public void startNewGame(HttpSession session) throws Exception {
+        if ("llm".equals(countrySource)) {
+            // 新規ゲームの連打でプールを使い切られないよう、セッションの予算から差し引く
+            rateLimiter.checkSession(session.getId());
+        }
+        int span = tracer.start("newGame");
         try {
-            // Gemini AIから新しい国データを取得
-            String[] countryData = geminiService.generateRandomCountryAndFlag();
-            
-            // 新しいゲーム状態を作成
-            GameState gameState = new GameState(countryData[0], countryData[1], countryData[2]);
+            GameState gameState = "llm".equals(countrySource)
+                ? newGameFromPool()
+                : newGameFromCatalog(session);
             
-            // セッションに保存
-            session.setAttribute("gameState", gameState);
+            // 前のゲームを破棄し、新しいゲームIDで保存
+            String previousGameId = (String) session.getAttribute(GAME_ID_ATTRIBUTE);
+            if (previousGameId != null) {
+                gameStateStore.delete(previousGameId);
+            }
+            String gameId = UUID.randomUUID().toString();
+            gameStateStore.save(gameId, gameState);
+            session.setAttribute(GAME_ID_ATTRIBUTE, gameId);
             
-            System.out.println("新しいゲームが開始されました: " + countryData[1]);
+            // 以降のログは新しいゲームIDで出力する（セッションを作成したリクエストではセッションも）
+            MDC.put(LoggingContextFilter.SESSION_KEY, LoggingContextFilter.sessionHash(session.getId()));
+            MDC.put(LoggingContextFilter.GAME_KEY, gameId);
+            log.info("新しいゲームが開始されました: {}", gameState.getCurrentCountryJapanese());
             
         } catch (Exception e) {
-            System.err.println("ゲーム開始中にエラーが発生しました: " + e.getMessage());
+            log.warn("ゲーム開始中にエラーが発生しました: {}", e.getMessage());
             throw new Exception("ゲームの開始に失敗しました: " + e.getMessage(), e);
+        } finally {
+            tracer.end(span);
         }
     }
 
-    public String askQuestion(String questionText, HttpSession session) throws Exception {
-        GameState gameState = getValidGameState(session);
-        
+    /**
+     * 同梱カタログの未出題の国から新しいゲーム状態を作成（ネットワーク呼び出しなし）
+     * @param session HTTPセッション（出題済みの国を保持する）
+     * @return ゲーム状態
+     */
+    private GameState newGameFromCatalog(HttpSession session) {
+        PlayedCountries played = (PlayedCountries) session.getAttribute(PLAYED_COUNTRIES_ATTRIBUTE);
+        if (played == null) {
+            played = countrySampler.newPlayedCountries();
+        }
+        GameState previous = getGameState(session);
+        Country country = countrySampler.sample(played, previous != null ? previous.getCountry() : null);
+        // セッションの永続化・複製に反映されるよう、変更のたびに設定し直す
+        session.setAttribute(PLAYED_COUNTRIES_ATTRIBUTE, played);
+        return new GameState(country);
+    }
+
+    /**
+     * 国データプールから新しいゲーム状態を作成（空の場合のみGemini AIを同期呼び出し）
+     * @return ゲーム状態
+     */
+    private GameState newGameFromPool() {
+        String[] countryData = countryPool.take();
+        return new GameState(countryData[0], countryData[1], countryData[2]);
+    }
+
+    /**
+     * 質問できる状態かどうかを確認
+     * @throws RuntimeException 質問回数が残っていない、または質問が空の場合
+     */
+    private void checkQuestion(GameState gameState, String questionText) {
         if (gameState.getQuestionsLeft() <= 0) {
             throw new RuntimeException("質問回数が残っていません");
         }
@@ -66,43 +212,281 @@ public class GameService {
         if (questionText == null || questionText.trim().isEmpty()) {
             throw new RuntimeException("質問を入力してください");
         }
+    }
+
+    /**
+     * 質問に回答し、質問履歴に追加
+     * Gemini AIの応答はリクエストのスレッドで待たず、返すFutureで通知する
+     * @param questionText ユーザーからの質問文
+     * @param session HTTPセッション
+     * @return 回答を返すFuture（不適切な質問、または生成中にゲームが終了した場合は失敗する）
+     * @throws RuntimeException 質問できない状態、またはセッションの呼び出し数の上限を超えた場合
+     */
+    public CompletableFuture<String> askQuestion(String questionText, HttpSession session) {
+        GameState gameState = getValidGameState(session);
+        checkQuestion(gameState, questionText);
         
-        boolean isValid = geminiService.validateQuestion(questionText, gameState.getCurrentCountryEnglish());
-        if (!isValid) {
-            throw new RuntimeException("質問は Yes/No で回答できる形式で、答えに直結しない内容にしてください。");
+        // 属性を尋ねる質問はローカルで回答し、それ以外のみGemini AIで検証・回答する
+        String answer = answerByRules(questionText, gameState);
+        if (answer != null) {
+            recordAnswer(gameId(session), questionText, answer);
+            return CompletableFuture.completedFuture(answer);
+        }
+        return answerWithGemini(session, gameState, questionText);
+    }
+
+    /**
+     * Gemini AIで質問を検証・回答し、質問履歴に追加
+     * API呼び出しの前に質問回数を1回分確保し（同時の質問で回数を超えないようにする）、不適切な質問・失敗の場合は戻す
+     * @return 回答を返すFuture
+     */
+    private CompletableFuture<String> answerWithGemini(HttpSession session, GameState gameState, String questionText) {
+        rateLimiter.checkSession(session.getId());
+        String gameId = gameId(session);
+        reserveQuestion(gameId, questionText);
+        CompletableFuture<String> recorded;
+        try {
+            recorded = geminiService.evaluateQuestion(questionText, gameState.getCurrentCountryEnglish())
+                .thenApply(result -> {
+                    if (!result.valid()) {
+                        throw new RuntimeException(INVALID_QUESTION_MESSAGE);
+                    }
+                    updateGameState(gameId, state -> {
+                        state.addLog(questionText, result.answer());
+                        return state;
+                    });
+                    return result.answer();
+                });
+        } catch (RuntimeException e) {
+            releaseQuestion(gameId);
+            throw e;
+        }
+        recorded.whenComplete((answer, error) -> {
+            if (error != null) {
+                releaseQuestion(gameId);
+            }
+        });
+        return recorded;
+    }
+
+    /**
+     * 回答を質問履歴に追加し、質問回数を減らして保存
+     */
+    private void recordAnswer(String gameId, String questionText, String answer) {
+        updateGameState(gameId, state -> {
+            checkQuestion(state, questionText);
+            state.addLog(questionText, answer);
+            state.setQuestionsLeft(state.getQuestionsLeft() - 1);
+            return state;
+        });
+    }
+
+    /**
+     * 回答の生成前に質問回数を1回分確保
+     * @throws RuntimeException 質問回数が残っていない場合
+     */
+    private void reserveQuestion(String gameId, String questionText) {
+        updateGameState(gameId, state -> {
+            checkQuestion(state, questionText);
+            state.setQuestionsLeft(state.getQuestionsLeft() - 1);
+            return state;
+        });
+    }
+
+    /**
+     * 回答できなかった質問の確保した回数を戻す（ゲームが終了していた場合は何もしない）
+     */
+    private void releaseQuestion(String gameId) {
+        try {
+            gameStateStore.update(gameId, state -> {
+                state.setQuestionsLeft(state.getQuestionsLeft() + 1);
+                return state;
+            });
+        } catch (RuntimeException e) {
+            log.warn("質問回数を戻せませんでした: {}", e.toString());
+        }
+    }
+
+    /**
+     * 属性を尋ねる質問にルールで回答
+     * @return 回答（ルールで判定できない場合はnull）
+     */
+    private String answerByRules(String questionText, GameState gameState) {
+        int span = tracer.start("questionRules");
+        try {
+            return questionRules.answer(questionText, gameState.getCountry());
+        } finally {
+            tracer.end(span);
+        }
+    }
+
+    /**
+     * ヒントを使用できる状態かどうかを確認
+     * @throws RuntimeException 不明・使用済みのヒント、またはヒント回数が残っていない場合
+     */
+    private void checkHint(GameState gameState, String hintType) {
+        if (!GameState.HINT_TYPES.contains(hintType)) {
+            throw new RuntimeException("不明なヒントの種類です");
         }
         
-        String answer = geminiService.answerQuestion(questionText, gameState.getCurrentCountryEnglish());
+        if (gameState.isHintUsed(hintType)) {
+            throw new RuntimeException("このヒントは既に使用されています");
+        }
+        
+        if (gameState.getHintsLeft() <= 0) {
+            throw new RuntimeException("ヒントは3回まで使用できます");
+        }
+    }
+
+    /**
+     * ヒントを取得（同梱データにない国のみGemini AIで生成）
+     * @param hintType ヒントの種類
+     * @param session HTTPセッション
+     * @return ヒントを返すFuture（生成に失敗した場合もフォールバックの文で完了する）
+     * @throws RuntimeException ヒントを使用できない状態、またはセッションの呼び出し数の上限を超えた場合
+     */
+    public CompletableFuture<String> getHint(String hintType, HttpSession session) {
+        GameState gameState = getValidGameState(session);
+        checkHint(gameState, hintType);
         
-        String logEntry = "Q: " + questionText + " → A: " + answer;
-        gameState.getGameLog().add(logEntry);
-        gameState.setQuestionsLeft(gameState.getQuestionsLeft() - 1);
+        String hint = hintTable.lookup(hintType, gameState.getCurrentCountryEnglish());
+        if (hint == null) {
+            // 上限を超えた場合はヒントを使用済みにしない
+            rateLimiter.checkSession(session.getId());
+        }
+        // 同時のリクエストで同じヒントを2回使えないよう、生成前に使用済みにする
+        // （生成に失敗した場合もフォールバックの文を返すため、戻さない）
+        reserveHint(gameId(session), hintType);
         
-        session.setAttribute("gameState", gameState);
-        return answer;
+        if (hint != null) {
+            return CompletableFuture.completedFuture(hint);
+        }
+        return geminiService.getHint(hintType, gameState.getCurrentCountryEnglish());
+    }
+
+    /**
+     * ヒントを使用済みにし、ヒント回数を減らして保存
+     * @throws RuntimeException ヒントを使用できない状態の場合
+     */
+    private void reserveHint(String gameId, String hintType) {
+        updateGameState(gameId, state -> {
+            checkHint(state, hintType);
+            state.markHintUsed(hintType);
+            state.setHintsLeft(state.getHintsLeft() - 1);
+            return state;
+        });
     }
 
-    public String getHint(String hintType, HttpSession session) throws Exception {
+    /**
+     * 質問への回答をストリーミングで生成
+     * 質問の検証と質問回数の確保は回答の生成前に行い、回答が完成した時点で質問履歴に追加する
+     * （失敗・キャンセルした場合は確保した質問回数を戻す）
+     * gemini.question.mode=combined の場合は検証と回答を1回のAPI呼び出しで行い、回答を1回で通知する
+     * （回答は「はい」「いいえ」のみで、ストリーミングで送る途中の文がないため）
+     * @param questionText ユーザーからの質問文
+     * @param session HTTPセッション
+     * @param onText 回答の断片を受け取るコールバック
+     * @return 回答全体を返すFuture（不適切な質問、または生成中にゲームが終了した場合は失敗する。
+     *         キャンセルするとGemini APIの呼び出しも中止する）
+     * @throws RuntimeException 質問できない状態、またはセッションの呼び出し数の上限を超えた場合
+     */
+    public CompletableFuture<String> streamQuestion(String questionText, HttpSession session, Consumer<String> onText) {
         GameState gameState = getValidGameState(session);
+        checkQuestion(gameState, questionText);
         
-        if (gameState.getHintsUsed().contains(hintType)) {
-            throw new RuntimeException("このヒントは既に使用されています");
+        // 属性を尋ねる質問はローカルで回答し、1回で通知する
+        String localAnswer = answerByRules(questionText, gameState);
+        if (localAnswer != null) {
+            recordAnswer(gameId(session), questionText, localAnswer);
+            onText.accept(localAnswer);
+            return CompletableFuture.completedFuture(localAnswer);
         }
         
-        if (gameState.getHintsLeft() <= 0) {
-            throw new RuntimeException("ヒントは3回まで使用できます");
+        if (geminiService.isCombinedMode()) {
+            return answerWithGemini(session, gameState, questionText).thenApply(answer -> {
+                onText.accept(answer);
+                return answer;
+            });
         }
         
-        String hint = geminiService.getHint(hintType, gameState.getCurrentCountryEnglish());
+        rateLimiter.checkSession(session.getId());
+        String gameId = gameId(session);
+        String country = gameState.getCurrentCountryEnglish();
+        reserveQuestion(gameId, questionText);
+        // 検証の後に開始した回答の生成（キャンセル時に中止する）
+        AtomicReference<CompletableFuture<String>> answer = new AtomicReference<>();
+        CompletableFuture<String> recorded;
+        try {
+            recorded = geminiService.validateQuestion(questionText, country)
+                .thenCompose(valid -> {
+                    if (!valid) {
+                        throw new RuntimeException(INVALID_QUESTION_MESSAGE);
+                    }
+                    answer.set(geminiService.streamAnswer(questionText, country, onText));
+                    return answer.get();
+                })
+                .thenApply(text -> {
+                    updateGameState(gameId, state -> {
+                        state.addLog(questionText, text);
+                        return state;
+                    });
+                    return text;
+                });
+        } catch (RuntimeException e) {
+            releaseQuestion(gameId);
+            throw e;
+        }
+        // キャンセル・失敗した場合は確保した質問回数を戻し、生成中の回答を中止する
+        recorded.whenComplete((text, error) -> {
+            if (error == null) {
+                return;
+            }
+            releaseQuestion(gameId);
+            CompletableFuture<String> upstream = answer.get();
+            if (recorded.isCancelled() && upstream != null) {
+                upstream.cancel(true);
+            }
+        });
+        return recorded;
+    }
+
+    /**
+     * ヒントをストリーミングで生成
+     * ヒントは生成前に使用済みにする（生成に失敗した場合もフォールバックの文を返すため）
+     * @param hintType ヒントの種類
+     * @param session HTTPセッション
+     * @param onText ヒントの断片を受け取るコールバック
+     * @return ヒント全体を返すFuture
+     * @throws RuntimeException ヒントを使用できない状態、またはセッションの呼び出し数の上限を超えた場合
+     */
+    public CompletableFuture<String> streamHint(String hintType, HttpSession session, Consumer<String> onText) {
+        GameState gameState = getValidGameState(session);
+        checkHint(gameState, hintType);
+        
+        String country = gameState.getCurrentCountryEnglish();
+        String hint = hintTable.lookup(hintType, country);
+        if (hint == null) {
+            // 上限を超えた場合はヒントを使用済みにしない
+            rateLimiter.checkSession(session.getId());
+        }
         
-        gameState.getHintsUsed().add(hintType);
-        gameState.setHintsLeft(gameState.getHintsLeft() - 1);
-        session.setAttribute("gameState", gameState);
+        reserveHint(gameId(session), hintType);
         
-        return hint;
+        if (hint != null) {
+            onText.accept(hint);
+            return CompletableFuture.completedFuture(hint);
+        }
+        return geminiService.streamHint(hintType, country, onText);
     }
 
-    public String submitAnswer(String answer, HttpSession session) {
+    /**
+     * 回答を判定し、不正解の場合は回答回数を減らす
+     * @param answer ユーザーからの回答
+     * @param session HTTPセッション
+     * @return 判定結果のメッセージを返すFuture（判定中に回答回数を使い切った、またはゲームが終了した場合は失敗する）
+     * @throws RuntimeException 回答できない状態の場合
+     */
+    public CompletableFuture<String> submitAnswer(String answer, HttpSession session) {
         GameState gameState = getValidGameState(session);
         
         if (gameState.getAnswersLeft() <= 0) {
@@ -113,24 +497,54 @@ public class GameService {
             throw new RuntimeException("回答を入力してください");
         }
         
-        boolean isCorrect = geminiService.validateAnswer(
-            answer.trim(), 
-            gameState.getCurrentCountryEnglish(), 
+        // まずローカルの別名インデックスで判定し、判定できない場合のみGemini AIで検証
+        // （セッションの呼び出し数の上限を超えている場合は、国名との単純な比較で判定する）
+        AnswerMatcher.Verdict verdict = answerMatcher.match(
+            answer.trim(),
+            gameState.getCurrentCountryEnglish(),
             gameState.getCurrentCountryJapanese()
         );
+        CompletableFuture<Boolean> isCorrect;
+        if (verdict != AnswerMatcher.Verdict.UNDECIDED) {
+            isCorrect = CompletableFuture.completedFuture(verdict == AnswerMatcher.Verdict.CORRECT);
+        } else if (rateLimiter.tryAcquireSession(session.getId())) {
+            isCorrect = geminiService.validateAnswer(
+                answer.trim(), 
+                gameState.getCurrentCountryEnglish(), 
+                gameState.getCurrentCountryJapanese()
+            );
+        } else {
+            isCorrect = CompletableFuture.completedFuture(GeminiService.matchesFallback(
+                answer.trim(),
+                gameState.getCurrentCountryEnglish(),
+                gameState.getCurrentCountryJapanese()
+            ));
+        }
         
+        String gameId = gameId(session);
+        return isCorrect.thenApply(correct -> judge(gameId, correct));
+    }
+
+    /**
+     * 判定結果のメッセージを作成（不正解の場合は回答回数を減らす）
+     */
+    private String judge(String gameId, boolean isCorrect) {
         if (isCorrect) {
             return "正解！";
-        } else {
-            // 不正解の場合、回答回数を減らす
-            gameState.setAnswersLeft(gameState.getAnswersLeft() - 1);
-            session.setAttribute("gameState", gameState);
-            
-            if (gameState.getAnswersLeft() > 0) {
-                return "不正解です。残り" + gameState.getAnswersLeft() + "回回答できます。";
-            } else {
-                return "残念！正解は「" + gameState.getCurrentCountryJapanese() + "」でした。ゲーム終了です。";
+        }
+        // 不正解の場合、回答回数を減らす（同時の回答で回数を超えないよう、保存済みの回数で確認する）
+        GameState updated = updateGameState(gameId, state -> {
+            if (state.getAnswersLeft() <= 0) {
+                throw new RuntimeException("回答回数が残っていません");
             }
+            state.setAnswersLeft(state.getAnswersLeft() - 1);
+            return state;
+        });
+        
+        if (updated.getAnswersLeft() > 0) {
+            return "不正解です。残り" + updated.getAnswersLeft() + "回回答できます。";
+        } else {
+            return "残念！正解は「" + updated.getCurrentCountryJapanese() + "」でした。ゲーム終了です。";
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,53 @@
+package com.example.flagquiz.service;
+
+import com.example.flagquiz.model.GameState;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * ゲーム状態の保存先
+ * セッションにはゲームIDのみを持たせ、ゲーム状態はこのストアに保存する
+ * 実装は game.store.type で切り替える（memory: プロセス内、file: メモリマップドファイル）
+ * 終了時にcloseを呼び出す
+ */
+public interface GameStateStore extends AutoCloseable {
+
+    /**
+     * ゲーム状態を取得
+     * 取得したオブジェクトは複製のため、変更する場合はloadとsaveではなくupdateを使うこと
+     * @param gameId ゲームID
+     * @return ゲーム状態、存在しない・期限切れの場合はnull
+     */
+    GameState load(String gameId);
+
+    /**
+     * ゲーム状態を保存
+     * @param gameId ゲームID
+     * @param state ゲーム状態
+     */
+    void save(String gameId, GameState state);
+
+    /**
+     * ゲーム状態を読み込み、変更して保存するまでを不可分に行う
+     * 同じゲームへの同時のupdateは1件ずつ順に行い、互いの変更を上書きしない
+     * updaterはロックを保持したまま呼び出すため、API呼び出しなどの時間のかかる処理は行わないこと
+     * @param gameId ゲームID
+     * @param updater 現在のゲーム状態を受け取り、保存するゲーム状態を返す処理
+     *                （例外を投げた場合は保存せず、そのまま呼び出し元に投げる）
+     * @return 保存したゲーム状態、存在しない・期限切れの場合はnull（updaterは呼び出さない）
+     */
+    GameState update(String gameId, UnaryOperator<GameState> updater);
+
+    /**
+     * ゲーム状態を削除
+     * @param gameId ゲームID
+     */
+    void delete(String gameId);
+
+    /**
+     * 保存先を閉じる（プロセス内のストアでは何もしない）
+     */
+    @Override
+    default void close() {
+    }
+}
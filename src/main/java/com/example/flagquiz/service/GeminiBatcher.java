@@ -0,0 +1,252 @@
+package com.example.flagquiz.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Gemini APIのマイクロバッチ処理
+ * 複数のセッションから短い時間内に届いたプロンプトをまとめて1回のgenerateContentで送信し、
+ * JSON配列で返された回答をそれぞれの呼び出し元に振り分ける
+ * （gemini.batch.enabled=true の場合のみ使用）
+ */
+@Component
+public class GeminiBatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(GeminiBatcher.class);
+
+    @Autowired
+    private GeminiClient geminiClient;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // バッチ処理を使用するかどうか
+    @Value("${gemini.batch.enabled:false}")
+    private boolean enabled;
+
+    // 最初のプロンプトが届いてから送信するまでの待ち時間
+    @Value("${gemini.batch.window:15ms}")
+    private Duration window;
+
+    // 1回にまとめるプロンプト数の上限（達した時点で待たずに送信する）
+    @Value("${gemini.batch.max-size:16}")
+    private int maxSize;
+
+    // JSONパース用オブジェクトマッパー
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // 送信待ちのプロンプトと送信の予約を保護する（仮想スレッドを固定しないよう、synchronizedではなくReentrantLockを使う）
+    private final ReentrantLock lock = new ReentrantLock();
+    // 送信待ちのプロンプト（同じプロンプトは1件にまとめる）
+    private Map<String, CompletableFuture<String>> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> scheduledFlush;
+    private ScheduledExecutorService scheduler;
+
+    private DistributionSummary batchSize;
+    private Counter fallbackCounter;
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "gemini-batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        batchSize = DistributionSummary.builder("gemini.batch.size")
+            .description("1回のAPI呼び出しにまとめたプロンプト数")
+            .register(meterRegistry);
+        fallbackCounter = Counter.builder("gemini.batch.fallbacks")
+            .description("回答を振り分けられず、個別の呼び出しに切り替えたバッチ数")
+            .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * バッチ処理が有効かどうか
+     * @return gemini.batch.enabled=true の場合はtrue
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * プロンプトを次のバッチに追加
+     * @param prompt APIに送信するプロンプト文
+     * @return APIからの回答文を返すFuture
+     */
+    public CompletableFuture<String> submit(String prompt) {
+        CompletableFuture<String> result;
+        Map<String, CompletableFuture<String>> full = null;
+        lock.lock();
+        try {
+            result = pending.get(prompt);
+            if (result == null) {
+                result = new CompletableFuture<>();
+                pending.put(prompt, result);
+            }
+            if (pending.size() >= maxSize) {
+                full = takePending();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = scheduler.schedule(this::flush, window.toNanos(), TimeUnit.NANOSECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (full != null) {
+            send(full);
+        }
+        return result.copy();
+    }
+
+    /**
+     * 待ち時間が経過したバッチを送信
+     */
+    private void flush() {
+        Map<String, CompletableFuture<String>> batch;
+        lock.lock();
+        try {
+            if (pending.isEmpty()) {
+                scheduledFlush = null;
+                return;
+            }
+            batch = takePending();
+        } finally {
+            lock.unlock();
+        }
+        send(batch);
+    }
+
+    private Map<String, CompletableFuture<String>> takePending() {
+        Map<String, CompletableFuture<String>> batch = pending;
+        pending = new LinkedHashMap<>();
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    /**
+     * バッチを送信し、回答を振り分ける
+     * 1件のみの場合はまとめずにそのまま送信する
+     */
+    private void send(Map<String, CompletableFuture<String>> batch) {
+        batchSize.record(batch.size());
+        if (batch.size() == 1) {
+            batch.forEach(this::sendSingle);
+            return;
+        }
+
+        List<String> prompts = new ArrayList<>(batch.keySet());
+        geminiClient.generateAsync(buildBatchPrompt(prompts)).whenComplete((response, error) -> {
+            if (error != null) {
+                batch.values().forEach(future -> future.completeExceptionally(error));
+                return;
+            }
+            List<String> answers = parseAnswers(response, prompts.size());
+            if (answers == null) {
+                // 件数が合わない・形式が不正な場合は個別に呼び出す
+                log.warn("バッチ応答を振り分けられませんでした。個別の呼び出しに切り替えます（{}件）", prompts.size());
+                fallbackCounter.increment();
+                batch.forEach(this::sendSingle);
+                return;
+            }
+            for (int i = 0; i < prompts.size(); i++) {
+                batch.get(prompts.get(i)).complete(answers.get(i));
+            }
+        });
+    }
+
+    private void sendSingle(String prompt, CompletableFuture<String> future) {
+        geminiClient.generateAsync(prompt).whenComplete((text, error) -> {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(text);
+            }
+        });
+    }
+
+    /**
+     * 複数の依頼をまとめたプロンプトを生成
+     * @param prompts 個々のプロンプト
+     * @return 依頼の順番どおりのJSON配列での回答を求めるプロンプト
+     */
+    String buildBatchPrompt(List<String> prompts) {
+        StringBuilder batch = new StringBuilder(256 + prompts.stream().mapToInt(String::length).sum());
+        batch.append("以下の").append(prompts.size()).append("件の依頼に、それぞれ独立して回答してください。\n")
+            .append("回答は依頼と同じ順番で").append(prompts.size())
+            .append("個の文字列を持つJSON配列のみとし、各要素には依頼の指示どおりの回答文のみを入れてください。\n");
+        for (int i = 0; i < prompts.size(); i++) {
+            batch.append("\n### 依頼").append(i + 1).append('\n').append(prompts.get(i).strip()).append('\n');
+        }
+        return batch.toString();
+    }
+
+    /**
+     * まとめた依頼への応答を個々の回答に分割
+     * コードブロックや前後の文章が含まれていてもJSON配列部分のみを読み取る
+     * @param response APIからの生の応答文
+     * @param expected 依頼の件数
+     * @return 依頼の順番どおりの回答、形式が不正または件数が合わない場合はnull
+     */
+    List<String> parseAnswers(String response, int expected) {
+        int start = response.indexOf('[');
+        int end = response.lastIndexOf(']');
+        if (start < 0 || end <= start) {
+            return null;
+        }
+
+        try {
+            JsonNode json = objectMapper.readTree(response.substring(start, end + 1));
+            if (!json.isArray() || json.size() != expected) {
+                return null;
+            }
+            List<String> answers = new ArrayList<>(expected);
+            for (JsonNode answer : json) {
+                if (!answer.isTextual()) {
+                    return null;
+                }
+                answers.add(answer.asText());
+            }
+            return answers;
+
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
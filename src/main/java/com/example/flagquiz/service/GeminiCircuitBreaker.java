@@ -0,0 +1,276 @@
+package com.example.flagquiz.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Gemini API用サーキットブレーカー
+ * 連続して失敗した場合は一定時間API呼び出しを遮断し、その後少数の試行呼び出しで回復を確認する
+ * あわせて、直近の応答時間の分布からタイムアウト値を調整する
+ */
+@Component
+public class GeminiCircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(GeminiCircuitBreaker.class);
+
+    /**
+     * ブレーカーの状態
+     */
+    public enum State {
+        // 通常状態（呼び出しを許可）
+        CLOSED,
+        // 回復確認中（試行呼び出しのみ許可）
+        HALF_OPEN,
+        // 遮断中（呼び出しを拒否）
+        OPEN
+    }
+
+    /**
+     * 呼び出しの許可の判定結果
+     */
+    public enum Permission {
+        // 遮断中のため拒否
+        REJECTED,
+        // 通常の呼び出し（直近の応答時間から算出したタイムアウトを使う）
+        CALL,
+        // 回復確認の試行呼び出し（上流が遅くなっている可能性があるため最大のタイムアウトを使う）
+        PROBE
+    }
+
+    /**
+     * 遮断中のため呼び出しを行わなかったことを示す例外
+     */
+    public static class OpenException extends IOException {
+        public OpenException() {
+            super("Gemini APIの呼び出しを一時停止しています");
+        }
+    }
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // この回数連続して失敗したら遮断する
+    @Value("${gemini.breaker.failure-threshold:5}")
+    private int failureThreshold;
+
+    // 遮断を続ける時間
+    @Value("${gemini.breaker.open-duration:30s}")
+    private Duration openDuration;
+
+    // 回復確認中に同時に許可する試行呼び出し数
+    @Value("${gemini.breaker.half-open-probes:1}")
+    private int halfOpenProbes;
+
+    // タイムアウト算出に使うパーセンタイル
+    @Value("${gemini.timeout.percentile:0.99}")
+    private double timeoutPercentile;
+
+    // パーセンタイル値に掛ける余裕分の倍率
+    @Value("${gemini.timeout.multiplier:2.0}")
+    private double timeoutMultiplier;
+
+    @Value("${gemini.timeout.min:2s}")
+    private Duration minTimeout;
+
+    @Value("${gemini.timeout.max:20s}")
+    private Duration maxTimeout;
+
+    // 応答時間を保持する件数
+    private static final int LATENCY_WINDOW = 256;
+    // この件数ごとにタイムアウト値を再計算する
+    private static final int RECALCULATE_EVERY = 16;
+    // タイムアウトを調整し始めるのに必要な最低件数
+    private static final int MIN_SAMPLES = 20;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicInteger probesInFlight = new AtomicInteger();
+    private final AtomicLong openedAt = new AtomicLong();
+
+    // 直近の応答時間（ミリ秒）のリングバッファ
+    private final AtomicLongArray latencies = new AtomicLongArray(LATENCY_WINDOW);
+    private final AtomicLong latencyCount = new AtomicLong();
+    private volatile long adaptiveTimeoutMillis;
+
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    void init() {
+        adaptiveTimeoutMillis = maxTimeout.toMillis();
+
+        // 状態（0: CLOSED, 1: HALF_OPEN, 2: OPEN）と現在のタイムアウト値を公開
+        Gauge.builder("gemini.circuit.state", state, ref -> ref.get().ordinal())
+            .description("Gemini APIサーキットブレーカーの状態 (0=closed, 1=half_open, 2=open)")
+            .register(meterRegistry);
+        Gauge.builder("gemini.timeout.adaptive", this, breaker -> breaker.adaptiveTimeoutMillis)
+            .description("直近の応答時間から算出したタイムアウト")
+            .baseUnit("milliseconds")
+            .register(meterRegistry);
+        rejectedCounter = Counter.builder("gemini.circuit.rejected")
+            .description("遮断中のため実行しなかった呼び出し数")
+            .register(meterRegistry);
+    }
+
+    /**
+     * API呼び出しを許可するかどうかを判定
+     * 許可した場合は、呼び出し終了時に必ずonSuccess・onFailure・onCancelのいずれかを呼び出すこと
+     * @return 判定結果（PROBEの場合はtimeoutForのタイムアウトで呼び出す）
+     */
+    public Permission tryAcquirePermission() {
+        while (true) {
+            State current = state.get();
+            switch (current) {
+                case CLOSED:
+                    return Permission.CALL;
+                case OPEN:
+                    if (System.currentTimeMillis() - openedAt.get() < openDuration.toMillis()) {
+                        rejectedCounter.increment();
+                        return Permission.REJECTED;
+                    }
+                    // 遮断時間が経過したら回復確認に移る
+                    state.compareAndSet(State.OPEN, State.HALF_OPEN);
+                    continue;
+                case HALF_OPEN:
+                    int probes = probesInFlight.get();
+                    if (probes >= halfOpenProbes) {
+                        rejectedCounter.increment();
+                        return Permission.REJECTED;
+                    }
+                    if (probesInFlight.compareAndSet(probes, probes + 1)) {
+                        return Permission.PROBE;
+                    }
+                    continue;
+                default:
+                    throw new IllegalStateException("不明な状態: " + current);
+            }
+        }
+    }
+
+    /**
+     * 呼び出しが成功したことを記録
+     * @param latencyMillis 応答時間（ミリ秒）
+     */
+    public void onSuccess(long latencyMillis) {
+        recordLatency(latencyMillis);
+        consecutiveFailures.set(0);
+        if (state.get() == State.HALF_OPEN && state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+            probesInFlight.set(0);
+            log.info("Gemini APIの回復を確認しました。呼び出しを再開します。");
+        }
+    }
+
+    /**
+     * 呼び出しが失敗したことを記録
+     * @param timedOutMillis タイムアウトした場合はそれまでの時間（ミリ秒）、それ以外の失敗の場合は-1
+     */
+    public void onFailure(long timedOutMillis) {
+        // タイムアウトも応答時間の分布に含め、上流が遅くなった場合にタイムアウトが伸びるようにする
+        if (timedOutMillis >= 0) {
+            recordLatency(timedOutMillis);
+        }
+        State current = state.get();
+        if (current == State.HALF_OPEN) {
+            // 試行呼び出しが失敗した場合は再び遮断する
+            open(State.HALF_OPEN);
+        } else if (current == State.CLOSED && consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            open(State.CLOSED);
+        }
+    }
+
+    /**
+     * 呼び出し元のキャンセルで呼び出しを中止したことを記録（上流の失敗としては数えない）
+     * @param permission 呼び出し時の判定結果
+     */
+    public void onCancel(Permission permission) {
+        if (permission == Permission.PROBE && state.get() == State.HALF_OPEN) {
+            // 試行呼び出しの枠を返し、別の呼び出しで回復を確認できるようにする
+            probesInFlight.updateAndGet(probes -> Math.max(0, probes - 1));
+        }
+    }
+
+    /**
+     * 現在のブレーカーの状態を取得
+     * @return ブレーカーの状態
+     */
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * 遮断中（遮断時間が経過していない）かどうか
+     * 状態は変更しないため、呼び出しを行う前に見送るかどうかの判断に使う
+     * @return 遮断中であればtrue
+     */
+    public boolean isOpen() {
+        return state.get() == State.OPEN && System.currentTimeMillis() - openedAt.get() < openDuration.toMillis();
+    }
+
+    /**
+     * 直近の応答時間から算出した呼び出しタイムアウトを取得
+     * @return タイムアウト（最小値〜最大値の範囲）
+     */
+    public Duration currentTimeout() {
+        return Duration.ofMillis(adaptiveTimeoutMillis);
+    }
+
+    /**
+     * 判定結果に応じた呼び出しタイムアウトを取得
+     * 試行呼び出しには最大のタイムアウトを使い、上流の応答時間が縮めたタイムアウトを超えた場合も回復を確認できるようにする
+     * @param permission 呼び出し時の判定結果
+     * @param timeout 通常の呼び出しのタイムアウト
+     * @return 呼び出しタイムアウト
+     */
+    public Duration timeoutFor(Permission permission, Duration timeout) {
+        return permission == Permission.PROBE ? maxTimeout : timeout;
+    }
+
+    private void open(State from) {
+        if (state.compareAndSet(from, State.OPEN)) {
+            openedAt.set(System.currentTimeMillis());
+            probesInFlight.set(0);
+            consecutiveFailures.set(0);
+            // 障害前の応答時間は当てにならないため、回復後は最大のタイムアウトから学習し直す
+            latencyCount.set(0);
+            adaptiveTimeoutMillis = maxTimeout.toMillis();
+            log.warn("Gemini APIの呼び出しを一時停止します（{}秒間）", openDuration.toSeconds());
+        }
+    }
+
+    private void recordLatency(long latencyMillis) {
+        long count = latencyCount.getAndIncrement();
+        latencies.set((int) (count % LATENCY_WINDOW), latencyMillis);
+        if ((count + 1) >= MIN_SAMPLES && (count + 1) % RECALCULATE_EVERY == 0) {
+            recalculateTimeout(Math.min(count + 1, LATENCY_WINDOW));
+        }
+    }
+
+    /**
+     * 保持している応答時間のパーセンタイル値からタイムアウトを再計算
+     */
+    private void recalculateTimeout(long samples) {
+        long[] sorted = new long[(int) samples];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = latencies.get(i);
+        }
+        Arrays.sort(sorted);
+
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(timeoutPercentile * sorted.length) - 1);
+        long timeout = (long) (sorted[Math.max(0, index)] * timeoutMultiplier);
+        adaptiveTimeoutMillis = Math.max(minTimeout.toMillis(), Math.min(maxTimeout.toMillis(), timeout));
+    }
+}
@@ -0,0 +1,413 @@
+package com.example.flagquiz.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import okio.BufferedSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Gemini APIクライアント - generateContent / streamGenerateContentを非同期で呼び出す
+ * 同時実行数と待機数に上限を設け、上流が遅い場合もサーブレットのスレッドを使い切らないようにする
+ * 障害時はサーキットブレーカーで呼び出しを遮断し、タイムアウトは直近の応答時間から調整する
+ * 呼び出し数はGeminiRateLimiterの全体の予算内に抑え、超えた分は短時間待たせるか失敗させる
+ */
+@Component
+public class GeminiClient {
+
+    // 障害時の遮断とタイムアウト調整
+    @Autowired
+    private GeminiCircuitBreaker circuitBreaker;
+
+    // 全体の呼び出し数の制限
+    @Autowired
+    private GeminiRateLimiter rateLimiter;
+
+    // 応答時間・ステータス・サイズの記録
+    @Autowired
+    private GeminiMetrics metrics;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 設定ファイルからGemini APIキーを注入
+    @Value("${gemini.api.key}")
+    private String apiKey;
+
+    // 使用するGeminiモデル名を注入
+    @Value("${gemini.model}")
+    private String model;
+
+    // Gemini APIのベースURL
+    @Value("${gemini.api.base-url:https://generativelanguage.googleapis.com/v1beta}")
+    private String baseUrl;
+
+    // 同時に実行するHTTPリクエスト数の上限
+    @Value("${gemini.http.max-in-flight:32}")
+    private int maxInFlight;
+
+    // 実行待ちとして受け付けるリクエスト数の上限（超えた場合は即座に失敗させる）
+    @Value("${gemini.http.max-queued:128}")
+    private int maxQueued;
+
+    // コネクションプールに保持するアイドル接続数
+    @Value("${gemini.http.pool.max-idle:16}")
+    private int maxIdleConnections;
+
+    // アイドル接続の保持時間
+    @Value("${gemini.http.pool.keep-alive:5m}")
+    private Duration keepAlive;
+
+    // HTTP/2を使用するかどうか
+    @Value("${gemini.http.http2:true}")
+    private boolean http2;
+
+    @Value("${gemini.http.connect-timeout:3s}")
+    private Duration connectTimeout;
+
+    @Value("${gemini.http.read-timeout:15s}")
+    private Duration readTimeout;
+
+    // 実行中の呼び出しと同じプロンプトの呼び出しを相乗りさせるかどうか
+    @Value("${gemini.coalesce.enabled:true}")
+    private boolean coalesceEnabled;
+
+    // デフォルトAPIキー（設定されていない場合の識別用）
+    private static final String DEFAULT_API_KEY = "your-actual-gemini-api-key-here";
+
+    private static final MediaType JSON = MediaType.parse("application/json");
+
+    private OkHttpClient httpClient;
+    // 実行中＋待機中のリクエスト数を制限する
+    private Semaphore admission;
+
+    // 実行中の呼び出し（プロンプト → 結果）
+    private final ConcurrentHashMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private Counter coalescedCounter;
+
+    @PostConstruct
+    void init() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxInFlight);
+        dispatcher.setMaxRequestsPerHost(maxInFlight);
+
+        httpClient = new OkHttpClient.Builder()
+            .dispatcher(dispatcher)
+            .connectionPool(new ConnectionPool(maxIdleConnections, keepAlive.toMillis(), TimeUnit.MILLISECONDS))
+            .protocols(http2 ? List.of(Protocol.HTTP_2, Protocol.HTTP_1_1) : List.of(Protocol.HTTP_1_1))
+            .connectTimeout(connectTimeout)
+            .readTimeout(readTimeout)
+            .build();
+        admission = new Semaphore(maxInFlight + maxQueued);
+
+        coalescedCounter = Counter.builder("gemini.client.coalesced")
+            .description("実行中の同じプロンプトの呼び出しに相乗りした呼び出し数")
+            .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+    }
+
+    /**
+     * APIキーが設定されているかどうか
+     * @return 有効なAPIキーが設定されていればtrue
+     */
+    public boolean isConfigured() {
+        return apiKey != null && !apiKey.trim().isEmpty() && !DEFAULT_API_KEY.equals(apiKey);
+    }
+
+    /**
+     * プロンプトを送信し、応答テキストを同期的に取得
+     * 同じプロンプトの呼び出しが実行中であれば、その結果を共有する
+     * @param prompt APIに送信するプロンプト文
+     * @return APIからの回答文
+     * @throws IOException API呼び出しに失敗した場合
+     */
+    public String generate(String prompt) throws IOException {
+        return generate(prompt, true);
+    }
+
+    /**
+     * プロンプトを送信し、応答テキストを同期的に取得
+     * @param prompt APIに送信するプロンプト文
+     * @param shared 実行中の同じプロンプトの呼び出しと結果を共有する場合はtrue
+     *               （呼び出しごとに異なる応答が必要な場合はfalse）
+     * @return APIからの回答文
+     * @throws IOException API呼び出しに失敗した場合
+     */
+    public String generate(String prompt, boolean shared) throws IOException {
+        return await(shared ? generateAsync(prompt) : generateAsync(prompt, circuitBreaker.currentTimeout()));
+    }
+
+    /**
+     * 非同期呼び出しの結果を待機
+     * @param future 呼び出し結果のFuture
+     * @return APIからの回答文
+     * @throws IOException 呼び出しが失敗した、または待機中に割り込まれた場合
+     */
+    static String await(CompletableFuture<String> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("API呼び出しが中断されました", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * 直近の応答時間から算出したタイムアウトでプロンプトを非同期で送信
+     * 同じプロンプトの呼び出しが実行中であれば新たに送信せず、その結果を共有する
+     * @param prompt APIに送信するプロンプト文
+     * @return APIからの回答文を返すFuture（キャンセルしても共有元の呼び出しは中止されない）
+     */
+    public CompletableFuture<String> generateAsync(String prompt) {
+        if (!coalesceEnabled) {
+            return generateAsync(prompt, circuitBreaker.currentTimeout());
+        }
+
+        CompletableFuture<String> created = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(prompt, created);
+        if (existing != null) {
+            coalescedCounter.increment();
+            return existing.copy();
+        }
+
+        generateAsync(prompt, circuitBreaker.currentTimeout()).whenComplete((text, error) -> {
+            // 完了後の呼び出しは新たに送信させるため、結果を通知する前に登録を外す
+            inFlight.remove(prompt, created);
+            if (error != null) {
+                created.completeExceptionally(error);
+            } else {
+                created.complete(text);
+            }
+        });
+        return created.copy();
+    }
+
+    /**
+     * 呼び出し単位のタイムアウトを指定してプロンプトを非同期で送信
+     * @param prompt APIに送信するプロンプト文
+     * @param timeout この呼び出し全体のタイムアウト
+     * @return APIからの回答文を返すFuture（上限を超えた場合はRejectedExecutionException、
+     *         呼び出し数の予算を超えた場合はGeminiRateLimiter.LimitExceededException、
+     *         遮断中の場合はGeminiCircuitBreaker.OpenExceptionで失敗）
+     */
+    public CompletableFuture<String> generateAsync(String prompt, Duration timeout) {
+        return execute("generateContent", "?", prompt, timeout, this::extractText);
+    }
+
+    /**
+     * プロンプトをストリーミングで送信し、生成されたテキストを断片ごとに通知
+     * @param prompt APIに送信するプロンプト文
+     * @param onText テキストの断片を受け取るコールバック（HTTPクライアントのスレッドで呼び出される）
+     * @return 生成されたテキスト全体を返すFuture（失敗条件はgenerateAsyncと同じ）
+     */
+    public CompletableFuture<String> streamAsync(String prompt, Consumer<String> onText) {
+        return execute("streamGenerateContent", "?alt=sse&", prompt, circuitBreaker.currentTimeout(),
+            response -> readStream(response, onText));
+    }
+
+    /**
+     * HTTPレスポンスから結果を読み取る処理
+     */
+    @FunctionalInterface
+    private interface ResponseReader {
+        String read(Response response) throws IOException;
+    }
+
+    /**
+     * 同時実行数・レート制限・サーキットブレーカーの制限の下でAPIを非同期に呼び出す
+     * @param method APIメソッド名（例: "generateContent"）
+     * @param query メソッド名に続くクエリ文字列の先頭（例: "?alt=sse&"）
+     * @param prompt APIに送信するプロンプト文
+     * @param timeout この呼び出し全体のタイムアウト（レート制限による待ち時間は含まない）
+     * @param reader レスポンスから結果を読み取る処理
+     * @return 結果を返すFuture
+     */
+    private CompletableFuture<String> execute(String method, String query, String prompt, Duration timeout,
+                                              ResponseReader reader) {
+        long started = System.nanoTime();
+        int promptBytes = GeminiMetrics.utf8Length(prompt);
+        if (!admission.tryAcquire()) {
+            metrics.recordUpstream(method, GeminiMetrics.STATUS_REJECTED, false, System.nanoTime() - started, promptBytes, 0);
+            return CompletableFuture.failedFuture(
+                new RejectedExecutionException("Gemini APIの同時呼び出し数が上限に達しています"));
+        }
+        long wait = rateLimiter.reserveGlobal();
+        if (wait < 0) {
+            admission.release();
+            metrics.recordUpstream(method, GeminiMetrics.STATUS_RATE_LIMITED, false, System.nanoTime() - started, promptBytes, 0);
+            return CompletableFuture.failedFuture(new GeminiRateLimiter.LimitExceededException());
+        }
+
+        CompletableFuture<String> future = new CompletableFuture<>();
+        if (wait == 0) {
+            send(method, query, prompt, timeout, reader, future, started, promptBytes);
+        } else {
+            // 予約した順に待ち時間が決まるため、待たせた呼び出しも先着順に送信される
+            CompletableFuture.delayedExecutor(wait, TimeUnit.NANOSECONDS).execute(() -> {
+                if (future.isDone()) {
+                    // 待機中にキャンセルされた場合
+                    admission.release();
+                    return;
+                }
+                send(method, query, prompt, timeout, reader, future, started, promptBytes);
+            });
+        }
+        return future;
+    }
+
+    /**
+     * サーキットブレーカーの許可を得てHTTPリクエストを送信し、結果をfutureに設定
+     * 呼び出し元で取得した同時実行数の枠は、完了時にこのメソッドで解放する
+     */
+    private void send(String method, String query, String prompt, Duration timeout, ResponseReader reader,
+                      CompletableFuture<String> future, long started, int promptBytes) {
+        GeminiCircuitBreaker.Permission permission = circuitBreaker.tryAcquirePermission();
+        if (permission == GeminiCircuitBreaker.Permission.REJECTED) {
+            admission.release();
+            metrics.recordUpstream(method, GeminiMetrics.STATUS_CIRCUIT_OPEN, false, System.nanoTime() - started, promptBytes, 0);
+            future.completeExceptionally(new GeminiCircuitBreaker.OpenException());
+            return;
+        }
+
+        try {
+            Request request = new Request.Builder()
+                .url(baseUrl + "/models/" + model + ":" + method + query + "key=" + apiKey)
+                .post(RequestBody.create(GeminiCodec.encodeRequest(prompt), JSON))
+                .build();
+
+            Call call = httpClient.newCall(request);
+            call.timeout().timeout(circuitBreaker.timeoutFor(permission, timeout).toMillis(), TimeUnit.MILLISECONDS);
+            call.enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    admission.release();
+                    long elapsed = System.nanoTime() - started;
+                    String status;
+                    if (call.isCanceled()) {
+                        // 呼び出し元がキャンセルした場合は上流の失敗として数えない
+                        circuitBreaker.onCancel(permission);
+                        status = GeminiMetrics.STATUS_CANCELLED;
+                    } else if (e instanceof InterruptedIOException) {
+                        circuitBreaker.onFailure(elapsed / 1_000_000);
+                        status = GeminiMetrics.STATUS_TIMEOUT;
+                    } else {
+                        circuitBreaker.onFailure(-1);
+                        status = GeminiMetrics.STATUS_IO_ERROR;
+                    }
+                    metrics.recordUpstream(method, status, false, elapsed, promptBytes, 0);
+                    future.completeExceptionally(e);
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    String status = String.valueOf(response.code());
+                    try (response) {
+                        String text = reader.read(response);
+                        long elapsed = System.nanoTime() - started;
+                        circuitBreaker.onSuccess(elapsed / 1_000_000);
+                        metrics.recordUpstream(method, status, true, elapsed, promptBytes, GeminiMetrics.utf8Length(text));
+                        future.complete(text);
+                    } catch (IOException | RuntimeException e) {
+                        long elapsed = System.nanoTime() - started;
+                        if (call.isCanceled()) {
+                            // ストリーミング応答の読み取り中に呼び出し元がキャンセルした場合
+                            circuitBreaker.onCancel(permission);
+                            status = GeminiMetrics.STATUS_CANCELLED;
+                        } else {
+                            circuitBreaker.onFailure(e instanceof InterruptedIOException ? elapsed / 1_000_000 : -1);
+                        }
+                        metrics.recordUpstream(method, status, false, elapsed, promptBytes, 0);
+                        future.completeExceptionally(e);
+                    } finally {
+                        admission.release();
+                    }
+                }
+            });
+
+            // 呼び出し元がキャンセルした場合はHTTP呼び出しも中止する
+            future.whenComplete((result, error) -> {
+                if (future.isCancelled()) {
+                    call.cancel();
+                }
+            });
+
+        } catch (RuntimeException e) {
+            admission.release();
+            circuitBreaker.onFailure(-1);
+            metrics.recordUpstream(method, GeminiMetrics.STATUS_IO_ERROR, false, System.nanoTime() - started, promptBytes, 0);
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * ストリーミング応答（SSE）を1行ずつ読み、テキストの断片を通知
+     * @param response HTTPレスポンス
+     * @param onText テキストの断片を受け取るコールバック
+     * @return 生成されたテキスト全体
+     * @throws IOException 応答が不正な場合
+     */
+    private String readStream(Response response, Consumer<String> onText) throws IOException {
+        if (!response.isSuccessful()) {
+            throw new IOException("API呼び出しが失敗しました。HTTPコード: " + response.code() + ", メッセージ: " + response.message());
+        }
+
+        GeminiStreamParser parser = new GeminiStreamParser(onText);
+        BufferedSource source = response.body().source();
+        String line;
+        while ((line = source.readUtf8Line()) != null) {
+            parser.feedLine(line);
+        }
+        return parser.finish();
+    }
+
+    /**
+     * HTTPレスポンスから応答テキストを抽出
+     * @param response HTTPレスポンス
+     * @return 応答テキスト
+     * @throws IOException 応答が不正な場合
+     */
+    private String extractText(Response response) throws IOException {
+        if (!response.isSuccessful()) {
+            throw new IOException("API呼び出しが失敗しました。HTTPコード: " + response.code() + ", メッセージ: " + response.message());
+        }
+
+        // 最初の候補のテキストまでをストリーミングで読み取る
+        return GeminiCodec.extractText(response.body().byteStream());
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.flagquiz.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * generateContentのリクエスト・レスポンスの変換
+ * リクエストは事前にシリアライズした固定部分にエスケープ済みのプロンプトのみを埋め込み、
+ * レスポンスはストリーミングパーサーで candidates[0].content.parts[0].text まで読み進めて取り出す
+ * （呼び出しごとのMap構築やJSONツリーの生成を行わない）
+ */
+final class GeminiCodec {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    // {"contents":[{"parts":[{"text":"<プロンプト>"}]}]}
+    private static final byte[] REQUEST_PREFIX = "{\"contents\":[{\"parts\":[{\"text\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] REQUEST_SUFFIX = "\"}]}]}".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private GeminiCodec() {
+    }
+
+    /**
+     * プロンプトからリクエストボディを生成
+     * エスケープ後のバイト数を先に数え、ちょうどの長さの配列1つに書き込む
+     * @param prompt APIに送信するプロンプト文
+     * @return UTF-8のJSON
+     */
+    static byte[] encodeRequest(String prompt) {
+        byte[] body = new byte[REQUEST_PREFIX.length + escapedLength(prompt) + REQUEST_SUFFIX.length];
+        System.arraycopy(REQUEST_PREFIX, 0, body, 0, REQUEST_PREFIX.length);
+        int end = writeEscaped(prompt, body, REQUEST_PREFIX.length);
+        System.arraycopy(REQUEST_SUFFIX, 0, body, end, REQUEST_SUFFIX.length);
+        return body;
+    }
+
+    /**
+     * レスポンスボディから最初の候補のテキストを取り出す
+     * テキストを読んだ時点で以降の内容は読まない
+     * @param body レスポンスボディ
+     * @return 応答テキスト
+     * @throws IOException 応答が空・不正、または候補やテキストが含まれていない場合
+     */
+    static String extractText(InputStream body) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            JsonToken first = parser.nextToken();
+            if (first == null) {
+                throw new IOException("APIからの応答が空です");
+            }
+            if (!moveToField(parser, "candidates") || !moveToFirstElement(parser)) {
+                throw new IOException("APIレスポンスに候補が含まれていません");
+            }
+            if (!moveToField(parser, "content") || !moveToField(parser, "parts")
+                    || !moveToFirstElement(parser) || !moveToField(parser, "text")
+                    || !parser.currentToken().isScalarValue()) {
+                throw new IOException("APIレスポンスにテキストが含まれていません");
+            }
+            return parser.getText();
+        }
+    }
+
+    /**
+     * 現在のオブジェクトの中から指定したフィールドを探し、その値の位置まで進める
+     * 対象外のフィールドの値は読み飛ばす
+     * @return フィールドが見つかった場合はtrue（現在のトークンがオブジェクトでない場合はfalse）
+     */
+    private static boolean moveToField(JsonParser parser, String name) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            return false;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            boolean matched = name.equals(parser.currentName());
+            parser.nextToken();
+            if (matched) {
+                return true;
+            }
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    /**
+     * 現在の配列の最初の要素の位置まで進める
+     * @return 要素がある場合はtrue（現在のトークンが配列でない場合はfalse）
+     */
+    private static boolean moveToFirstElement(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            return false;
+        }
+        JsonToken token = parser.nextToken();
+        return token != null && token != JsonToken.END_ARRAY;
+    }
+
+    /**
+     * JSON文字列としてエスケープした場合のUTF-8バイト数
+     */
+    private static int escapedLength(String text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\' || c == '\n' || c == '\r' || c == '\t' || c == '\b' || c == '\f') {
+                length += 2;
+            } else if (c < 0x20) {
+                length += 6;
+            } else if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (isSurrogatePair(text, i)) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * JSON文字列としてエスケープしながらUTF-8で書き込む
+     * 対になっていないサロゲートは '?' に置き換える（String.getBytesと同じ扱い）
+     * @return 書き込み終了位置
+     */
+    private static int writeEscaped(String text, byte[] out, int pos) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                switch (c) {
+                    case '"' -> pos = writeEscape(out, pos, '"');
+                    case '\\' -> pos = writeEscape(out, pos, '\\');
+                    case '\n' -> pos = writeEscape(out, pos, 'n');
+                    case '\r' -> pos = writeEscape(out, pos, 'r');
+                    case '\t' -> pos = writeEscape(out, pos, 't');
+                    case '\b' -> pos = writeEscape(out, pos, 'b');
+                    case '\f' -> pos = writeEscape(out, pos, 'f');
+                    default -> {
+                        if (c < 0x20) {
+                            // その他の制御文字は6文字のユニコードエスケープにする
+                            out[pos++] = '\\';
+                            out[pos++] = 'u';
+                            out[pos++] = '0';
+                            out[pos++] = '0';
+                            out[pos++] = HEX[c >> 4];
+                            out[pos++] = HEX[c & 0xF];
+                        } else {
+                            out[pos++] = (byte) c;
+                        }
+                    }
+                }
+            } else if (c < 0x800) {
+                out[pos++] = (byte) (0xC0 | (c >> 6));
+                out[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (isSurrogatePair(text, i)) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                out[pos++] = (byte) (0xF0 | (codePoint >> 18));
+                out[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                out[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                out[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                out[pos++] = '?';
+            } else {
+                out[pos++] = (byte) (0xE0 | (c >> 12));
+                out[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                out[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return pos;
+    }
+
+    private static int writeEscape(byte[] out, int pos, char escaped) {
+        out[pos++] = '\\';
+        out[pos++] = (byte) escaped;
+        return pos;
+    }
+
+    private static boolean isSurrogatePair(String text, int i) {
+        return Character.isHighSurrogate(text.charAt(i)) && i + 1 < text.length()
+            && Character.isLowSurrogate(text.charAt(i + 1));
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.flagquiz.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gemini API関連のメトリクス
+ * GeminiServiceの操作ごとの処理時間と結果、上流へのHTTP呼び出しの応答時間・ステータス・
+ * プロンプトと応答のサイズを記録する（ヒストグラム付きでPrometheusから取得できる）
+ * 操作の処理時間は、処理中のリクエストの処理区間としても記録する
+ */
+@Component
+public class GeminiMetrics {
+
+    /**
+     * 操作の結果
+     */
+    public enum Outcome {
+        // Gemini APIの応答を使用
+        API,
+        // キャッシュ済みの結果を使用
+        CACHE,
+        // APIキー未設定・遮断中・呼び出し数の上限超過のため既定の応答を使用
+        FALLBACK,
+        // API呼び出しに失敗し既定の応答を使用
+        ERROR,
+        // 応答の形式が不正なため、ローカルの判定や別の呼び出しで補った
+        INVALID;
+
+        private final String tag = name().toLowerCase();
+    }
+
+    // 上流呼び出しでHTTPステータスが得られなかった場合のステータス値
+    static final String STATUS_IO_ERROR = "IO_ERROR";
+    static final String STATUS_TIMEOUT = "TIMEOUT";
+    static final String STATUS_REJECTED = "REJECTED";
+    static final String STATUS_CIRCUIT_OPEN = "CIRCUIT_OPEN";
+    static final String STATUS_RATE_LIMITED = "RATE_LIMITED";
+    static final String STATUS_CANCELLED = "CANCELLED";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private RequestTracer tracer;
+
+    /**
+     * 操作の計測を開始
+     * @return 計測中のサンプル（recordOperationに渡す）
+     */
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    /**
+     * GeminiServiceの操作1回分を記録
+     * @param sample startで取得したサンプル
+     * @param operation 操作名（validateQuestion、getHint など）
+     * @param outcome 結果
+     */
+    public void recordOperation(Timer.Sample sample, String operation, Outcome outcome) {
+        recordOperation(sample, operation, outcome, tracer.current());
+    }
+
+    /**
+     * GeminiServiceの操作1回分を記録（ストリーミング応答の完了時など、リクエストと別のスレッドで記録する場合）
+     * @param sample startで取得したサンプル
+     * @param operation 操作名（streamAnswer、streamHint など）
+     * @param outcome 結果
+     * @param trace 操作を開始したリクエストの記録（開始時に currentTrace で取得したもの）
+     */
+    public void recordOperation(Timer.Sample sample, String operation, Outcome outcome, RequestTrace trace) {
+        long nanos = sample.stop(Timer.builder("gemini.operation")
+            .tag("operation", operation)
+            .tag("outcome", outcome.tag)
+            .description("Gemini APIを使う操作の処理時間")
+            .publishPercentileHistogram()
+            .minimumExpectedValue(Duration.ofMillis(1))
+            .maximumExpectedValue(Duration.ofSeconds(30))
+            .register(meterRegistry));
+        tracer.record(trace, operation, nanos);
+    }
+
+    /**
+     * 現在のスレッドで処理中のリクエストの記録
+     * @return リクエストの記録（ない場合はnull）
+     */
+    public RequestTrace currentTrace() {
+        return tracer.current();
+    }
+
+    /**
+     * 上流へのHTTP呼び出し1回分を記録
+     * @param method APIメソッド名（generateContent、streamGenerateContent）
+     * @param status HTTPステータスコード、またはSTATUS_*の値
+     * @param success 応答を読み取れた場合はtrue
+     * @param nanos 呼び出しにかかった時間（ナノ秒）
+     * @param promptBytes プロンプトのサイズ（UTF-8バイト数）
+     * @param responseBytes 応答テキストのサイズ（UTF-8バイト数、失敗時は0）
+     */
+    void recordUpstream(String method, String status, boolean success, long nanos, int promptBytes, int responseBytes) {
+        Timer.builder("gemini.client.requests")
+            .tag("method", method)
+            .tag("status", status)
+            .tag("outcome", success ? "success" : "failure")
+            .description("Gemini APIへのHTTP呼び出しの応答時間")
+            .publishPercentileHistogram()
+            .minimumExpectedValue(Duration.ofMillis(1))
+            .maximumExpectedValue(Duration.ofSeconds(30))
+            .register(meterRegistry)
+            .record(nanos, TimeUnit.NANOSECONDS);
+
+        DistributionSummary.builder("gemini.client.prompt.size")
+            .tag("method", method)
+            .baseUnit("bytes")
+            .description("Gemini APIに送信したプロンプトのサイズ")
+            .publishPercentileHistogram()
+            .maximumExpectedValue(65536.0)
+            .register(meterRegistry)
+            .record(promptBytes);
+
+        if (success) {
+            DistributionSummary.builder("gemini.client.response.size")
+                .tag("method", method)
+                .baseUnit("bytes")
+                .description("Gemini APIから受信した応答テキストのサイズ")
+                .publishPercentileHistogram()
+                .maximumExpectedValue(65536.0)
+                .register(meterRegistry)
+                .record(responseBytes);
+        }
+    }
+
+    /**
+     * 文字列のUTF-8でのバイト数（バイト配列を作らずに数える）
+     * @param text 対象の文字列
+     * @return バイト数
+     */
+    static int utf8Length(String text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
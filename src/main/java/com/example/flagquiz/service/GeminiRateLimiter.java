@@ -0,0 +1,180 @@
+package com.example.flagquiz.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gemini API呼び出しのレート制限
+ * 全体の予算（Gemini APIのクォータに合わせる）とセッションごとの予算をトークンバケットで管理する
+ * 全体の予算を超えた呼び出しは一定時間まで先着順に待たせ、それでも足りない場合は呼び出し元のフォールバックに任せる
+ */
+@Component
+public class GeminiRateLimiter {
+
+    /**
+     * 全体の予算を超えたため呼び出しを行わなかったことを示す例外
+     */
+    public static class LimitExceededException extends IOException {
+        public LimitExceededException() {
+            super("Gemini APIの呼び出し数が上限に達しています");
+        }
+    }
+
+    /**
+     * セッションの予算を超えたため操作を受け付けなかったことを示す例外
+     */
+    public static class SessionLimitExceededException extends RuntimeException {
+        public SessionLimitExceededException() {
+            super("リクエストが多すぎます。しばらく待ってから再度お試しください。");
+        }
+    }
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // レート制限を行うかどうか
+    @Value("${gemini.ratelimit.enabled:true}")
+    private boolean enabled;
+
+    // 全体で1秒あたりに許可する呼び出し数（Gemini APIのクォータに合わせる）
+    @Value("${gemini.ratelimit.global.rate:50}")
+    private double globalRate;
+
+    // 全体で連続して許可する呼び出し数
+    @Value("${gemini.ratelimit.global.burst:100}")
+    private int globalBurst;
+
+    // 全体の予算を超えた場合に待たせる最大時間（0の場合は待たずにフォールバックする）
+    @Value("${gemini.ratelimit.global.max-wait:1s}")
+    private Duration globalMaxWait;
+
+    // セッションごとに1秒あたりに許可する操作数
+    @Value("${gemini.ratelimit.session.rate:1}")
+    private double sessionRate;
+
+    // セッションごとに連続して許可する操作数
+    @Value("${gemini.ratelimit.session.burst:20}")
+    private int sessionBurst;
+
+    // この数を超えてセッションを追跡している場合は、使われていないセッションの状態を破棄する
+    @Value("${gemini.ratelimit.session.max-tracked:10000}")
+    private int maxTrackedSessions;
+
+    private TokenBucket globalBucket;
+    // セッションID → バケット（ConcurrentHashMapの分割ロックで、異なるセッション同士は競合しない）
+    private final ConcurrentHashMap<String, TokenBucket> sessionBuckets = new ConcurrentHashMap<>();
+    // 追跡数の上限を超えた後、次に破棄を試みる時刻
+    private final AtomicLong nextEviction = new AtomicLong(System.nanoTime());
+
+    private Counter globalAllowed;
+    private Counter globalQueued;
+    private Counter globalRejected;
+    private Counter sessionAllowed;
+    private Counter sessionRejected;
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+
+        globalBucket = new TokenBucket(globalRate, globalBurst);
+
+        globalAllowed = decisionCounter("global", "allowed");
+        globalQueued = decisionCounter("global", "queued");
+        globalRejected = decisionCounter("global", "rejected");
+        sessionAllowed = decisionCounter("session", "allowed");
+        sessionRejected = decisionCounter("session", "rejected");
+
+        Gauge.builder("gemini.ratelimit.global.tokens", this, limiter -> limiter.globalBucket.available(System.nanoTime()))
+            .description("全体の予算の残りトークン数（負の値は待機中の予約数）")
+            .register(meterRegistry);
+        Gauge.builder("gemini.ratelimit.sessions", sessionBuckets, ConcurrentHashMap::size)
+            .description("レート制限の状態を保持しているセッション数")
+            .register(meterRegistry);
+    }
+
+    private Counter decisionCounter(String scope, String result) {
+        return Counter.builder("gemini.ratelimit.decisions")
+            .tag("scope", scope)
+            .tag("result", result)
+            .description("レート制限の判定結果ごとの件数")
+            .register(meterRegistry);
+    }
+
+    /**
+     * 全体の予算からAPI呼び出し1回分を予約
+     * @return 呼び出しまでに待つ時間（ナノ秒、すぐに呼び出せる場合は0）、予算を超えている場合は-1
+     */
+    long reserveGlobal() {
+        if (!enabled) {
+            return 0;
+        }
+        long wait = globalBucket.reserve(System.nanoTime(), globalMaxWait.toNanos());
+        if (wait < 0) {
+            globalRejected.increment();
+        } else if (wait > 0) {
+            globalQueued.increment();
+        } else {
+            globalAllowed.increment();
+        }
+        return wait;
+    }
+
+    /**
+     * セッションの予算から操作1回分を取り出す
+     * @param sessionId セッションID
+     * @return 取り出せた場合はtrue
+     */
+    public boolean tryAcquireSession(String sessionId) {
+        if (!enabled) {
+            return true;
+        }
+        long now = System.nanoTime();
+        TokenBucket bucket = sessionBuckets.computeIfAbsent(sessionId, id -> new TokenBucket(sessionRate, sessionBurst));
+        if (sessionBuckets.size() > maxTrackedSessions) {
+            evictIdleSessions(now);
+        }
+
+        if (bucket.tryAcquire(now)) {
+            sessionAllowed.increment();
+            return true;
+        }
+        sessionRejected.increment();
+        return false;
+    }
+
+    /**
+     * セッションの予算から操作1回分を取り出し、超えている場合は例外を送出
+     * @param sessionId セッションID
+     * @throws SessionLimitExceededException セッションの予算を超えている場合
+     */
+    public void checkSession(String sessionId) {
+        if (!tryAcquireSession(sessionId)) {
+            throw new SessionLimitExceededException();
+        }
+    }
+
+    /**
+     * バケットが満杯に戻った（しばらく操作のない）セッションの状態を破棄
+     * 満杯のバケットは作り直しても同じ状態のため、破棄しても制限は緩まない
+     * 多数のスレッドが同時に走査しないよう、1秒に1回までとする
+     */
+    private void evictIdleSessions(long now) {
+        long next = nextEviction.get();
+        if (now - next < 0 || !nextEviction.compareAndSet(next, now + 1_000_000_000L)) {
+            return;
+        }
+        sessionBuckets.values().removeIf(bucket -> bucket.isFull(now));
+    }
+}
@@ -1,17 +1,28 @@
 package com.example.flagquiz.service;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import com.example.flagquiz.model.Country;
+import com.example.flagquiz.model.CountryCatalog;
+import com.example.flagquiz.service.GeminiMetrics.Outcome;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-
-import okhttp3.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
 
 /**
  * Gemini AIサービス - 国旗クイズゲームでのAI機能を提供
@@ -20,136 +31,413 @@ import java.util.Map;
 @Service
 public class GeminiService {
     
-    // 設定ファイルからGemini APIキーを注入
-    @Value("${gemini.api.key}")
-    private String apiKey;
+    private static final Logger log = LoggerFactory.getLogger(GeminiService.class);
+    
+    // Gemini API呼び出し用クライアント
+    @Autowired
+    private GeminiClient geminiClient;
+    
+    // 複数セッションのプロンプトをまとめて送信するバッチ処理（有効な場合のみ使用）
+    @Autowired
+    private GeminiBatcher geminiBatcher;
+    
+    // 質問の検証と回答の方式（separate: 2回のAPI呼び出し、combined: 1回のAPI呼び出し）
+    @Value("${gemini.question.mode:separate}")
+    private String questionMode;
+    
+    // 質問検証・回答のキャッシュ
+    @Autowired
+    private QuestionCache questionCache;
+    
+    // 操作ごとの処理時間と結果（API応答・キャッシュ・フォールバック・エラー）の記録
+    @Autowired
+    private GeminiMetrics metrics;
+    
+    // 同じ操作で同じエラーを1件のみ出力する期間（API障害時に全リクエストがスタックトレースを出力しないよう間引く）
+    @Value("${logging.error-sampling.window:60s}")
+    private Duration errorLogWindow;
     
-    // 使用するGeminiモデル名を注入
-    @Value("${gemini.model}")
-    private String model;
+    @Autowired
+    private MeterRegistry meterRegistry;
     
-    // HTTP通信用クライアント
-    private final OkHttpClient httpClient = new OkHttpClient();
     // JSONパース用オブジェクトマッパー
     private final ObjectMapper objectMapper = new ObjectMapper();
     
-    // デフォルトAPIキー（設定されていない場合の識別用）
-    private static final String DEFAULT_API_KEY = "your-actual-gemini-api-key-here";
-    
-    // API呼び出し失敗時のフォールバック用国データ
-    // 配列形式: [英語名, 日本語名, 国旗URL]
-    private static final String[][] FALLBACK_COUNTRIES = {
-        {"Japan", "日本", "https://flagcdn.com/h240/jp.png"},
-        {"United States", "アメリカ合衆国", "https://flagcdn.com/h240/us.png"},
-        {"France", "フランス", "https://flagcdn.com/h240/fr.png"},
-        {"Germany", "ドイツ", "https://flagcdn.com/h240/de.png"},
-        {"Italy", "イタリア", "https://flagcdn.com/h240/it.png"},
-        {"United Kingdom", "イギリス", "https://flagcdn.com/h240/gb.png"},
-        {"Canada", "カナダ", "https://flagcdn.com/h240/ca.png"},
-        {"Australia", "オーストラリア", "https://flagcdn.com/h240/au.png"},
-        {"Brazil", "ブラジル", "https://flagcdn.com/h240/br.png"},
-        {"China", "中国", "https://flagcdn.com/h240/cn.png"},
-        {"South Korea", "韓国", "https://flagcdn.com/h240/kr.png"},
-        {"India", "インド", "https://flagcdn.com/h240/in.png"},
-        {"Mexico", "メキシコ", "https://flagcdn.com/h240/mx.png"},
-        {"Spain", "スペイン", "https://flagcdn.com/h240/es.png"},
-        {"Russia", "ロシア", "https://flagcdn.com/h240/ru.png"}
-    };
+    private ErrorLogSampler errorLogSampler;
+    
+    @PostConstruct
+    void init() {
+        errorLogSampler = new ErrorLogSampler(errorLogWindow, meterRegistry);
+    }
     
     /**
      * ユーザーが入力した質問が適切かどうかを検証
      * @param question 検証する質問文
      * @param country 対象となる国名
-     * @return 質問が適切であればtrue、不適切であればfalse
+     * @return 質問が適切であればtrue、不適切であればfalseを返すFuture（失敗時もフォールバックの判定で完了する）
      */
-    public boolean validateQuestion(String question, String country) {
-        try {
-            // Gemini AIに質問の妥当性を確認するプロンプトを作成
-            String prompt = String.format("""
-                質問: "%s"
-                対象国: %s
-                
-                この質問が以下の条件を満たしているかYes/Noで回答してください：
-                1. Yes/No形式で回答できる質問である
-                2. 答えに直結しない質問である（例：「この国は○○ですか？」のような直接的な質問ではない）
-                
-                条件を満たしていればYes、満たしていなければNoで回答してください。
-                """, question, country);
-            
-            // Gemini APIを呼び出して回答を取得
-            String response = callGeminiAPI(prompt);
-            return response.trim().toLowerCase().startsWith("yes");
+    public CompletableFuture<Boolean> validateQuestion(String question, String country) {
+        Timer.Sample sample = metrics.start();
+        // 同じ国・同じ質問の判定結果があればAPIを呼び出さずに返す
+        String cached = questionCache.get(QuestionCache.Kind.VALIDATE, country, question);
+        if (cached != null) {
+            metrics.recordOperation(sample, "validateQuestion", Outcome.CACHE);
+            return CompletableFuture.completedFuture(cached.startsWith("yes"));
+        }
+        
+        // Gemini AIに質問の妥当性を確認するプロンプトを作成
+        String prompt = String.format("""
+            質問: "%s"
+            対象国: %s
             
-        } catch (Exception e) {
-            // API呼び出し失敗時のエラーハンドリング
-            System.err.println("質問検証中にエラーが発生しました: " + e.getMessage());
-            e.printStackTrace();
+            この質問が以下の条件を満たしているかYes/Noで回答してください：
+            1. Yes/No形式で回答できる質問である
+            2. 答えに直結しない質問である（例：「この国は○○ですか？」のような直接的な質問ではない）
             
-            // フォールバック: 単純な文字列比較で国名が含まれていないかチェック
-            return !question.toLowerCase().contains(country.toLowerCase());
-        }
+            条件を満たしていればYes、満たしていなければNoで回答してください。
+            """, question, country);
+        
+        // 応答はGemini APIの呼び出しスレッドで完了するため、記録先のリクエストを先に取得しておく
+        RequestTrace trace = metrics.currentTrace();
+        return callGeminiAPIAsync(prompt)
+            .thenApply(response -> {
+                String verdict = response.trim().toLowerCase();
+                cacheResponse(QuestionCache.Kind.VALIDATE, country, question, verdict);
+                metrics.recordOperation(sample, "validateQuestion", apiOutcome(), trace);
+                return verdict.startsWith("yes");
+            })
+            .exceptionally(e -> {
+                // API呼び出し失敗時のエラーハンドリング
+                logFailure("validateQuestion", "質問検証中にエラーが発生しました", unwrap(e));
+                metrics.recordOperation(sample, "validateQuestion", failureOutcome(unwrap(e)), trace);
+                
+                // フォールバック: 単純な文字列比較で国名が含まれていないかチェック
+                return isValidByFallback(question, country);
+            });
     }
     
     /**
      * ユーザーの質問に対してAIが回答を生成
      * @param question ユーザーからの質問文
      * @param country 対象となる国名
-     * @return AIからの回答（「はい」または「いいえ」）
+     * @return AIからの回答（「はい」または「いいえ」）を返すFuture（失敗時もフォールバックの回答で完了する）
      */
-    public String answerQuestion(String question, String country) {
-        try {
-            // 質問に対する回答を求めるプロンプトを作成
-            String prompt = String.format("""
-                質問: "%s"
-                対象国: %s
+    public CompletableFuture<String> answerQuestion(String question, String country) {
+        Timer.Sample sample = metrics.start();
+        // 同じ国・同じ質問の回答があればAPIを呼び出さずに返す
+        String cached = questionCache.get(QuestionCache.Kind.ANSWER, country, question);
+        if (cached != null) {
+            metrics.recordOperation(sample, "answerQuestion", Outcome.CACHE);
+            return CompletableFuture.completedFuture(cached);
+        }
+        
+        RequestTrace trace = metrics.currentTrace();
+        return callGeminiAPIAsync(getAnswerPrompt(question, country))
+            .thenApply(response -> {
+                String answer = response.trim();
+                cacheResponse(QuestionCache.Kind.ANSWER, country, question, answer);
+                metrics.recordOperation(sample, "answerQuestion", apiOutcome(), trace);
+                return answer;
+            })
+            .exceptionally(e -> {
+                // API呼び出し失敗時のエラーハンドリング
+                logFailure("answerQuestion", "質問回答中にエラーが発生しました", unwrap(e));
+                metrics.recordOperation(sample, "answerQuestion", failureOutcome(unwrap(e)), trace);
                 
-                この国について上記の質問に日本語で「はい」または「いいえ」で回答してください。
-                回答は必ず「はい」または「いいえ」のみにしてください。
-                """, question, country);
+                // フォールバック: デフォルトで「いいえ」を返す
+                return "いいえ";
+            });
+    }
+    
+    /**
+     * 質問への回答をストリーミングで生成
+     * キャッシュ済みの回答がある場合はAPIを呼び出さずに1回で通知する
+     * @param question ユーザーからの質問文
+     * @param country 対象となる国名
+     * @param onText 回答の断片を受け取るコールバック
+     * @return 回答全体を返すFuture（失敗時もフォールバックの回答で完了する）
+     */
+    public CompletableFuture<String> streamAnswer(String question, String country, Consumer<String> onText) {
+        Timer.Sample sample = metrics.start();
+        String cached = questionCache.get(QuestionCache.Kind.ANSWER, country, question);
+        if (cached != null) {
+            onText.accept(cached);
+            metrics.recordOperation(sample, "streamAnswer", Outcome.CACHE);
+            return CompletableFuture.completedFuture(cached);
+        }
+        
+        // 応答はGemini APIの呼び出しスレッドで完了するため、記録先のリクエストを先に取得しておく
+        RequestTrace trace = metrics.currentTrace();
+        CompletableFuture<String> upstream = streamGeminiAPI(getAnswerPrompt(question, country), onText);
+        return cancelUpstreamOnCancel(upstream
+            .thenApply(response -> {
+                String answer = response.trim();
+                cacheResponse(QuestionCache.Kind.ANSWER, country, question, answer);
+                metrics.recordOperation(sample, "streamAnswer", apiOutcome(), trace);
+                return answer;
+            })
+            .exceptionally(e -> {
+                if (unwrap(e) instanceof CancellationException) {
+                    // 呼び出し元のキャンセル（クライアントの切断・タイムアウト）は失敗として記録しない
+                    return "いいえ";
+                }
+                logFailure("streamAnswer", "質問回答中にエラーが発生しました", unwrap(e));
+                metrics.recordOperation(sample, "streamAnswer", failureOutcome(unwrap(e)), trace);
+                // フォールバック: デフォルトで「いいえ」を返す
+                return "いいえ";
+            }), upstream);
+    }
+    
+    /**
+     * 質問の検証結果と回答
+     * @param valid 質問が適切であればtrue
+     * @param answer AIからの回答（「はい」または「いいえ」、不適切な質問の場合はnull）
+     */
+    public record QuestionResult(boolean valid, String answer) {
+    }
+    
+    /**
+     * 質問の検証と回答を1回のAPI呼び出しで行うかどうか
+     * @return gemini.question.mode=combined の場合はtrue
+     */
+    public boolean isCombinedMode() {
+        return "combined".equalsIgnoreCase(questionMode);
+    }
+    
+    /**
+     * ユーザーの質問を検証し、適切であれば回答を生成
+     * gemini.question.mode=combined の場合は検証と回答を1回のAPI呼び出しで行う
+     * @param question ユーザーからの質問文
+     * @param country 対象となる国名
+     * @return 検証結果と回答を返すFuture（失敗時もフォールバックの結果で完了する）
+     */
+    public CompletableFuture<QuestionResult> evaluateQuestion(String question, String country) {
+        if (!isCombinedMode()) {
+            return evaluateQuestionSeparately(question, country);
+        }
+        
+        Timer.Sample sample = metrics.start();
+        // キャッシュ済みの結果があればAPIを呼び出さずに返す
+        String cachedVerdict = questionCache.get(QuestionCache.Kind.VALIDATE, country, question);
+        if (cachedVerdict != null && !cachedVerdict.startsWith("yes")) {
+            metrics.recordOperation(sample, "evaluateQuestion", Outcome.CACHE);
+            return CompletableFuture.completedFuture(new QuestionResult(false, null));
+        }
+        String cachedAnswer = questionCache.get(QuestionCache.Kind.ANSWER, country, question);
+        if (cachedVerdict != null && cachedAnswer != null) {
+            metrics.recordOperation(sample, "evaluateQuestion", Outcome.CACHE);
+            return CompletableFuture.completedFuture(new QuestionResult(true, cachedAnswer));
+        }
+        
+        // 検証と回答をまとめてJSONで求めるプロンプトを作成
+        String prompt = String.format("""
+            質問: "%s"
+            対象国: %s
             
-            // Gemini APIを呼び出して回答を取得
-            String response = callGeminiAPI(prompt);
-            return response.trim();
+            次の2点を判定し、JSONのみで回答してください：
+            1. valid: この質問がYes/No形式で回答でき、かつ答えに直結しない質問（例：「この国は○○ですか？」のような直接的な質問ではない）であればtrue、そうでなければfalse
+            2. answer: validがtrueの場合、この国について質問に「はい」または「いいえ」で回答。validがfalseの場合は空文字
             
-        } catch (Exception e) {
-            // API呼び出し失敗時のエラーハンドリング
-            System.err.println("質問回答中にエラーが発生しました: " + e.getMessage());
-            e.printStackTrace();
-            
-            // フォールバック: デフォルトで「いいえ」を返す
-            return "いいえ";
+            形式: {"valid": true, "answer": "はい"}
+            """, question, country);
+        
+        RequestTrace trace = metrics.currentTrace();
+        return callGeminiAPIAsync(prompt)
+            .thenApply(response -> {
+                QuestionResult result = parseQuestionResult(response);
+                if (result == null) {
+                    metrics.recordOperation(sample, "evaluateQuestion", Outcome.INVALID, trace);
+                    log.warn("質問判定の応答をパースできませんでした。回答のみ個別に求めます: {}", response);
+                    return null;
+                }
+                metrics.recordOperation(sample, "evaluateQuestion", apiOutcome(), trace);
+                
+                cacheResponse(QuestionCache.Kind.VALIDATE, country, question, result.valid() ? "yes" : "no");
+                if (result.valid()) {
+                    cacheResponse(QuestionCache.Kind.ANSWER, country, question, result.answer());
+                }
+                return result;
+            })
+            .exceptionally(e -> {
+                // API呼び出し失敗時のエラーハンドリング
+                logFailure("evaluateQuestion", "質問判定中にエラーが発生しました", unwrap(e));
+                metrics.recordOperation(sample, "evaluateQuestion", failureOutcome(unwrap(e)), trace);
+                
+                // フォールバック: 個別メソッドと同じ既定の判定
+                boolean valid = isValidByFallback(question, country);
+                return new QuestionResult(valid, valid ? "いいえ" : null);
+            })
+            // パースできない場合は妥当性をローカルで判定し、回答のみ1回で求める
+            .thenCompose(result -> result != null
+                ? CompletableFuture.completedFuture(result)
+                : answerWithoutValidation(question, country));
+    }
+    
+    /**
+     * 妥当性を既定の判定で確認し、適切であれば回答のみAPIで求める
+     * （検証と回答をまとめた応答をパースできなかった場合に、呼び出しを1回に抑える）
+     */
+    private CompletableFuture<QuestionResult> answerWithoutValidation(String question, String country) {
+        if (!isValidByFallback(question, country)) {
+            return CompletableFuture.completedFuture(new QuestionResult(false, null));
         }
+        return answerQuestion(question, country).thenApply(answer -> new QuestionResult(true, answer));
     }
     
     /**
-     * 指定されたタイプのヒントを生成
-     * @param hintType ヒントの種類（主食、面積、言語など）
-     * @param country 対象となる国名
-     * @return 生成されたヒント文
+     * API呼び出しを使わない質問の妥当性の判定（国名が含まれていなければ適切とする）
      */
-    public String getHint(String hintType, String country) {
+    private static boolean isValidByFallback(String question, String country) {
+        return !question.toLowerCase().contains(country.toLowerCase());
+    }
+    
+    /**
+     * 質問の検証と回答を個別のAPI呼び出しで行う
+     */
+    private CompletableFuture<QuestionResult> evaluateQuestionSeparately(String question, String country) {
+        return validateQuestion(question, country).thenCompose(valid -> valid
+            ? answerQuestion(question, country).thenApply(answer -> new QuestionResult(true, answer))
+            : CompletableFuture.completedFuture(new QuestionResult(false, null)));
+    }
+    
+    /**
+     * 検証と回答をまとめた応答をパース
+     * コードブロックや前後の文章が含まれていてもJSON部分のみを読み取る
+     * @param response APIからの生の応答文
+     * @return パース結果、形式が不正な場合はnull
+     */
+    QuestionResult parseQuestionResult(String response) {
+        int start = response.indexOf('{');
+        int end = response.lastIndexOf('}');
+        if (start < 0 || end <= start) {
+            return null;
+        }
+        
         try {
-            // ヒントタイプに応じたプロンプトを生成
-            String prompt = getHintPrompt(hintType, country);
+            JsonNode json = objectMapper.readTree(response.substring(start, end + 1));
+            JsonNode validNode = json.path("valid");
+            boolean valid;
+            if (validNode.isBoolean()) {
+                valid = validNode.booleanValue();
+            } else if (validNode.isTextual()) {
+                String text = validNode.asText().trim().toLowerCase();
+                if (!text.equals("true") && !text.equals("false")) {
+                    return null;
+                }
+                valid = text.equals("true");
+            } else {
+                return null;
+            }
             
-            // Gemini APIを呼び出してヒントを取得
-            return callGeminiAPI(prompt);
+            if (!valid) {
+                return new QuestionResult(false, null);
+            }
             
-        } catch (Exception e) {
-            // API呼び出し失敗時のエラーハンドリング
-            System.err.println("ヒント生成中にエラーが発生しました: " + e.getMessage());
-            e.printStackTrace();
+            // 回答は「はい」「いいえ」のいずれかのみ受け付ける
+            String answer = json.path("answer").asText("").trim();
+            if (answer.startsWith("はい")) {
+                return new QuestionResult(true, "はい");
+            } else if (answer.startsWith("いいえ")) {
+                return new QuestionResult(true, "いいえ");
+            }
+            return null;
             
-            // フォールバック: エラーメッセージを返す
-            return "ヒント情報を取得できませんでした。";
+        } catch (IOException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * 指定されたタイプのヒントを生成
+     * @param hintType ヒントの種類（主食、面積、言語など）
+     * @param country 対象となる国名
+     * @return 生成されたヒント文を返すFuture（失敗時もフォールバックの文で完了する）
+     */
+    public CompletableFuture<String> getHint(String hintType, String country) {
+        Timer.Sample sample = metrics.start();
+        RequestTrace trace = metrics.currentTrace();
+        // ヒントタイプに応じたプロンプトでGemini APIを呼び出してヒントを取得
+        return callGeminiAPIAsync(getHintPrompt(hintType, country))
+            .thenApply(hint -> {
+                metrics.recordOperation(sample, "getHint", apiOutcome(), trace);
+                return hint;
+            })
+            .exceptionally(e -> {
+                // API呼び出し失敗時のエラーハンドリング
+                logFailure("getHint", "ヒント生成中にエラーが発生しました", unwrap(e));
+                metrics.recordOperation(sample, "getHint", failureOutcome(unwrap(e)), trace);
+                
+                // フォールバック: エラーメッセージを返す
+                return "ヒント情報を取得できませんでした。";
+            });
+    }
+    
+    /**
+     * 指定されたタイプのヒントをストリーミングで生成
+     * @param hintType ヒントの種類（主食、面積、言語など）
+     * @param country 対象となる国名
+     * @param onText ヒントの断片を受け取るコールバック
+     * @return ヒント全体を返すFuture（失敗時もフォールバックの文で完了する）
+     */
+    public CompletableFuture<String> streamHint(String hintType, String country, Consumer<String> onText) {
+        Timer.Sample sample = metrics.start();
+        RequestTrace trace = metrics.currentTrace();
+        CompletableFuture<String> upstream = streamGeminiAPI(getHintPrompt(hintType, country), onText);
+        return cancelUpstreamOnCancel(upstream
+            .thenApply(hint -> {
+                metrics.recordOperation(sample, "streamHint", apiOutcome(), trace);
+                return hint;
+            })
+            .exceptionally(e -> {
+                if (unwrap(e) instanceof CancellationException) {
+                    return "ヒント情報を取得できませんでした。";
+                }
+                logFailure("streamHint", "ヒント生成中にエラーが発生しました", unwrap(e));
+                metrics.recordOperation(sample, "streamHint", failureOutcome(unwrap(e)), trace);
+                // フォールバック: エラーメッセージを返す
+                return "ヒント情報を取得できませんでした。";
+            }), upstream);
+    }
+    
+    /**
+     * Gemini APIで国データを生成できなかったことを示す例外
+     * （API呼び出しの失敗・遮断中・上限超過・APIキー未設定・応答の形式不正）
+     */
+    public static class CountryGenerationException extends Exception {
+        public CountryGenerationException(String message, Throwable cause) {
+            super(message, cause);
         }
     }
     
     /**
      * ランダムな国とその国旗URLを生成
+     * 生成できない場合は同梱カタログから選んだ国を返す
      * @return [英語名, 日本語名, 国旗URL]の配列
      */
     public String[] generateRandomCountryAndFlag() {
+        try {
+            return generateCountry();
+        } catch (CountryGenerationException e) {
+            // フォールバック: 同梱カタログから一様に選択
+            String[] fallback = randomCatalogCountry();
+            log.info("フォールバックを使用: {}", fallback[1]);
+            return fallback;
+        }
+    }
+    
+    /**
+     * Gemini APIでランダムな国とその国旗URLを生成（同梱カタログへのフォールバックは行わない）
+     * @return [英語名, 日本語名, 国旗URL]の配列
+     * @throws CountryGenerationException 生成できなかった場合
+     */
+    public String[] generateCountry() throws CountryGenerationException {
+        Timer.Sample sample = metrics.start();
+        if (!geminiClient.isConfigured()) {
+            // 既定の応答は国データの形式ではないため、APIキー未設定時は呼び出さない
+            metrics.recordOperation(sample, "generateRandomCountryAndFlag", Outcome.FALLBACK);
+            throw new CountryGenerationException("Gemini APIキーが設定されていません", null);
+        }
+        
         try {
             // 国データ生成を求めるプロンプトを作成
             String prompt = """
@@ -162,24 +450,29 @@ public class GeminiService {
                 例：
                 国名（英語）: Japan
                 国名（日本語）: 日本
-                国旗URL: https://flagcdn.com/w640/jp.png
+                国旗URL: https://flagcdn.com/h240/jp.png
                 
                 必ずこの形式で回答してください。
                 """;
             
             // Gemini APIを呼び出して国データを取得
+            // （プロンプトが毎回同じため、同時に呼び出した場合も同じ国にならないよう結果を共有しない）
             String response = callGeminiAPI(prompt);
-            return parseCountryResponse(response);
+            String[] country = parseCountryResponse(response);
+            if (country == null) {
+                metrics.recordOperation(sample, "generateRandomCountryAndFlag", Outcome.INVALID);
+                throw new CountryGenerationException("国データ応答をパースできませんでした", null);
+            }
+            metrics.recordOperation(sample, "generateRandomCountryAndFlag", Outcome.API);
+            return country;
             
+        } catch (CountryGenerationException e) {
+            throw e;
         } catch (Exception e) {
             // API呼び出し失敗時のエラーハンドリング
-            System.err.println("国データ生成中にエラーが発生しました: " + e.getMessage());
-            e.printStackTrace();
-            
-            // フォールバック: 予め定義された国リストからランダムに選択
-            int randomIndex = (int) (Math.random() * FALLBACK_COUNTRIES.length);
-            System.out.println("フォールバックを使用: " + FALLBACK_COUNTRIES[randomIndex][1]);
-            return FALLBACK_COUNTRIES[randomIndex].clone();
+            logFailure("generateRandomCountryAndFlag", "国データ生成中にエラーが発生しました", e);
+            metrics.recordOperation(sample, "generateRandomCountryAndFlag", failureOutcome(e));
+            throw new CountryGenerationException(e.getMessage(), e);
         }
     }
     
@@ -188,42 +481,55 @@ public class GeminiService {
      * @param userAnswer ユーザーからの回答
      * @param correctCountryEnglish 正解の国名（英語）
      * @param correctCountryJapanese 正解の国名（日本語）
-     * @return 正解であればtrue、不正解であればfalse
+     * @return 正解であればtrue、不正解であればfalseを返すFuture（失敗時もフォールバックの判定で完了する）
      */
-    public boolean validateAnswer(String userAnswer, String correctCountryEnglish, String correctCountryJapanese) {
-        try {
-            // 回答検証を求めるプロンプトを作成
-            String prompt = String.format("""
-                ユーザーの回答: "%s"
-                正解の国（英語）: %s
-                正解の国（日本語）: %s
-                
-                ユーザーの回答が正解かどうかを判定してください。
-                以下の場合は正解とみなしてください：
-                - 英語名の完全一致または略称（例：USA、UK）
-                - 日本語名の完全一致
-                - 一般的な別名（例：アメリカ合衆国→アメリカ）
-                
-                正解の場合は「正解」、不正解の場合は「不正解」のみ回答してください。
-                """, userAnswer, correctCountryEnglish, correctCountryJapanese);
+    public CompletableFuture<Boolean> validateAnswer(String userAnswer, String correctCountryEnglish, String correctCountryJapanese) {
+        Timer.Sample sample = metrics.start();
+        // 回答検証を求めるプロンプトを作成
+        String prompt = String.format("""
+            ユーザーの回答: "%s"
+            正解の国（英語）: %s
+            正解の国（日本語）: %s
             
-            // Gemini APIを呼び出して判定結果を取得
-            String response = callGeminiAPI(prompt);
-            return response.trim().equals("正解");
+            ユーザーの回答が正解かどうかを判定してください。
+            以下の場合は正解とみなしてください：
+            - 英語名の完全一致または略称（例：USA、UK）
+            - 日本語名の完全一致
+            - 一般的な別名（例：アメリカ合衆国→アメリカ）
             
-        } catch (Exception e) {
-            // API呼び出し失敗時のエラーハンドリング
-            System.err.println("回答検証中にエラーが発生しました: " + e.getMessage());
-            e.printStackTrace();
-            
-            // フォールバック: 基本的な文字列比較を実行
-            String lowerAnswer = userAnswer.toLowerCase().trim();
-            boolean isCorrect = lowerAnswer.equals(correctCountryEnglish.toLowerCase()) || 
-                               lowerAnswer.equals(correctCountryJapanese.toLowerCase());
-            
-            System.out.println("フォールバック検証を使用: " + (isCorrect ? "正解" : "不正解"));
-            return isCorrect;
-        }
+            正解の場合は「正解」、不正解の場合は「不正解」のみ回答してください。
+            """, userAnswer, correctCountryEnglish, correctCountryJapanese);
+        
+        RequestTrace trace = metrics.currentTrace();
+        return callGeminiAPIAsync(prompt)
+            .thenApply(response -> {
+                metrics.recordOperation(sample, "validateAnswer", apiOutcome(), trace);
+                return response.trim().equals("正解");
+            })
+            .exceptionally(e -> {
+                // API呼び出し失敗時のエラーハンドリング
+                logFailure("validateAnswer", "回答検証中にエラーが発生しました", unwrap(e));
+                metrics.recordOperation(sample, "validateAnswer", failureOutcome(unwrap(e)), trace);
+                
+                // フォールバック: 基本的な文字列比較を実行
+                boolean isCorrect = matchesFallback(userAnswer, correctCountryEnglish, correctCountryJapanese);
+                
+                log.debug("フォールバック検証を使用: {}", isCorrect ? "正解" : "不正解");
+                return isCorrect;
+            });
+    }
+    
+    /**
+     * API呼び出し失敗時の回答判定（大文字小文字と前後の空白を無視した完全一致）
+     * @param userAnswer ユーザーからの回答
+     * @param correctCountryEnglish 正解の国名（英語）
+     * @param correctCountryJapanese 正解の国名（日本語）
+     * @return いずれかの国名と一致すればtrue
+     */
+    static boolean matchesFallback(String userAnswer, String correctCountryEnglish, String correctCountryJapanese) {
+        String lowerAnswer = userAnswer.toLowerCase().trim();
+        return lowerAnswer.equals(correctCountryEnglish.toLowerCase()) || 
+               lowerAnswer.equals(correctCountryJapanese.toLowerCase());
     }
     
     /**
@@ -232,7 +538,7 @@ public class GeminiService {
      * @param country 対象となる国名
      * @return 生成されたプロンプト文
      */
-    private String getHintPrompt(String hintType, String country) {
+    String getHintPrompt(String hintType, String country) {
         return switch (hintType) {
             case "主食" -> String.format(
                 "%sの主食について、自然な日本語で短く教えてください。国名や記号は使わず、「〜が主食です」のような形で回答してください。", 
@@ -248,79 +554,62 @@ public class GeminiService {
     }
     
     /**
-     * Gemini APIを呼び出してプロンプトに対する回答を取得
+     * 質問への回答を求めるプロンプトを生成
+     * @param question ユーザーからの質問文
+     * @param country 対象となる国名
+     * @return 生成されたプロンプト文
+     */
+    private String getAnswerPrompt(String question, String country) {
+        return String.format("""
+            質問: "%s"
+            対象国: %s
+            
+            この国について上記の質問に日本語で「はい」または「いいえ」で回答してください。
+            回答は必ず「はい」または「いいえ」のみにしてください。
+            """, question, country);
+    }
+    
+    /**
+     * Gemini APIを非同期で呼び出してプロンプトに対する回答を取得
+     * 同じプロンプトの呼び出しが実行中であれば、その結果を共有する
+     * （バッチ処理が有効な場合は、他のプロンプトとまとめて送信する）
+     * 呼び出し元のスレッドは応答を待たない
+     * @param prompt APIに送信するプロンプト文
+     * @return APIからの回答文を返すFuture（遮断中・上限超過・API呼び出し失敗時は例外で完了する）
+     */
+    private CompletableFuture<String> callGeminiAPIAsync(String prompt) {
+        // APIキーが設定されていない場合はフォールバック応答を使用
+        if (!geminiClient.isConfigured()) {
+            log.debug("Gemini APIキーが設定されていません。フォールバック応答を使用します。");
+            return CompletableFuture.completedFuture(getFallbackResponse(prompt));
+        }
+        if (geminiBatcher.isEnabled()) {
+            return geminiBatcher.submit(prompt);
+        }
+        return geminiClient.generateAsync(prompt);
+    }
+    
+    /**
+     * Gemini APIを呼び出してプロンプトに対する回答を同期的に取得
+     * 実行中の同じプロンプトの呼び出しとは結果を共有しない（国データの生成など、呼び出しごとに異なる応答が必要な場合）
      * @param prompt APIに送信するプロンプト文
      * @return APIからの回答文
      * @throws Exception API呼び出し失敗時
      */
     private String callGeminiAPI(String prompt) throws Exception {
         // APIキーが設定されていない場合はフォールバック応答を使用
-        if (apiKey == null || apiKey.trim().isEmpty() || DEFAULT_API_KEY.equals(apiKey)) {
-            System.out.println("Gemini APIキーが設定されていません。フォールバック応答を使用します。");
+        if (!geminiClient.isConfigured()) {
+            log.debug("Gemini APIキーが設定されていません。フォールバック応答を使用します。");
             return getFallbackResponse(prompt);
         }
         
-        // Gemini API のエンドポイントURL を構築
-        String url = "https://generativelanguage.googleapis.com/v1beta/models/" + model + ":generateContent?key=" + apiKey;
-        
         try {
-            // APIリクエストボディを構築
-            Map<String, Object> requestBody = new HashMap<>();
-            Map<String, Object> content = new HashMap<>();
-            Map<String, Object> part = new HashMap<>();
-            part.put("text", prompt);
-            content.put("parts", List.of(part));
-            requestBody.put("contents", List.of(content));
-            
-            // JSONにシリアライズ
-            String jsonBody = objectMapper.writeValueAsString(requestBody);
-            
-            // HTTPリクエストボディを作成
-            RequestBody body = RequestBody.create(
-                jsonBody, 
-                MediaType.parse("application/json")
-            );
-            
-            // HTTPリクエストを構築
-            Request request = new Request.Builder()
-                .url(url)
-                .post(body)
-                .build();
-            
-            // API呼び出しを実行
-            try (Response response = httpClient.newCall(request).execute()) {
-                if (!response.isSuccessful()) {
-                    throw new IOException("API呼び出しが失敗しました。HTTPコード: " + response.code() + ", メッセージ: " + response.message());
-                }
-                
-                // レスポンスボディを取得
-                String responseBody = response.body().string();
-                if (responseBody == null || responseBody.trim().isEmpty()) {
-                    throw new IOException("APIからの応答が空です");
-                }
-                
-                // JSONレスポンスをパース
-                JsonNode jsonResponse = objectMapper.readTree(responseBody);
-                
-                // 応答からテキスト部分を抽出
-                JsonNode candidates = jsonResponse.path("candidates");
-                if (candidates.isMissingNode() || candidates.size() == 0) {
-                    throw new IOException("APIレスポンスに候補が含まれていません");
-                }
-                
-                JsonNode textNode = candidates.get(0)
-                        .path("content")
-                        .path("parts")
-                        .get(0)
-                        .path("text");
-                        
-                if (textNode.isMissingNode()) {
-                    throw new IOException("APIレスポンスにテキストが含まれていません");
-                }
-                
-                return textNode.asText();
-            }
+            // 非同期クライアントで呼び出し、結果を待機（上限超過・タイムアウト時は例外）
+            return geminiClient.generate(prompt, false);
             
+        } catch (GeminiCircuitBreaker.OpenException | GeminiRateLimiter.LimitExceededException e) {
+            // 遮断中・呼び出し数の上限超過時はそのまま呼び出し元のフォールバックに任せる
+            throw e;
         } catch (IOException e) {
             throw new Exception("Gemini API呼び出し中にネットワークエラーが発生しました: " + e.getMessage(), e);
         } catch (Exception e) {
@@ -328,31 +617,119 @@ public class GeminiService {
         }
     }
     
+    /**
+     * Gemini APIをストリーミングで呼び出す
+     * APIキーが設定されていない場合はフォールバック応答を1回で通知する
+     * @param prompt APIに送信するプロンプト文
+     * @param onText 回答の断片を受け取るコールバック
+     * @return 回答全体を返すFuture
+     */
+    private CompletableFuture<String> streamGeminiAPI(String prompt, Consumer<String> onText) {
+        if (!geminiClient.isConfigured()) {
+            log.debug("Gemini APIキーが設定されていません。フォールバック応答を使用します。");
+            String response = getFallbackResponse(prompt);
+            onText.accept(response);
+            return CompletableFuture.completedFuture(response);
+        }
+        return geminiClient.streamAsync(prompt, onText);
+    }
+    
+    /**
+     * 返すFutureがキャンセルされた場合に、元の呼び出しもキャンセルする
+     * （CompletableFutureのキャンセルは依存元に伝わらないため、HTTP呼び出しを中止するには元のFutureをキャンセルする）
+     * @param result 呼び出し元に返すFuture
+     * @param upstream 元の呼び出しのFuture
+     * @return result
+     */
+    static <T> CompletableFuture<T> cancelUpstreamOnCancel(CompletableFuture<T> result, CompletableFuture<?> upstream) {
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                upstream.cancel(true);
+            }
+        });
+        return result;
+    }
+    
+    /**
+     * CompletableFutureの失敗原因を取り出す
+     */
+    private static Exception unwrap(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return cause instanceof Exception exception ? exception : new Exception(cause);
+    }
+    
+    /**
+     * Gemini APIからの応答をキャッシュに保存
+     * APIキー未設定時の既定の応答（ランダムな回答）は保存しない
+     */
+    private void cacheResponse(QuestionCache.Kind kind, String country, String question, String value) {
+        if (geminiClient.isConfigured()) {
+            questionCache.put(kind, country, question, value);
+        }
+    }
+    
+    /**
+     * API呼び出しが成功した場合の結果（APIキー未設定時は既定の応答を使うためフォールバック扱い）
+     */
+    private Outcome apiOutcome() {
+        return geminiClient.isConfigured() ? Outcome.API : Outcome.FALLBACK;
+    }
+    
+    /**
+     * API呼び出しが失敗した場合の結果（遮断中・上限超過で呼び出さなかった場合はフォールバック扱い）
+     */
+    private static Outcome failureOutcome(Exception e) {
+        return isShed(e) ? Outcome.FALLBACK : Outcome.ERROR;
+    }
+    
+    /**
+     * 遮断中、または呼び出し数の上限超過のためAPIを呼び出さなかったかどうか
+     */
+    private static boolean isShed(Exception e) {
+        return e instanceof GeminiCircuitBreaker.OpenException || e instanceof GeminiRateLimiter.LimitExceededException;
+    }
+    
+    /**
+     * API呼び出し失敗を出力
+     * 遮断中・上限超過で呼び出しを行わなかった場合はスタックトレースを出力しない
+     * 同じ操作で同じ種類のエラーが続く場合は一定期間に1件のみ出力し、残りは件数のみ報告する
+     * @param operation 操作名
+     * @param message エラーメッセージ
+     * @param e 発生した例外
+     */
+    private void logFailure(String operation, String message, Exception e) {
+        if (e instanceof GeminiCircuitBreaker.OpenException) {
+            errorLogSampler.log(log, Level.WARN, operation, message + "（API呼び出し停止中のためフォールバックを使用）", null, e.getClass());
+            return;
+        }
+        if (e instanceof GeminiRateLimiter.LimitExceededException) {
+            errorLogSampler.log(log, Level.WARN, operation, message + "（API呼び出し数の上限に達したためフォールバックを使用）", null, e.getClass());
+            return;
+        }
+        errorLogSampler.log(log, Level.ERROR, operation, message + ": " + e.getMessage(), e, e.getClass());
+    }
+    
     /**
      * API呼び出し失敗時に使用するフォールバック応答を生成
      * @param prompt 元のプロンプト文
      * @return プロンプトの内容に応じたデフォルト応答
      */
     private String getFallbackResponse(String prompt) {
+        // 質問検証と回答をまとめて行う場合
+        if (prompt.contains("JSONのみで回答")) {
+            return "{\"valid\": true, \"answer\": \"" + (Math.random() > 0.5 ? "はい" : "いいえ") + "\"}";
+        }
         // 質問検証の場合
-        if (prompt.contains("条件を満たしているか")) {
+        else if (prompt.contains("条件を満たしているか")) {
             return "Yes";
         } 
         // Yes/No質問への回答の場合
         else if (prompt.contains("はい」または「いいえ")) {
             return Math.random() > 0.5 ? "はい" : "いいえ";
         } 
-        // 主食ヒントの場合
-        else if (prompt.contains("主食")) {
-            return "米が主食です。";
-        } 
-        // 面積ヒントの場合
-        else if (prompt.contains("面積")) {
-            return "日本の約2倍の面積です。";
-        } 
-        // 言語ヒントの場合
-        else if (prompt.contains("言語")) {
-            return "英語が公用語です。";
+        // ヒントの場合（国ごとに異なるため、固定の内容は返さない）
+        else if (prompt.contains("主食") || prompt.contains("面積") || prompt.contains("公用語")) {
+            return "ヒント情報を取得できませんでした。";
         }
         // その他の場合のデフォルト応答
         return "情報を取得できませんでした。";
@@ -361,9 +738,9 @@ public class GeminiService {
     /**
      * Gemini APIからの国データ応答をパースして配列に変換
      * @param response APIからの生の応答文
-     * @return [英語名, 日本語名, 国旗URL]の配列
+     * @return [英語名, 日本語名, 国旗URL]の配列、項目が不足している場合はnull
      */
-    private String[] parseCountryResponse(String response) {
+    String[] parseCountryResponse(String response) {
         try {
             // 改行で分割して各行を処理
             String[] lines = response.split("\n");
@@ -391,19 +768,27 @@ public class GeminiService {
             
             // すべての必要な情報が取得できた場合は配列として返す
             if (englishName != null && japaneseName != null && flagUrl != null) {
-                System.out.println("国データのパースに成功: " + japaneseName);
+                log.debug("国データのパースに成功: {}", japaneseName);
                 return new String[]{englishName, japaneseName, flagUrl};
             } else {
-                System.err.println("国データの一部が不足しています。英語名: " + englishName + ", 日本語名: " + japaneseName + ", URL: " + flagUrl);
+                log.warn("国データの一部が不足しています。英語名: {}, 日本語名: {}, URL: {}", englishName, japaneseName, flagUrl);
             }
             
         } catch (Exception e) {
-            System.err.println("国データ応答のパースに失敗しました: " + e.getMessage());
-            e.printStackTrace();
+            log.warn("国データ応答のパースに失敗しました", e);
         }
         
-        // パース失敗時のフォールバック（日本を返す）
-        System.out.println("パース失敗のため日本をフォールバックとして使用");
-        return new String[]{"Japan", "日本", "https://flagcdn.com/w640/jp.png"};
+        return null;
+    }
+
+    /**
+     * 同梱カタログから一様に選んだ国
+     * @return [英語名, 日本語名, 国旗URL]の配列
+     */
+    private static String[] randomCatalogCountry() {
+        CountryCatalog catalog = CountryCatalog.getDefault();
+        Country country = catalog.get(ThreadLocalRandom.current().nextInt(catalog.size()));
+        return new String[]{country.englishName(), country.japaneseName(),
+            "https://flagcdn.com/h240/" + country.isoCode() + ".png"};
     }
 }
\ No newline at end of file
@@ -0,0 +1,116 @@
+package com.example.flagquiz.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
+
+/**
+ * streamGenerateContent（alt=sse）の応答パーサー
+ * 応答全体をバッファせず、SSEのイベントを1件ずつJSONストリーミングパーサーで読み、
+ * candidates[].content.parts[].text の断片をその場で通知する
+ */
+final class GeminiStreamParser {
+
+    // エラー応答の内容を読み取れるよう、ObjectMapperに紐づいたファクトリを使う
+    private static final JsonFactory JSON_FACTORY = new ObjectMapper().getFactory();
+
+    private final Consumer<String> onText;
+    // 受信したテキスト全体
+    private final StringBuilder text = new StringBuilder();
+    // 現在のイベントのdata行
+    private final StringBuilder data = new StringBuilder();
+
+    /**
+     * @param onText テキストの断片を受け取るコールバック
+     */
+    GeminiStreamParser(Consumer<String> onText) {
+        this.onText = onText;
+    }
+
+    /**
+     * SSEの1行を処理
+     * 空行でイベントの区切りとみなし、それまでのdata行をパースする
+     * @param line 改行を除いた1行
+     * @throws IOException イベントのJSONが不正、またはAPIがエラーを返した場合
+     */
+    void feedLine(String line) throws IOException {
+        if (line.isEmpty()) {
+            dispatch();
+        } else if (line.startsWith("data:")) {
+            if (data.length() > 0) {
+                data.append('\n');
+            }
+            data.append(line, line.startsWith("data: ") ? 6 : 5, line.length());
+        }
+        // event:, id:, コメント行は使用しない
+    }
+
+    /**
+     * ストリームの終端を処理（最後のイベントの後に空行がない場合に備える）
+     * @return 受信したテキスト全体
+     * @throws IOException 最後のイベントのJSONが不正な場合
+     */
+    String finish() throws IOException {
+        dispatch();
+        return text.toString();
+    }
+
+    private void dispatch() throws IOException {
+        if (data.length() == 0) {
+            return;
+        }
+        String json = data.toString();
+        data.setLength(0);
+        parseChunk(json);
+    }
+
+    /**
+     * 1イベント分のJSONからテキスト部分を取り出す
+     * "parts" 配列の中の "text" フィールドのみを対象とする
+     */
+    private void parseChunk(String json) throws IOException {
+        // 現在位置までのフィールド名（オブジェクト・配列の入れ子ごと）
+        Deque<String> path = new ArrayDeque<>();
+        String field = null;
+
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                switch (token) {
+                    case FIELD_NAME -> {
+                        field = parser.currentName();
+                        if ("error".equals(field) && path.size() == 1) {
+                            parser.nextToken();
+                            throw new IOException("ストリーミング応答でエラーが返されました: " + parser.readValueAsTree());
+                        }
+                    }
+                    case START_OBJECT, START_ARRAY -> {
+                        path.push(field != null ? field : "");
+                        field = null;
+                    }
+                    case END_OBJECT, END_ARRAY -> {
+                        path.pop();
+                        field = null;
+                    }
+                    case VALUE_STRING -> {
+                        if ("text".equals(field) && path.contains("parts")) {
+                            String fragment = parser.getText();
+                            if (!fragment.isEmpty()) {
+                                text.append(fragment);
+                                onText.accept(fragment);
+                            }
+                        }
+                        field = null;
+                    }
+                    default -> field = null;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.flagquiz.service;
+
+import com.example.flagquiz.model.Country;
+import com.example.flagquiz.model.CountryCatalog;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * ヒントテーブル - 同梱のヒントデータから主食・面積・言語のヒントを生成
+ * 変化しない事実はGemini APIを呼び出さずにローカルで回答する
+ */
+@Service
+public class HintTable {
+
+    // 同梱のヒントデータファイル
+    private static final String RESOURCE = "/data/hints.tsv";
+
+    // 面積比較の基準となる日本のISOコード
+    private static final String JAPAN_ISO = "jp";
+
+    /**
+     * 1か国分のヒントデータ
+     * @param staple 主食
+     * @param areaKm2 面積（平方キロメートル）
+     * @param languages 公用語
+     */
+    record Entry(String staple, int areaKm2, String languages) {
+    }
+
+    @Autowired
+    private CountryCatalog countryCatalog;
+
+    // ISOコード → ヒントデータ
+    private Map<String, Entry> entries;
+
+    @PostConstruct
+    void init() {
+        try (InputStream in = HintTable.class.getResourceAsStream(RESOURCE)) {
+            if (in == null) {
+                throw new IllegalStateException("ヒントデータファイルが見つかりません: " + RESOURCE);
+            }
+            entries = load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("ヒントデータファイルの読み込みに失敗しました", e);
+        }
+    }
+
+    /**
+     * ヒントテーブルからヒント文を生成
+     * @param hintType ヒントの種類（主食、面積、言語）
+     * @param country 対象となる国名
+     * @return ヒント文、テーブルにない国・ヒントの場合はnull
+     */
+    public String lookup(String hintType, String country) {
+        Country found = countryCatalog.findByName(country);
+        if (found == null) {
+            return null;
+        }
+        Entry entry = entries.get(found.isoCode());
+        if (entry == null) {
+            return null;
+        }
+
+        return switch (hintType) {
+            case "主食" -> entry.staple() + "が主食です。";
+            case "面積" -> describeArea(entry.areaKm2());
+            case "言語" -> entry.languages() + "が公用語です。";
+            default -> null;
+        };
+    }
+
+    /**
+     * 国のヒントデータを取得
+     * @param isoCode ISO 3166-1 alpha-2 コード（小文字）
+     * @return ヒントデータ、テーブルにない国の場合はnull
+     */
+    Entry entry(String isoCode) {
+        return entries.get(isoCode);
+    }
+
+    /**
+     * 面積を日本と比較した文章に変換
+     * @param areaKm2 面積（平方キロメートル）
+     * @return 「日本の約〜倍の面積です。」のような文章
+     */
+    private String describeArea(int areaKm2) {
+        double ratio = (double) areaKm2 / entries.get(JAPAN_ISO).areaKm2();
+
+        if (ratio >= 1.05) {
+            return ratio < 10
+                ? String.format("日本の約%.1f倍の面積です。", ratio)
+                : String.format("日本の約%d倍の面積です。", Math.round(ratio));
+        }
+        if (ratio > 0.95) {
+            return "日本とほぼ同じ面積です。";
+        }
+        if (ratio >= 0.15) {
+            return String.format("日本の約%d割の面積です。", Math.round(ratio * 10));
+        }
+
+        long inverse = Math.round(1 / ratio);
+        return inverse >= 10000
+            ? String.format("日本の約%d万分の1の面積です。", Math.round(inverse / 10000.0))
+            : String.format("日本の約%d分の1の面積です。", inverse);
+    }
+
+    private static Map<String, Entry> load(InputStream in) throws IOException {
+        Map<String, Entry> entries = new HashMap<>();
+        // 「米」「英語」など重複する文字列は同じインスタンスを共有する
+        Map<String, String> strings = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\t", -1);
+                entries.put(fields[0].toLowerCase(Locale.ROOT),
+                    new Entry(
+                        strings.computeIfAbsent(fields[1], value -> value),
+                        Integer.parseInt(fields[2]),
+                        strings.computeIfAbsent(fields[3], value -> value)));
+            }
+        }
+        return Map.copyOf(entries);
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.flagquiz.service;
+
+import com.example.flagquiz.model.GameState;
+import com.example.flagquiz.model.GameStateCodec;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.function.UnaryOperator;
+
+/**
+ * プロセス内のゲーム状態ストア（既定）
+ * 外部ストアと同じく、保存時にエンコードしたバイト列を保持し、取得のたびに復元する
+ */
+public class InMemoryGameStateStore implements GameStateStore {
+
+    private static final Logger log = LoggerFactory.getLogger(InMemoryGameStateStore.class);
+
+    private final Cache<String, byte[]> games;
+
+    /**
+     * @param meterRegistry メトリクスの登録先
+     * @param ttl 最後に保存してからゲーム状態を保持する時間
+     */
+    public InMemoryGameStateStore(MeterRegistry meterRegistry, Duration ttl) {
+        games = Caffeine.newBuilder()
+            .expireAfterWrite(ttl)
+            .build();
+
+        Gauge.builder("game.store.games", games, Cache::estimatedSize)
+            .description("保存しているゲーム数")
+            .tag("type", "memory")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public GameState load(String gameId) {
+        byte[] data = games.getIfPresent(gameId);
+        if (data == null) {
+            return null;
+        }
+        try {
+            return GameStateCodec.decode(data);
+        } catch (IOException e) {
+            log.warn("ゲーム状態の復元に失敗しました: {}", e.toString());
+            games.invalidate(gameId);
+            return null;
+        }
+    }
+
+    @Override
+    public void save(String gameId, GameState state) {
+        games.put(gameId, GameStateCodec.encode(state));
+    }
+
+    @Override
+    public GameState update(String gameId, UnaryOperator<GameState> updater) {
+        GameState[] updated = new GameState[1];
+        // 同じキーのcomputeは順に実行され、updaterが例外を投げた場合は元の値のまま残る
+        games.asMap().compute(gameId, (id, data) -> {
+            if (data == null) {
+                return null;
+            }
+            GameState state;
+            try {
+                state = GameStateCodec.decode(data);
+            } catch (IOException e) {
+                log.warn("ゲーム状態の復元に失敗しました: {}", e.toString());
+                return null;
+            }
+            updated[0] = updater.apply(state);
+            return GameStateCodec.encode(updated[0]);
+        });
+        return updated[0];
+    }
+
+    @Override
+    public void delete(String gameId) {
+        games.invalidate(gameId);
+    }
+}
@@ -0,0 +1,276 @@
+package com.example.flagquiz.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 完了したリクエストの処理区間をOpenTelemetryのコレクターに送信（OTLP/HTTP、JSON形式）
+ * リクエストを処理するスレッドはキューに積むだけで、一定間隔でまとめて送信する（キューが満杯の場合は捨てる）
+ * リクエスト全体を親の区間、記録した区間をその子孫として1つのトレースにする
+ */
+@Component
+public class OtlpTraceExporter {
+
+    private static final Logger log = LoggerFactory.getLogger(OtlpTraceExporter.class);
+
+    private static final MediaType JSON = MediaType.parse("application/json");
+
+    // OTLPのSpanKind（SERVER: リクエスト全体、INTERNAL: 記録した区間）とStatusCode
+    private static final int KIND_INTERNAL = 1;
+    private static final int KIND_SERVER = 2;
+    private static final int STATUS_ERROR = 2;
+
+    // 送信するかどうか
+    @Value("${trace.otlp.enabled:false}")
+    private boolean enabled;
+
+    // 送信先（OTLP/HTTPのトレースの受信先）
+    @Value("${trace.otlp.endpoint:http://localhost:4318/v1/traces}")
+    private String endpoint;
+
+    // 送信間隔
+    @Value("${trace.otlp.interval:5s}")
+    private Duration interval;
+
+    // 送信待ちのリクエストの上限（超えた分は送信しない）
+    @Value("${trace.otlp.queue-size:2048}")
+    private int queueSize;
+
+    // 1回の送信にまとめるリクエストの上限
+    @Value("${trace.otlp.max-batch-size:512}")
+    private int maxBatchSize;
+
+    @Value("${trace.otlp.timeout:5s}")
+    private Duration timeout;
+
+    @Value("${spring.application.name:flag-quiz-jv}")
+    private String serviceName;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private BlockingQueue<RequestTrace> queue;
+    private OkHttpClient httpClient;
+    private ScheduledExecutorService scheduler;
+
+    private Counter exportedCounter;
+    private Counter failedCounter;
+    private Counter droppedCounter;
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(queueSize);
+        httpClient = new OkHttpClient.Builder()
+            .callTimeout(timeout)
+            .build();
+        exportedCounter = lookupCounter("exported");
+        failedCounter = lookupCounter("failed");
+        droppedCounter = lookupCounter("dropped");
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "otlp-trace-exporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flush, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdownNow();
+        // 送信待ちの記録を送信してから終了する
+        flush();
+        httpClient.dispatcher().executorService().shutdown();
+    }
+
+    /**
+     * 送信が有効かどうか
+     * @return 有効であればtrue
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 完了したリクエストを送信待ちに追加
+     * @param trace リクエストの記録
+     */
+    void offer(RequestTrace trace) {
+        if (!queue.offer(trace)) {
+            droppedCounter.increment();
+        }
+    }
+
+    /**
+     * 送信待ちのリクエストをまとめて送信
+     */
+    private void flush() {
+        List<RequestTrace> batch = new ArrayList<>();
+        while (queue.drainTo(batch, maxBatchSize) > 0) {
+            try {
+                send(encode(batch));
+                exportedCounter.increment(batch.size());
+            } catch (IOException | RuntimeException e) {
+                failedCounter.increment(batch.size());
+                log.warn("トレースをOTLPコレクターに送信できませんでした（{}件）: {}", batch.size(), e.toString());
+            }
+            batch.clear();
+        }
+    }
+
+    private void send(byte[] body) throws IOException {
+        Request request = new Request.Builder()
+            .url(endpoint)
+            .post(RequestBody.create(body, JSON))
+            .build();
+        try (Response response = httpClient.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new IOException("HTTP " + response.code());
+            }
+        }
+    }
+
+    /**
+     * リクエストの記録をOTLPのJSON形式（ExportTraceServiceRequest）に変換
+     * @param traces リクエストの記録
+     * @return リクエストボディ
+     */
+    byte[] encode(List<RequestTrace> traces) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator json = jsonFactory.createGenerator(out)) {
+            json.writeStartObject();
+            json.writeArrayFieldStart("resourceSpans");
+            json.writeStartObject();
+            json.writeObjectFieldStart("resource");
+            json.writeArrayFieldStart("attributes");
+            writeAttribute(json, "service.name", serviceName);
+            json.writeEndArray();
+            json.writeEndObject();
+            json.writeArrayFieldStart("scopeSpans");
+            json.writeStartObject();
+            json.writeObjectFieldStart("scope");
+            json.writeStringField("name", RequestTracer.class.getName());
+            json.writeEndObject();
+            json.writeArrayFieldStart("spans");
+            for (RequestTrace trace : traces) {
+                writeTrace(json, trace);
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+            json.writeEndArray();
+            json.writeEndObject();
+            json.writeEndArray();
+            json.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    private void writeTrace(JsonGenerator json, RequestTrace trace) throws IOException {
+        HexFormat hex = HexFormat.of();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String traceId = hex.toHexDigits(random.nextLong()) + hex.toHexDigits(random.nextLong());
+        String rootId = hex.toHexDigits(random.nextLong());
+        long startNanos = trace.getStartEpochMillis() * 1_000_000;
+        String handler = trace.getHandler();
+
+        json.writeStartObject();
+        json.writeStringField("traceId", traceId);
+        json.writeStringField("spanId", rootId);
+        json.writeStringField("name", trace.getMethod() + " " + (handler != null ? handler : trace.getPath()));
+        json.writeNumberField("kind", KIND_SERVER);
+        json.writeStringField("startTimeUnixNano", Long.toString(startNanos));
+        json.writeStringField("endTimeUnixNano", Long.toString(startNanos + Math.max(0, trace.getDurationNanos())));
+        json.writeArrayFieldStart("attributes");
+        writeAttribute(json, "http.request.method", trace.getMethod());
+        writeAttribute(json, "url.path", trace.getPath());
+        writeAttribute(json, "code.function", handler);
+        writeAttribute(json, "session.id", trace.getSessionId());
+        writeAttribute(json, "game.id", trace.getGameId());
+        json.writeStartObject();
+        json.writeStringField("key", "http.response.status_code");
+        json.writeObjectFieldStart("value");
+        json.writeStringField("intValue", Integer.toString(trace.getStatus()));
+        json.writeEndObject();
+        json.writeEndObject();
+        json.writeEndArray();
+        if (trace.getStatus() >= 500) {
+            json.writeObjectFieldStart("status");
+            json.writeNumberField("code", STATUS_ERROR);
+            json.writeEndObject();
+        }
+        json.writeEndObject();
+
+        // 入れ子の深さごとの直近の区間を親にする
+        String[] parents = new String[RequestTrace.MAX_SPANS + 2];
+        parents[0] = rootId;
+        for (RequestTrace.Span span : trace.spans()) {
+            String spanId = hex.toHexDigits(random.nextLong());
+            parents[span.depth() + 1] = spanId;
+            long spanStart = startNanos + span.startNanos();
+            long duration = span.durationNanos() >= 0 ? span.durationNanos() : trace.getDurationNanos() - span.startNanos();
+
+            json.writeStartObject();
+            json.writeStringField("traceId", traceId);
+            json.writeStringField("spanId", spanId);
+            json.writeStringField("parentSpanId", parents[span.depth()] != null ? parents[span.depth()] : rootId);
+            json.writeStringField("name", span.name());
+            json.writeNumberField("kind", KIND_INTERNAL);
+            json.writeStringField("startTimeUnixNano", Long.toString(spanStart));
+            json.writeStringField("endTimeUnixNano", Long.toString(spanStart + Math.max(0, duration)));
+            json.writeEndObject();
+        }
+    }
+
+    private static void writeAttribute(JsonGenerator json, String key, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        json.writeStartObject();
+        json.writeStringField("key", key);
+        json.writeObjectFieldStart("value");
+        json.writeStringField("stringValue", value);
+        json.writeEndObject();
+        json.writeEndObject();
+    }
+
+    private Counter lookupCounter(String result) {
+        return Counter.builder("trace.otlp.traces")
+            .tag("result", result)
+            .description("OTLPコレクターに送信したリクエストの記録の数")
+            .register(meterRegistry);
+    }
+}
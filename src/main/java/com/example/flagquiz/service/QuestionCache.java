@@ -0,0 +1,265 @@
+package com.example.flagquiz.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 質問応答キャッシュ - 国と正規化した質問文をキーに、Gemini APIの質問検証・回答結果を保持
+ * サイズ上限とTTLで古いエントリを追い出し（W-TinyLFU）、停止時のスナップショットから再起動時に復元できる
+ */
+@Service
+public class QuestionCache {
+
+    private static final Logger log = LoggerFactory.getLogger(QuestionCache.class);
+
+    /**
+     * キャッシュする応答の種類
+     */
+    public enum Kind {
+        // validateQuestionの判定結果
+        VALIDATE,
+        // answerQuestionの回答
+        ANSWER
+    }
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // キャッシュの最大エントリ数
+    @Value("${gemini.cache.max-size:10000}")
+    private long maxSize;
+
+    // エントリの有効期間
+    @Value("${gemini.cache.ttl:6h}")
+    private Duration ttl;
+
+    // スナップショットファイルのパス（空の場合は保存・復元しない）
+    @Value("${gemini.cache.snapshot-file:}")
+    private String snapshotFile;
+
+    // スナップショットの先頭行に付ける識別子（各行にエントリの取得時刻を含む形式）
+    private static final String SNAPSHOT_HEADER = "#question-cache-v2";
+
+    /**
+     * キャッシュした応答と、Gemini APIから取得した時刻
+     * スナップショットから復元したエントリも取得時刻からTTLで期限切れになる
+     */
+    private record Entry(String value, long writtenAt) {
+    }
+
+    private Cache<String, Entry> cache;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfter(new Expiry<String, Entry>() {
+                @Override
+                public long expireAfterCreate(String key, Entry entry, long currentTime) {
+                    return remainingNanos(entry);
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+                    return remainingNanos(entry);
+                }
+
+                @Override
+                public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .recordStats()
+            .build();
+
+        // ヒット・ミス・追い出し件数をメトリクスとして公開
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "gemini.question");
+
+        loadSnapshot();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        saveSnapshot();
+    }
+
+    /**
+     * キャッシュ済みの応答を取得
+     * @param kind 応答の種類
+     * @param country 対象となる国名
+     * @param question ユーザーからの質問文
+     * @return キャッシュ済みの応答、存在しない場合はnull
+     */
+    public String get(Kind kind, String country, String question) {
+        Entry entry = cache.getIfPresent(key(kind, country, question));
+        return entry != null ? entry.value() : null;
+    }
+
+    /**
+     * 応答をキャッシュに保存
+     * @param kind 応答の種類
+     * @param country 対象となる国名
+     * @param question ユーザーからの質問文
+     * @param value Gemini APIからの応答
+     */
+    public void put(Kind kind, String country, String question, String value) {
+        cache.put(key(kind, country, question), new Entry(value, System.currentTimeMillis()));
+    }
+
+    // 取得時刻からTTLまでの残り時間
+    private long remainingNanos(Entry entry) {
+        long elapsed = System.currentTimeMillis() - entry.writtenAt();
+        return Math.max(0, ttl.minusMillis(elapsed).toNanos());
+    }
+
+    /**
+     * 質問文を正規化
+     * 全角・半角と大文字・小文字を統一し、空白と句読点・疑問符を取り除く
+     * @param question 質問文
+     * @return 正規化後の質問文
+     */
+    static String canonicalize(String question) {
+        String normalized = Normalizer.normalize(question, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        StringBuilder sb = new StringBuilder(normalized.length());
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (Character.isLetterOrDigit(c) || c == 'ー') {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String key(Kind kind, String country, String question) {
+        return kind.name() + '\t' + country.toLowerCase(Locale.ROOT) + '\t' + canonicalize(question);
+    }
+
+    /**
+     * スナップショットファイルからキャッシュを復元
+     * TTLより古いスナップショットは読み込まない（各エントリも元の取得時刻からTTLで期限切れになる）
+     */
+    private void loadSnapshot() {
+        if (snapshotFile == null || snapshotFile.isBlank()) {
+            return;
+        }
+        Path path = Path.of(snapshotFile);
+        if (!Files.isRegularFile(path)) {
+            return;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (header == null || !header.startsWith(SNAPSHOT_HEADER + '\t')) {
+                log.warn("質問キャッシュのスナップショット形式が不正です: {}", path);
+                return;
+            }
+            Instant savedAt = Instant.ofEpochMilli(Long.parseLong(header.substring(SNAPSHOT_HEADER.length() + 1)));
+            if (savedAt.plus(ttl).isBefore(Instant.now())) {
+                log.info("質問キャッシュのスナップショットが期限切れのため読み込みません");
+                return;
+            }
+
+            long expiredBefore = System.currentTimeMillis() - ttl.toMillis();
+            int loaded = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // キー（種類・国名・質問文）、取得時刻、応答の順にタブ区切り
+                int valueSeparator = line.lastIndexOf('\t');
+                int timeSeparator = valueSeparator > 0 ? line.lastIndexOf('\t', valueSeparator - 1) : -1;
+                if (timeSeparator <= 0) {
+                    continue;
+                }
+                long writtenAt = Long.parseLong(line.substring(timeSeparator + 1, valueSeparator));
+                if (writtenAt <= expiredBefore) {
+                    continue;
+                }
+                cache.put(line.substring(0, timeSeparator),
+                    new Entry(unescape(line.substring(valueSeparator + 1)), writtenAt));
+                loaded++;
+            }
+            log.info("質問キャッシュをスナップショットから復元しました: {}件", loaded);
+
+        } catch (IOException | RuntimeException e) {
+            log.warn("質問キャッシュのスナップショット読み込みに失敗しました: {}", e.toString());
+        }
+    }
+
+    /**
+     * 現在のキャッシュ内容をスナップショットファイルに保存
+     */
+    private void saveSnapshot() {
+        if (snapshotFile == null || snapshotFile.isBlank()) {
+            return;
+        }
+        Path path = Path.of(snapshotFile).toAbsolutePath();
+
+        try {
+            Files.createDirectories(path.getParent());
+            Path temp = Files.createTempFile(path.getParent(), "question-cache", ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writer.write(SNAPSHOT_HEADER + '\t' + System.currentTimeMillis());
+                writer.newLine();
+                for (Map.Entry<String, Entry> entry : cache.asMap().entrySet()) {
+                    writer.write(entry.getKey());
+                    writer.write('\t');
+                    writer.write(Long.toString(entry.getValue().writtenAt()));
+                    writer.write('\t');
+                    writer.write(escape(entry.getValue().value()));
+                    writer.newLine();
+                }
+            }
+            // 書き込み途中のファイルを読み込まないよう、完成後に置き換える
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("質問キャッシュのスナップショットを保存しました: {}件", cache.estimatedSize());
+
+        } catch (IOException e) {
+            log.warn("質問キャッシュのスナップショット保存に失敗しました: {}", e.toString());
+        }
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                sb.append(switch (next) {
+                    case 't' -> '\t';
+                    case 'n' -> '\n';
+                    case 'r' -> '\r';
+                    default -> next;
+                });
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,514 @@
+package com.example.flagquiz.service;
+
+import com.example.flagquiz.model.Country;
+import com.example.flagquiz.model.CountryCatalog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 質問のルール判定 - 地域・島国・内陸国・人口・面積・国旗の色・公用語を尋ねる質問を分類し、
+ * 国ごとの属性ビット集合と照合してGemini APIを呼び出さずに「はい」「いいえ」で回答する
+ * 認識した表現を除いて意味のある語が残る質問（否定・選択・その他の話題を含むもの）はローカルでは判定しない
+ */
+@Service
+public class QuestionRules {
+
+    // 同梱の属性データファイル（人口・国旗の色・地理）
+    private static final String RESOURCE = "/data/attributes.tsv";
+
+    // 属性のビット位置
+    // 地域（countries.tsv の地域名の順）
+    private static final List<String> REGIONS = List.of("アジア", "ヨーロッパ", "アフリカ", "北アメリカ", "南アメリカ", "オセアニア");
+    private static final int LANDLOCKED = 6;
+    private static final int ISLAND = 7;
+    // 国旗の色（attributes.tsv の記号の順）
+    private static final String COLORS = "RWBGYKO";
+    private static final int COLOR_BASE = 8;
+    // 公用語（hints.tsv の言語名）
+    private static final List<String> LANGUAGES = List.of(
+        "英語", "フランス語", "アラビア語", "スペイン語", "ポルトガル語", "ドイツ語",
+        "ロシア語", "オランダ語", "マレー語", "イタリア語", "スワヒリ語", "中国語");
+    private static final String[] LANGUAGES_EN = {
+        "english", "french", "arabic", "spanish", "portuguese", "german",
+        "russian", "dutch", "malay", "italian", "swahili", "chinese"};
+    private static final int LANGUAGE_BASE = 16;
+
+    /**
+     * 条件の種類（色以外は同じ種類の条件が複数ある質問をローカルでは判定しない）
+     */
+    enum Kind { REGION, GEOGRAPHY, COLOR, LANGUAGE, POPULATION, AREA }
+
+    /**
+     * 質問から認識した条件
+     * @param start 質問文中の開始位置
+     * @param end 質問文中の終了位置
+     * @param test カタログ上の位置を受け取り、条件を満たすかどうかを返す
+     */
+    private record Condition(Kind kind, int start, int end, IntPredicate test) {
+    }
+
+    /**
+     * 条件の認識ルール
+     * @param predicate 一致した部分から条件を生成（解釈できない場合はnull）
+     */
+    private record Rule(Kind kind, Pattern pattern, Function<Matcher, IntPredicate> predicate) {
+    }
+
+    // 国名に使われる文字（カタカナ・漢字・長音・中点）
+    private static final String NAME = "[\\p{IsKatakana}\\p{IsHan}ー・]+?";
+    // 英語の国名（文末・句読点まで）
+    private static final String NAME_EN = "([a-z][a-z .'-]*?)(?=\\s*(?:\\?|,|$))";
+    // 数値の比較表現
+    private static final String COMPARE_JA = "(以上|以下|未満|を?超え(?:る|て)?|を?超|を?上回(?:る|って)?|を?下回(?:る|って)?|より(?:も)?多い|より(?:も)?少ない|より(?:も)?広い|より(?:も)?狭い|より(?:も)?大きい|より(?:も)?小さい)";
+    private static final String COMPARE_EN = "(over|above|more than|greater than|larger than|at least|exceeding|under|below|less than|fewer than|smaller than|at most)";
+
+    // 国旗の話題であることを示す語（色の条件はこれを含む質問のみ認識する）
+    private static final Pattern FLAG_CONTEXT = Pattern.compile("国旗|旗|\\bflags?\\b");
+    // 条件の間にある選択の表現（「ヨーロッパか内陸国」など）
+    private static final Pattern ALTERNATIVE = Pattern.compile("か|または|もしくは|\\bor\\b");
+    // 否定の疑問（「海に面していませんか」「内陸国ではないですか」など。肯定・否定どちらの意味で答えるかが定まらない）
+    private static final Pattern NEGATED_QUESTION = Pattern.compile(
+        "(?:ません|(?:てい|て|では|じゃ|く|が|は)ない|(?<!少)ない(?:ん|の)?(?:です|でしょう))か?[\\s?!.。]*$");
+    // 条件として認識しなかった部分にある否定（「島国ではないアジアの国ですか」など。文中の否定は条件を反転させる）
+    private static final Pattern NEGATION = Pattern.compile("ない|なく|ません");
+    // 判定に影響しない語（述語・話題を示す語）
+    private static final Pattern FILLER = Pattern.compile(
+        "この国|その国|答えの国|正解の国|出題国|国旗|旗|公用語|言語|大陸|地域|国"
+        + "|でしょうか|ですか|です|ありますか|あります|ある|いますか|います|いる|ますか|ます"
+        + "|位置して|位置し|位置する|位置|属して|属し|属する|含まれて|含まれ|入って|使われて|使われ|使って"
+        + "|描かれて|描かれ|話されて|話され|話して|話す|話し|して|する|色"
+        + "|か(?=[\\s?!.。]*$)"
+        + "|\\b(?:is|are|it|its|this|that|the|a|an|country|nation|state|in|on|located|part|of|does|do|have|has"
+        + "|and|flags?|colou?rs?|contains?|uses?|used|includes?|features?|speaks?|spoken|languages?|official|people|they|there|any)\\b");
+    // 助詞（前後が認識した部分・除いた語・区切りの場合のみ除く。「もの」などの語の一部は除かない）
+    private static final Pattern PARTICLE = Pattern.compile(
+        "(?<![^\\s、,])(?:では|には|とは|でも|にも|とも|への|での|との|よね|[はがのにでをもとへてよね])(?=[\\s、,?!.。]|$)");
+
+    @Autowired
+    private CountryCatalog countryCatalog;
+
+    @Autowired
+    private HintTable hintTable;
+
+    @Autowired
+    private AnswerMatcher answerMatcher;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // ルール判定を有効にするかどうか
+    @Value("${question.rules.enabled:true}")
+    private boolean enabled;
+
+    // カタログ上の位置ごとの属性ビット集合・人口（百万人）・面積（平方キロメートル）
+    private long[] attributes;
+    private double[] population;
+    private double[] area;
+
+    private List<Rule> rules;
+
+    private Counter localCounter;
+    private Counter llmCounter;
+
+    @PostConstruct
+    void init() {
+        int size = countryCatalog.size();
+        attributes = new long[size];
+        population = new double[size];
+        area = new double[size];
+
+        Map<String, String[]> rows;
+        try (InputStream in = QuestionRules.class.getResourceAsStream(RESOURCE)) {
+            if (in == null) {
+                throw new IllegalStateException("属性データファイルが見つかりません: " + RESOURCE);
+            }
+            rows = load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("属性データファイルの読み込みに失敗しました", e);
+        }
+
+        for (int i = 0; i < size; i++) {
+            Country country = countryCatalog.get(i);
+            long bits = 0;
+            int region = REGIONS.indexOf(country.region());
+            if (region >= 0) {
+                bits |= 1L << region;
+            }
+            String[] row = rows.get(country.isoCode());
+            if (row != null) {
+                population[i] = Double.parseDouble(row[1]);
+                for (char color : row[2].toCharArray()) {
+                    bits |= 1L << (COLOR_BASE + COLORS.indexOf(color));
+                }
+                bits |= row[3].contains("L") ? 1L << LANDLOCKED : 0;
+                bits |= row[3].contains("I") ? 1L << ISLAND : 0;
+            } else {
+                population[i] = Double.NaN;
+            }
+            HintTable.Entry entry = hintTable.entry(country.isoCode());
+            if (entry != null) {
+                area[i] = entry.areaKm2();
+                for (String language : entry.languages().split("・")) {
+                    int index = LANGUAGES.indexOf(language);
+                    if (index >= 0) {
+                        bits |= 1L << (LANGUAGE_BASE + index);
+                    }
+                }
+            } else {
+                area[i] = Double.NaN;
+            }
+            attributes[i] = bits;
+        }
+        rules = buildRules();
+
+        // ローカル判定率をメトリクスとして登録
+        localCounter = Counter.builder("question.rules.answers")
+            .tag("source", "local")
+            .description("質問の回答件数")
+            .register(meterRegistry);
+        llmCounter = Counter.builder("question.rules.answers")
+            .tag("source", "llm")
+            .description("質問の回答件数")
+            .register(meterRegistry);
+        Gauge.builder("question.rules.local.ratio", this, QuestionRules::localRatio)
+            .description("ルール判定でローカルに回答できた質問の割合")
+            .register(meterRegistry);
+    }
+
+    /**
+     * 質問にローカルで回答
+     * @param question ユーザーからの質問文
+     * @param country 出題国（カタログにない国の場合はnull）
+     * @return 「はい」または「いいえ」、ローカルで判定できない場合はnull（Gemini APIに回す）
+     */
+    public String answer(String question, Country country) {
+        int index = countryCatalog.indexOf(country);
+        List<Condition> conditions = enabled && index >= 0 ? classify(question) : null;
+        if (conditions == null) {
+            llmCounter.increment();
+            return null;
+        }
+        localCounter.increment();
+        for (Condition condition : conditions) {
+            if (!condition.test().test(index)) {
+                return "いいえ";
+            }
+        }
+        return "はい";
+    }
+
+    /**
+     * 質問を条件に分類
+     * @param question ユーザーからの質問文
+     * @return 認識した条件（すべて満たす場合に「はい」）、ローカルで判定できない場合はnull
+     */
+    private List<Condition> classify(String question) {
+        if (question == null) {
+            return null;
+        }
+        String text = Normalizer.normalize(question, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT).trim();
+        boolean[] consumed = new boolean[text.length()];
+        List<Condition> conditions = new ArrayList<>();
+
+        for (Rule rule : rules) {
+            Matcher matcher = rule.pattern().matcher(text);
+            while (matcher.find()) {
+                if (overlaps(consumed, matcher.start(), matcher.end())) {
+                    continue;
+                }
+                IntPredicate test = rule.predicate().apply(matcher);
+                if (test == null) {
+                    continue;
+                }
+                conditions.add(new Condition(rule.kind(), matcher.start(), matcher.end(), test));
+                for (int i = matcher.start(); i < matcher.end(); i++) {
+                    consumed[i] = true;
+                }
+            }
+        }
+        if (conditions.isEmpty() || NEGATED_QUESTION.matcher(text).find() || !isAmbiguityFree(text, conditions)) {
+            return null;
+        }
+
+        // 認識した部分と判定に影響しない語を除き、意味のある語が残る場合は判定しない
+        StringBuilder rest = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            rest.append(consumed[i] ? ' ' : text.charAt(i));
+        }
+        if (NEGATION.matcher(rest).find()) {
+            return null;
+        }
+        String residual = PARTICLE.matcher(FILLER.matcher(rest).replaceAll(" ")).replaceAll(" ");
+        for (int i = 0; i < residual.length(); i++) {
+            if (Character.isLetterOrDigit(residual.charAt(i))) {
+                return null;
+            }
+        }
+        return conditions;
+    }
+
+    /**
+     * 条件の組み合わせが一通りに解釈できるかどうか
+     * 色以外の同じ種類の条件が複数ある場合、条件の間に選択の表現がある場合、国旗の話題でない色の条件はfalse
+     */
+    private static boolean isAmbiguityFree(String text, List<Condition> conditions) {
+        Map<Kind, Integer> counts = new EnumMap<>(Kind.class);
+        for (Condition condition : conditions) {
+            counts.merge(condition.kind(), 1, Integer::sum);
+        }
+        for (Map.Entry<Kind, Integer> count : counts.entrySet()) {
+            if (count.getKey() != Kind.COLOR && count.getValue() > 1) {
+                return false;
+            }
+        }
+        if (counts.containsKey(Kind.COLOR) && !FLAG_CONTEXT.matcher(text).find()) {
+            return false;
+        }
+        // 条件はすべて満たす場合に「はい」とするため、いずれかを尋ねる質問は判定しない
+        List<Condition> sorted = new ArrayList<>(conditions);
+        sorted.sort(Comparator.comparingInt(Condition::start));
+        for (int i = 1; i < sorted.size(); i++) {
+            String between = text.substring(sorted.get(i - 1).end(), sorted.get(i).start());
+            if (ALTERNATIVE.matcher(between).find()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 認識ルールを生成（先に一致したルールの範囲は後のルールで使わない）
+     */
+    private List<Rule> buildRules() {
+        List<Rule> list = new ArrayList<>();
+
+        // 人口・面積（国との比較）
+        list.add(new Rule(Kind.POPULATION,
+            Pattern.compile("人口[はがの]?[、,]?(" + NAME + ")(?:の人口)?より(?:も)?(多い|少ない)"),
+            m -> compareWith(population, m.group(1), m.group(2).equals("多い"))));
+        list.add(new Rule(Kind.POPULATION,
+            Pattern.compile("(" + NAME + ")より(?:も)?人口[がは]?(多い|少ない)"),
+            m -> compareWith(population, m.group(1), m.group(2).equals("多い"))));
+        list.add(new Rule(Kind.POPULATION,
+            Pattern.compile("\\b(?:more populous|(?:larger|bigger|more|greater) population) than " + NAME_EN),
+            m -> compareWith(population, m.group(1), true)));
+        list.add(new Rule(Kind.POPULATION,
+            Pattern.compile("\\b(?:less populous|(?:smaller|less|fewer) population) than " + NAME_EN),
+            m -> compareWith(population, m.group(1), false)));
+        list.add(new Rule(Kind.AREA,
+            Pattern.compile("面積[はがの]?[、,]?(" + NAME + ")(?:の面積)?より(?:も)?(広い|大きい|狭い|小さい)"),
+            m -> compareWith(area, m.group(1), m.group(2).equals("広い") || m.group(2).equals("大きい"))));
+        list.add(new Rule(Kind.AREA,
+            Pattern.compile("(" + NAME + ")より(?:も)?(?:面積[がは]?)?(広い|大きい|狭い|小さい)"),
+            m -> compareWith(area, m.group(1), m.group(2).equals("広い") || m.group(2).equals("大きい"))));
+        list.add(new Rule(Kind.AREA,
+            Pattern.compile("\\b(larger|bigger|smaller)(?: in area)? than " + NAME_EN),
+            m -> compareWith(area, m.group(2), !m.group(1).equals("smaller"))));
+
+        // 人口・面積（数値との比較）
+        list.add(new Rule(Kind.POPULATION,
+            Pattern.compile("人口[はがの]?(?:約)?([0-9][0-9.,]*)(億|千万|百万|万)?人?" + COMPARE_JA),
+            m -> compareWith(population, toMillions(m.group(1), m.group(2)), m.group(3))));
+        list.add(new Rule(Kind.POPULATION,
+            Pattern.compile("\\bpopulation (?:of |is )?" + COMPARE_EN + " ([0-9][0-9.,]*) ?(thousand|million|billion)?(?: people)?"),
+            m -> compareWith(population, toMillions(m.group(2), m.group(3)), m.group(1))));
+        list.add(new Rule(Kind.POPULATION,
+            Pattern.compile("\\b" + COMPARE_EN + " ([0-9][0-9.,]*) ?(thousand|million|billion)? (?:people|inhabitants)"),
+            m -> compareWith(population, toMillions(m.group(2), m.group(3)), m.group(1))));
+        list.add(new Rule(Kind.AREA,
+            Pattern.compile("面積[はがの]?(?:約)?([0-9][0-9.,]*)(万)?(?:平方キロメートル|平方キロ|km2)" + COMPARE_JA),
+            m -> compareWith(area, toKm2(m.group(1), m.group(2)), m.group(3))));
+        list.add(new Rule(Kind.AREA,
+            Pattern.compile("\\barea (?:of |is )?" + COMPARE_EN + " ([0-9][0-9.,]*) ?(thousand|million)? ?(?:km2|square kilometers|square kilometres)"),
+            m -> compareWith(area, toKm2(m.group(2), m.group(3)), m.group(1))));
+
+        // 地理（否定形を含む表現を先に認識する）
+        list.add(new Rule(Kind.GEOGRAPHY,
+            Pattern.compile("海に(?:面|接)して(?:い)?ない|海に(?:面|接)していません|海がない|海に出られない|内陸国|内陸|\\bland-?locked\\b"),
+            m -> bit(LANDLOCKED)));
+        list.add(new Rule(Kind.GEOGRAPHY,
+            Pattern.compile("海に(?:面|接)して(?:いる|います|おり)?|海岸線が|\\bcoast(?:line|al)?\\b|\\b(?:access to|borders?|touch(?:es)?) the (?:sea|ocean)\\b"),
+            m -> not(bit(LANDLOCKED))));
+        list.add(new Rule(Kind.GEOGRAPHY,
+            Pattern.compile("島国|島しょ国|島嶼国|\\bisland (?:nation|country|state)\\b|\\ban island\\b"),
+            m -> bit(ISLAND)));
+
+        // 地域
+        list.add(new Rule(Kind.REGION, Pattern.compile("北アメリカ|北米|\\bnorth american?\\b"), m -> bit(REGIONS.indexOf("北アメリカ"))));
+        list.add(new Rule(Kind.REGION, Pattern.compile("南アメリカ|南米|\\bsouth american?\\b"), m -> bit(REGIONS.indexOf("南アメリカ"))));
+        list.add(new Rule(Kind.REGION, Pattern.compile("アジア|\\basian?\\b"), m -> bit(REGIONS.indexOf("アジア"))));
+        list.add(new Rule(Kind.REGION, Pattern.compile("ヨーロッパ|欧州|\\beuropean?\\b"), m -> bit(REGIONS.indexOf("ヨーロッパ"))));
+        list.add(new Rule(Kind.REGION, Pattern.compile("アフリカ|\\bafrican?\\b"), m -> bit(REGIONS.indexOf("アフリカ"))));
+        list.add(new Rule(Kind.REGION, Pattern.compile("オセアニア|大洋州|\\boceanian?\\b"), m -> bit(REGIONS.indexOf("オセアニア"))));
+
+        // 公用語
+        list.add(new Rule(Kind.LANGUAGE,
+            Pattern.compile("(" + String.join("|", LANGUAGES) + ")(?:圏)?"),
+            m -> bit(LANGUAGE_BASE + LANGUAGES.indexOf(m.group(1)))));
+        list.add(new Rule(Kind.LANGUAGE,
+            Pattern.compile("\\b(" + String.join("|", LANGUAGES_EN) + ")(?:[- ]speaking)?\\b"),
+            m -> bit(LANGUAGE_BASE + List.of(LANGUAGES_EN).indexOf(m.group(1)))));
+
+        // 国旗の色（「赤道」「白夜」「黒海」などは色として扱わない）
+        list.add(new Rule(Kind.COLOR,
+            Pattern.compile("(赤(?!道)|白(?!夜)|青|緑|黄|黒(?!海)|オレンジ|橙)(?:色|い)?"),
+            m -> bit(COLOR_BASE + COLORS.indexOf(colorCode(m.group(1))))));
+        list.add(new Rule(Kind.COLOR,
+            Pattern.compile("\\b(red|white|blue|green|yellow|gold|black|orange)\\b"),
+            m -> bit(COLOR_BASE + COLORS.indexOf(colorCode(m.group(1))))));
+
+        return List.copyOf(list);
+    }
+
+    private IntPredicate bit(int position) {
+        long mask = 1L << position;
+        return index -> (attributes[index] & mask) != 0;
+    }
+
+    private static IntPredicate not(IntPredicate predicate) {
+        return predicate.negate();
+    }
+
+    /**
+     * 国と比較する条件（比較対象の国が見つからない場合はnull）
+     */
+    private IntPredicate compareWith(double[] values, String name, boolean greater) {
+        Country other = answerMatcher.findCountry(name.trim());
+        int otherIndex = countryCatalog.indexOf(other);
+        if (otherIndex < 0 || Double.isNaN(values[otherIndex])) {
+            return null;
+        }
+        double threshold = values[otherIndex];
+        return greater ? index -> values[index] > threshold : index -> values[index] < threshold;
+    }
+
+    /**
+     * 数値と比較する条件（数値が読み取れない場合はnull）
+     */
+    private static IntPredicate compareWith(double[] values, double threshold, String comparison) {
+        if (Double.isNaN(threshold)) {
+            return null;
+        }
+        if (comparison.startsWith("以上") || comparison.equals("at least")) {
+            return index -> values[index] >= threshold;
+        }
+        if (comparison.startsWith("以下") || comparison.equals("at most")) {
+            return index -> values[index] <= threshold;
+        }
+        if (comparison.startsWith("未満") || comparison.contains("下回") || comparison.contains("少ない")
+                || comparison.contains("狭い") || comparison.contains("小さい")
+                || comparison.equals("under") || comparison.equals("below")
+                || comparison.startsWith("less") || comparison.startsWith("fewer") || comparison.startsWith("smaller")) {
+            return index -> values[index] < threshold;
+        }
+        return index -> values[index] > threshold;
+    }
+
+    /**
+     * 人口の数値を百万人単位に換算
+     */
+    private static double toMillions(String number, String unit) {
+        double value = parseNumber(number);
+        if (unit == null) {
+            return value / 1_000_000;
+        }
+        return switch (unit) {
+            case "億" -> value * 100;
+            case "千万" -> value * 10;
+            case "百万", "million" -> value;
+            case "万" -> value / 100;
+            case "thousand" -> value / 1_000;
+            case "billion" -> value * 1_000;
+            default -> Double.NaN;
+        };
+    }
+
+    /**
+     * 面積の数値を平方キロメートルに換算
+     */
+    private static double toKm2(String number, String unit) {
+        double value = parseNumber(number);
+        if (unit == null) {
+            return value;
+        }
+        return switch (unit) {
+            case "万" -> value * 10_000;
+            case "thousand" -> value * 1_000;
+            case "million" -> value * 1_000_000;
+            default -> Double.NaN;
+        };
+    }
+
+    private static double parseNumber(String number) {
+        try {
+            return Double.parseDouble(number.replace(",", ""));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static char colorCode(String word) {
+        return switch (word) {
+            case "赤", "red" -> 'R';
+            case "白", "white" -> 'W';
+            case "青", "blue" -> 'B';
+            case "緑", "green" -> 'G';
+            case "黄", "yellow", "gold" -> 'Y';
+            case "黒", "black" -> 'K';
+            default -> 'O';
+        };
+    }
+
+    private static boolean overlaps(boolean[] consumed, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (consumed[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Map<String, String[]> load(InputStream in) throws IOException {
+        Map<String, String[]> rows = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\t", -1);
+                rows.put(fields[0].toLowerCase(Locale.ROOT), fields);
+            }
+        }
+        return Map.copyOf(rows);
+    }
+
+    private double localRatio() {
+        double total = localCounter.count() + llmCounter.count();
+        return total == 0 ? 0.0 : localCounter.count() / total;
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.flagquiz.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 1リクエスト分の処理区間の記録（コントローラー・ゲーム状態の読み書き・Gemini APIの操作・テンプレート描画など）
+ * 区間は配列に保持し、区間ごとのオブジェクトは作らない（名前は定数の文字列を渡す）
+ * ストリーミング応答の完了など、別のスレッドからも記録するため各操作は同期する
+ */
+public final class RequestTrace {
+
+    // 1リクエストで記録する区間の上限（超えた分は記録しない）
+    static final int MAX_SPANS = 32;
+
+    /**
+     * 記録した区間
+     * @param name 区間名（validateQuestion、render など）
+     * @param startNanos リクエスト開始からの開始時刻（ナノ秒）
+     * @param durationNanos 処理時間（ナノ秒、終了していない場合は-1）
+     * @param depth 入れ子の深さ（0が最上位）
+     */
+    public record Span(String name, long startNanos, long durationNanos, int depth) {
+    }
+
+    private final long startEpochMillis = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private final String method;
+    private final String path;
+
+    private Class<?> handlerType;
+    private String handlerMethod;
+    private String sessionId;
+    private String gameId;
+    private int status;
+    private long durationNanos = -1;
+
+    private String[] names = new String[8];
+    private long[] starts = new long[8];
+    private long[] durations = new long[8];
+    private byte[] depths = new byte[8];
+    private int count;
+    // 終了していない入れ子の区間の数
+    private int depth;
+
+    RequestTrace(String method, String path) {
+        this.method = method;
+        this.path = path;
+    }
+
+    /**
+     * 区間を開始（同じスレッドで end を呼び出すまでの間に開始した区間は入れ子になる）
+     * @param name 区間名
+     * @return 区間の番号（上限に達した場合は-1）
+     */
+    synchronized int start(String name) {
+        int span = add(name, System.nanoTime() - startNanos, -1);
+        if (span >= 0) {
+            depth++;
+        }
+        return span;
+    }
+
+    /**
+     * 区間を終了
+     * @param span start で取得した区間の番号
+     */
+    synchronized void end(int span) {
+        if (span < 0 || span >= count || durations[span] >= 0) {
+            return;
+        }
+        durations[span] = System.nanoTime() - startNanos - starts[span];
+        if (depths[span] == depth - 1) {
+            depth--;
+        }
+    }
+
+    /**
+     * 終了した区間を記録（今終了した、指定の時間の区間）
+     * @param name 区間名
+     * @param nanos 処理時間（ナノ秒）
+     */
+    synchronized void record(String name, long nanos) {
+        long end = System.nanoTime() - startNanos;
+        add(name, Math.max(0, end - nanos), Math.min(nanos, end));
+    }
+
+    private int add(String name, long start, long duration) {
+        if (count == MAX_SPANS) {
+            return -1;
+        }
+        if (count == names.length) {
+            int capacity = Math.min(MAX_SPANS, count * 2);
+            names = Arrays.copyOf(names, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            durations = Arrays.copyOf(durations, capacity);
+            depths = Arrays.copyOf(depths, capacity);
+        }
+        names[count] = name;
+        starts[count] = start;
+        durations[count] = duration;
+        depths[count] = (byte) depth;
+        return count++;
+    }
+
+    /**
+     * 処理したハンドラー（コントローラーのメソッド）を設定
+     */
+    synchronized void setHandler(Class<?> type, String method) {
+        this.handlerType = type;
+        this.handlerMethod = method;
+    }
+
+    /**
+     * リクエストの完了を記録
+     * @param status HTTPステータス
+     * @param sessionId セッションの識別子（ログと同じハッシュ値、セッションがない場合はnull）
+     * @param gameId ゲームID（ない場合はnull）
+     * @return 初めて完了した場合はtrue（非同期処理のタイムアウト後の完了など、2回目以降はfalse）
+     */
+    synchronized boolean finish(int status, String sessionId, String gameId) {
+        if (durationNanos >= 0) {
+            return false;
+        }
+        this.durationNanos = System.nanoTime() - startNanos;
+        this.status = status;
+        this.sessionId = sessionId;
+        this.gameId = gameId;
+        return true;
+    }
+
+    public long getStartEpochMillis() {
+        return startEpochMillis;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * 処理したハンドラー（例: GameApiController.askQuestion）
+     * @return ハンドラー名、コントローラー以外で処理した場合はnull
+     */
+    public synchronized String getHandler() {
+        return handlerType != null ? handlerType.getSimpleName() + "." + handlerMethod : null;
+    }
+
+    synchronized Class<?> getHandlerType() {
+        return handlerType;
+    }
+
+    public synchronized String getSessionId() {
+        return sessionId;
+    }
+
+    public synchronized String getGameId() {
+        return gameId;
+    }
+
+    public synchronized int getStatus() {
+        return status;
+    }
+
+    /**
+     * リクエスト全体の処理時間
+     * @return ナノ秒（完了していない場合は-1）
+     */
+    public synchronized long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * 記録した区間（開始順）
+     * @return 区間の一覧
+     */
+    public synchronized List<Span> spans() {
+        List<Span> spans = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            spans.add(new Span(names[i], starts[i], durations[i], depths[i]));
+        }
+        return spans;
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.flagquiz.service;
+
+import com.example.flagquiz.FlagQuizApplication;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * リクエストごとの処理区間の記録
+ * 処理中のリクエストの記録はスレッドごとに保持し（RequestTraceFilterが開始・終了する）、
+ * 完了したリクエストは固定長のリングバッファに保持する（古いものから上書きされる）
+ */
+@Component
+public class RequestTracer {
+
+    // 記録するかどうか
+    @Value("${trace.enabled:true}")
+    private boolean enabled;
+
+    // 保持する完了済みリクエストの数（2の累乗に切り上げる）
+    @Value("${trace.buffer-size:1024}")
+    private int bufferSize;
+
+    @Autowired
+    private OtlpTraceExporter exporter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 処理中のリクエストの記録（リクエストを処理しているスレッドのみ）
+    private final ThreadLocal<RequestTrace> current = new ThreadLocal<>();
+
+    private AtomicReferenceArray<RequestTrace> ring;
+    private int mask;
+    private final AtomicLong cursor = new AtomicLong();
+
+    // 記録の対象とするコントローラーのパッケージ（静的ファイル・Actuatorなどは記録しない）
+    private static final String APPLICATION_PACKAGE = FlagQuizApplication.class.getPackageName();
+
+    @PostConstruct
+    void init() {
+        int capacity = Integer.highestOneBit(Math.max(1, bufferSize - 1)) << 1;
+        ring = new AtomicReferenceArray<>(capacity);
+        mask = capacity - 1;
+        FunctionCounter.builder("trace.requests.recorded", cursor, AtomicLong::get)
+            .description("処理区間を記録した（リングバッファに追加した）リクエストの数")
+            .register(meterRegistry);
+    }
+
+    /**
+     * 記録が有効かどうか
+     * @return 有効であればtrue
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * リクエストの記録を開始し、現在のスレッドに関連付ける
+     * @param method HTTPメソッド
+     * @param path リクエストのパス
+     * @return リクエストの記録
+     */
+    public RequestTrace begin(String method, String path) {
+        RequestTrace trace = new RequestTrace(method, path);
+        current.set(trace);
+        return trace;
+    }
+
+    /**
+     * 現在のスレッドとリクエストの記録の関連付けを解除
+     */
+    public void detach() {
+        current.remove();
+    }
+
+    /**
+     * 現在のスレッドで処理中のリクエストの記録
+     * @return リクエストの記録（ない場合はnull）
+     */
+    public RequestTrace current() {
+        return current.get();
+    }
+
+    /**
+     * 処理中のリクエストのハンドラーを設定
+     * @param type コントローラーのクラス
+     * @param method メソッド名
+     */
+    public void setHandler(Class<?> type, String method) {
+        RequestTrace trace = current.get();
+        if (trace != null) {
+            trace.setHandler(type, method);
+        }
+    }
+
+    /**
+     * 現在のスレッドで処理中のリクエストに区間を開始
+     * @param name 区間名（定数の文字列）
+     * @return 区間の番号（end に渡す。記録しない場合は-1）
+     */
+    public int start(String name) {
+        RequestTrace trace = current.get();
+        return trace != null ? trace.start(name) : -1;
+    }
+
+    /**
+     * 現在のスレッドで処理中のリクエストの区間を終了
+     * @param span start で取得した区間の番号
+     */
+    public void end(int span) {
+        if (span < 0) {
+            return;
+        }
+        RequestTrace trace = current.get();
+        if (trace != null) {
+            trace.end(span);
+        }
+    }
+
+    /**
+     * 終了した区間を記録
+     * @param trace リクエストの記録（別のスレッドで完了した処理の場合は、開始時に current で取得したもの。nullの場合は記録しない）
+     * @param name 区間名（定数の文字列）
+     * @param nanos 処理時間（ナノ秒）
+     */
+    public void record(RequestTrace trace, String name, long nanos) {
+        if (trace != null) {
+            trace.record(name, nanos);
+        }
+    }
+
+    /**
+     * リクエストの完了を記録し、コントローラーで処理したリクエストであればリングバッファに追加
+     * @param trace リクエストの記録
+     * @param status HTTPステータス
+     * @param sessionId セッションの識別子（ない場合はnull）
+     * @param gameId ゲームID（ない場合はnull）
+     */
+    public void complete(RequestTrace trace, int status, String sessionId, String gameId) {
+        if (!trace.finish(status, sessionId, gameId)) {
+            return;
+        }
+        Class<?> handlerType = trace.getHandlerType();
+        if (handlerType == null || !handlerType.getPackageName().startsWith(APPLICATION_PACKAGE)) {
+            return;
+        }
+        ring.set((int) (cursor.getAndIncrement() & mask), trace);
+        if (exporter.isEnabled()) {
+            exporter.offer(trace);
+        }
+    }
+
+    /**
+     * 保持している完了済みリクエストのうち、処理時間の長いもの
+     * @param limit 件数の上限
+     * @return 処理時間の長い順のリクエストの記録
+     */
+    public List<RequestTrace> slowest(int limit) {
+        List<RequestTrace> traces = new ArrayList<>();
+        for (int i = 0; i < ring.length(); i++) {
+            RequestTrace trace = ring.get(i);
+            if (trace != null) {
+                traces.add(trace);
+            }
+        }
+        traces.sort(Comparator.comparingLong(RequestTrace::getDurationNanos).reversed());
+        return traces.subList(0, Math.min(limit, traces.size()));
+    }
+
+    /**
+     * 保持している完了済みリクエストの数
+     * @return リクエスト数（リングバッファの大きさが上限）
+     */
+    public int size() {
+        return (int) Math.min(cursor.get(), ring.length());
+    }
+}
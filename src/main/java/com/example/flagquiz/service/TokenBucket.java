@@ -0,0 +1,80 @@
+package com.example.flagquiz.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ロックを使わないトークンバケット
+ * 残りトークン数の代わりに「バケットが満杯に戻る時刻」を1つのAtomicLongで保持し、CASで更新する
+ * （GCRA: Generic Cell Rate Algorithm と同等）。予約した順に待ち時間が決まるため、待機させる場合も先着順になる
+ */
+final class TokenBucket {
+
+    // トークン1個が補充されるまでの時間（ナノ秒）
+    private final long intervalNanos;
+    // 満杯のバケットから連続して取り出せる分の時間幅（(容量 - 1) × 補充間隔）
+    private final long burstNanos;
+    // 次のトークンを取り出せる理論上の時刻（System.nanoTime基準、これ以前ならバケットは満杯）
+    private final AtomicLong theoreticalArrival;
+
+    /**
+     * @param ratePerSecond 1秒あたりに補充するトークン数
+     * @param capacity バケットの容量（連続して取り出せる最大数）
+     */
+    TokenBucket(double ratePerSecond, int capacity) {
+        if (ratePerSecond <= 0 || capacity < 1) {
+            throw new IllegalArgumentException("補充レートと容量は正の値を指定してください");
+        }
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond));
+        this.burstNanos = intervalNanos * (capacity - 1);
+        this.theoreticalArrival = new AtomicLong(System.nanoTime() - burstNanos - intervalNanos);
+    }
+
+    /**
+     * トークンを1個取り出す（空の場合は待たない）
+     * @param now 現在時刻（System.nanoTime）
+     * @return 取り出せた場合はtrue
+     */
+    boolean tryAcquire(long now) {
+        return reserve(now, 0) == 0;
+    }
+
+    /**
+     * トークンを1個予約し、使用できるまでの待ち時間を取得
+     * @param now 現在時刻（System.nanoTime）
+     * @param maxWaitNanos 許容する待ち時間（これを超える場合は予約しない）
+     * @return 待ち時間（ナノ秒、すぐに使用できる場合は0）、予約できなかった場合は-1
+     */
+    long reserve(long now, long maxWaitNanos) {
+        while (true) {
+            long current = theoreticalArrival.get();
+            long arrival = Math.max(current, now);
+            long wait = Math.max(0, arrival - burstNanos - now);
+            if (wait > maxWaitNanos) {
+                return -1;
+            }
+            if (theoreticalArrival.compareAndSet(current, arrival + intervalNanos)) {
+                return wait;
+            }
+        }
+    }
+
+    /**
+     * 現在取り出せるトークン数（待ちの予約がある場合は負の値）
+     * @param now 現在時刻（System.nanoTime）
+     * @return トークン数
+     */
+    double available(long now) {
+        long arrival = Math.max(theoreticalArrival.get(), now);
+        return (double) (burstNanos + intervalNanos - (arrival - now)) / intervalNanos;
+    }
+
+    /**
+     * バケットが満杯かどうか（しばらく使われていない場合はtrue）
+     * @param now 現在時刻（System.nanoTime）
+     * @return 満杯であればtrue
+     */
+    boolean isFull(long now) {
+        return theoreticalArrival.get() - now <= 0;
+    }
+}
@@ -34,6 +34,251 @@ document.addEventListener('DOMContentLoaded', function() {
     // Removed smooth scroll - not needed for single page layout
 });
 
+// Thin client mode: submit game forms to the JSON API and update the page in place
+// (one request per move instead of POST + redirect + full page render).
+// Falls back to the regular form submission if the API cannot be reached.
+document.addEventListener('DOMContentLoaded', function() {
+    const gameArea = document.querySelector('.game-area');
+    // Shown when the reply is not the API's JSON (e.g. an HTML error page from a proxy or the container)
+    const GENERIC_ERROR = '通信エラーが発生しました。もう一度お試しください。';
+
+    document.querySelectorAll('form[data-api]').forEach(form => {
+        form.addEventListener('submit', async function(e) {
+            // Without a game area on the page there is nothing to update in place
+            if (!gameArea || !window.fetch) return;
+            e.preventDefault();
+
+            const body = Object.fromEntries(new FormData(form).entries());
+            if (form.dataset.stream && window.ReadableStream && window.TextDecoder) {
+                await streamRequest(form, body);
+                return;
+            }
+
+            let response;
+            try {
+                response = await fetch(form.dataset.api, {
+                    method: 'POST',
+                    headers: { 'Content-Type': 'application/json' },
+                    body: JSON.stringify(body)
+                });
+            } catch (error) {
+                form.submit();
+                return;
+            }
+
+            const data = await readJson(response);
+            clearMessages();
+            if (!response.ok || !data) {
+                showMessage((data && data.error) || GENERIC_ERROR, 'error');
+                return;
+            }
+            applyResult(form, data);
+        });
+    });
+
+    // Streaming mode: show hint/answer text as it is generated (Server-Sent Events over fetch)
+    async function streamRequest(form, body) {
+        let response;
+        try {
+            response = await fetch(form.dataset.stream, {
+                method: 'POST',
+                headers: { 'Content-Type': 'application/json' },
+                body: JSON.stringify(body)
+            });
+        } catch (error) {
+            form.submit();
+            return;
+        }
+
+        clearMessages();
+        if (!response.ok) {
+            const data = await readJson(response);
+            showMessage((data && data.error) || GENERIC_ERROR, 'error');
+            return;
+        }
+        if (!contentType(response).includes('text/event-stream')) {
+            showMessage(GENERIC_ERROR, 'error');
+            return;
+        }
+
+        let partial = '';
+        await readEvents(response, (event, data) => {
+            if (event === 'chunk') {
+                partial += data.text;
+                if (body.hintType) {
+                    showHint(body.hintType, partial);
+                } else {
+                    showAnswer(body.question, partial);
+                }
+            } else if (event === 'done') {
+                applyResult(form, data);
+            } else if (event === 'error') {
+                showMessage(data.error, 'error');
+            }
+        });
+    }
+
+    // Parses the body only if the server says it is JSON; returns null otherwise
+    async function readJson(response) {
+        if (!contentType(response).includes('application/json')) return null;
+        try {
+            return await response.json();
+        } catch (error) {
+            return null;
+        }
+    }
+
+    function contentType(response) {
+        return response.headers.get('Content-Type') || '';
+    }
+
+    // Minimal SSE reader: events are separated by a blank line, data is JSON
+    async function readEvents(response, onEvent) {
+        const reader = response.body.getReader();
+        const decoder = new TextDecoder();
+        let buffer = '';
+        while (true) {
+            const { done, value } = await reader.read();
+            if (done) break;
+            buffer += decoder.decode(value, { stream: true });
+
+            let boundary;
+            while ((boundary = buffer.indexOf('\n\n')) >= 0) {
+                const block = buffer.slice(0, boundary);
+                buffer = buffer.slice(boundary + 2);
+
+                let event = 'message';
+                const data = [];
+                block.split('\n').forEach(line => {
+                    if (line.startsWith('event:')) {
+                        event = line.slice(6).trim();
+                    } else if (line.startsWith('data:')) {
+                        data.push(line.slice(5));
+                    }
+                });
+                if (data.length) {
+                    onEvent(event, JSON.parse(data.join('\n')));
+                }
+            }
+        }
+    }
+
+    function applyResult(form, data) {
+        const endpoint = form.dataset.api;
+        if (endpoint.endsWith('/new')) {
+            showMessage(data.message, 'success');
+            resetGame();
+        } else if (endpoint.endsWith('/question')) {
+            showAnswer(data.question, data.answer);
+            form.reset();
+        } else if (endpoint.endsWith('/hint')) {
+            showHint(data.hintType, data.hint);
+        } else if (endpoint.endsWith('/answer')) {
+            showMessage(data.result, data.correct ? 'success' : 'error');
+            form.reset();
+        }
+        applyState(data.state);
+    }
+
+    // Apply the changed fields of the game state
+    function applyState(state) {
+        if (!state) return;
+        if (state.countryFlag) {
+            gameArea.querySelector('.flag-image').src = state.countryFlag;
+        }
+        ['answersLeft', 'questionsLeft', 'hintsLeft'].forEach(field => {
+            if (state[field] !== undefined) {
+                gameArea.querySelector('[data-field="' + field + '"]').textContent = state[field];
+            }
+        });
+        if (state.newLogEntry) {
+            appendLog(state.newLogEntry);
+        }
+        if (state.questionsLeft !== undefined) {
+            setDisabled('/api/game/question', state.questionsLeft <= 0);
+        }
+        if (state.answersLeft !== undefined) {
+            setDisabled('/api/game/answer', state.answersLeft <= 0);
+        }
+        if (state.hintsLeft !== undefined) {
+            const used = state.hintsUsed || [];
+            gameArea.querySelectorAll('form[data-api="/api/game/hint"]').forEach(hintForm => {
+                const hintType = hintForm.querySelector('input[name="hintType"]').value;
+                hintForm.querySelector('button').disabled = used.includes(hintType) || state.hintsLeft <= 0;
+            });
+        }
+    }
+
+    function resetGame() {
+        gameArea.querySelectorAll('.hint-display, .answer-display, .question-log').forEach(el => el.remove());
+    }
+
+    function setDisabled(endpoint, disabled) {
+        gameArea.querySelectorAll('form[data-api="' + endpoint + '"] input, form[data-api="' + endpoint + '"] button')
+            .forEach(el => el.disabled = disabled);
+    }
+
+    function showAnswer(question, answer) {
+        const form = gameArea.querySelector('form[data-api="/api/game/question"]');
+        let display = gameArea.querySelector('.answer-display');
+        if (!display) {
+            display = document.createElement('div');
+            display.className = 'answer-display';
+            form.after(display);
+        }
+        display.replaceChildren(labeledLine('p', 'Q:', question), labeledLine('p', 'A:', answer));
+    }
+
+    function showHint(hintType, hint) {
+        let display = gameArea.querySelector('.hint-display');
+        if (!display) {
+            display = document.createElement('div');
+            display.className = 'hint-display';
+            gameArea.querySelector('.hint-buttons').after(display);
+        }
+        display.replaceChildren(labeledLine('span', hintType + ':', hint));
+    }
+
+    function appendLog(entry) {
+        let log = gameArea.querySelector('.question-log');
+        if (!log) {
+            log = document.createElement('div');
+            log.className = 'question-log';
+            const heading = document.createElement('h4');
+            heading.textContent = '質問履歴:';
+            log.appendChild(heading);
+            const answerSection = gameArea.querySelector('form[data-api="/api/game/question"]').parentElement;
+            answerSection.appendChild(log);
+        }
+        const item = document.createElement('div');
+        item.className = 'log-entry';
+        item.textContent = entry;
+        log.appendChild(item);
+    }
+
+    // <tag><strong>label</strong> text</tag>
+    function labeledLine(tag, label, text) {
+        const line = document.createElement(tag);
+        const strong = document.createElement('strong');
+        strong.textContent = label;
+        const value = document.createElement('span');
+        value.textContent = text;
+        line.append(strong, ' ', value);
+        return line;
+    }
+
+    function clearMessages() {
+        document.querySelectorAll('.container > .message, .api-messages > .message').forEach(el => el.remove());
+    }
+
+    function showMessage(text, type) {
+        const message = document.createElement('div');
+        message.className = 'message ' + type;
+        message.textContent = text;
+        document.querySelector('.api-messages').appendChild(message);
+    }
+});
+
 // CSS animation keyframes need to be added dynamically
 const style = document.createElement('style');
 style.textContent = `
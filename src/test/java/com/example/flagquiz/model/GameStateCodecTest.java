@@ -0,0 +1,52 @@
+package com.example.flagquiz.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * GameStateCodec - 出題前の状態やカタログにない国を含むゲーム状態の変換と復元の確認
+ */
+class GameStateCodecTest {
+
+    @Test
+    void roundTripsStateBeforeCountryIsSet() throws Exception {
+        GameState restored = roundTrip(new GameState());
+
+        assertThat(restored.getCountry()).isNull();
+        assertThat(restored.getCustomEnglish()).isNull();
+        assertThat(restored.getCustomJapanese()).isNull();
+        assertThat(restored.getCustomFlag()).isNull();
+        assertThat(restored.getQuestionsLeft()).isEqualTo(new GameState().getQuestionsLeft());
+        assertThat(restored.getGameLog()).isEmpty();
+    }
+
+    @Test
+    void roundTripsCustomCountryWithMissingName() throws Exception {
+        GameState state = new GameState("Atlantis", null, "https://example.com/atlantis.png");
+        state.addLog("島国ですか", "はい");
+        state.addLog("首都はどこですか", "海の底です");
+
+        GameState restored = roundTrip(state);
+
+        assertThat(restored.getCustomEnglish()).isEqualTo("Atlantis");
+        assertThat(restored.getCustomJapanese()).isNull();
+        assertThat(restored.getCustomFlag()).isEqualTo("https://example.com/atlantis.png");
+        assertThat(restored.getQuestions()).containsExactly("島国ですか", "首都はどこですか");
+        assertThat(restored.getAnswers()).containsExactly("はい", "海の底です");
+    }
+
+    @Test
+    void encodesFreshCatalogCountryInSixBytes() throws Exception {
+        GameState state = new GameState(CountryCatalog.getDefault().findByIso("jp"));
+
+        byte[] data = GameStateCodec.encode(state);
+
+        assertThat(data).hasSize(6);
+        assertThat(GameStateCodec.decode(data).getCountry()).isSameAs(state.getCountry());
+    }
+
+    private static GameState roundTrip(GameState state) throws Exception {
+        return GameStateCodec.decode(GameStateCodec.encode(state));
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.flagquiz.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * CountryPool - 生成できなかった国データ（フォールバック）を入れない補充と、遮断中の補充の見送りの確認
+ */
+class CountryPoolTest {
+
+    private static final String[] JAPAN = {"Japan", "日本", "https://flagcdn.com/h240/jp.png"};
+    private static final String[] FALLBACK = {"France", "フランス", "https://flagcdn.com/h240/fr.png"};
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final StubGeminiService geminiService = new StubGeminiService();
+    private CountryPool pool;
+
+    @AfterEach
+    void stop() {
+        pool.shutdown();
+    }
+
+    @Test
+    void doesNotPoolFallbackCountries() throws Exception {
+        // 2件生成した後は失敗する
+        geminiService.successes.set(2);
+        open(closedBreaker());
+
+        awaitRefillFailures(1);
+        assertThat(pool.depth()).isEqualTo(2);
+
+        assertThat(pool.take()).isEqualTo(JAPAN);
+        assertThat(pool.take()).isEqualTo(JAPAN);
+        // プールが空の場合のみフォールバックを返し、ミスとして数える
+        assertThat(pool.take()).isEqualTo(FALLBACK);
+        assertThat(meterRegistry.counter("country.pool.requests", "result", "hit").count()).isEqualTo(2);
+        assertThat(meterRegistry.counter("country.pool.requests", "result", "miss").count()).isEqualTo(1);
+    }
+
+    @Test
+    void skipsRefillWhileCircuitIsOpen() throws Exception {
+        geminiService.successes.set(100);
+        GeminiCircuitBreaker breaker = closedBreaker();
+        for (int i = 0; i < 5; i++) {
+            breaker.onFailure(-1);
+        }
+        open(breaker);
+
+        assertThat(pool.take()).isEqualTo(FALLBACK);
+        Thread.sleep(200);
+        assertThat(geminiService.calls.get()).isZero();
+        assertThat(pool.depth()).isZero();
+    }
+
+    private void open(GeminiCircuitBreaker breaker) {
+        pool = new CountryPool();
+        ReflectionTestUtils.setField(pool, "geminiService", geminiService);
+        ReflectionTestUtils.setField(pool, "circuitBreaker", breaker);
+        ReflectionTestUtils.setField(pool, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(pool, "enabled", true);
+        ReflectionTestUtils.setField(pool, "countrySource", "llm");
+        ReflectionTestUtils.setField(pool, "capacity", 5);
+        ReflectionTestUtils.setField(pool, "lowWaterMark", 2);
+        ReflectionTestUtils.setField(pool, "refillConcurrency", 1);
+        pool.init();
+    }
+
+    private GeminiCircuitBreaker closedBreaker() {
+        GeminiCircuitBreaker breaker = new GeminiCircuitBreaker();
+        ReflectionTestUtils.setField(breaker, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(breaker, "failureThreshold", 5);
+        ReflectionTestUtils.setField(breaker, "openDuration", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(breaker, "halfOpenProbes", 1);
+        ReflectionTestUtils.setField(breaker, "timeoutPercentile", 0.99);
+        ReflectionTestUtils.setField(breaker, "timeoutMultiplier", 2.0);
+        ReflectionTestUtils.setField(breaker, "minTimeout", Duration.ofSeconds(2));
+        ReflectionTestUtils.setField(breaker, "maxTimeout", Duration.ofSeconds(10));
+        breaker.init();
+        return breaker;
+    }
+
+    private void awaitRefillFailures(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (meterRegistry.counter("country.pool.refill.failures").count() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(meterRegistry.counter("country.pool.refill.failures").count()).isEqualTo(expected);
+    }
+
+    /**
+     * 指定した回数だけ国データを生成し、以降は生成に失敗するGeminiサービス
+     */
+    private static class StubGeminiService extends GeminiService {
+
+        private final AtomicInteger successes = new AtomicInteger();
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public String[] generateCountry() throws CountryGenerationException {
+            calls.incrementAndGet();
+            if (successes.getAndDecrement() <= 0) {
+                throw new CountryGenerationException("生成に失敗しました", null);
+            }
+            return JAPAN.clone();
+        }
+
+        @Override
+        public String[] generateRandomCountryAndFlag() {
+            return FALLBACK.clone();
+        }
+    }
+}
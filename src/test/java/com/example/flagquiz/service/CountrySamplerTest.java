@@ -0,0 +1,84 @@
+package com.example.flagquiz.service;
+
+import com.example.flagquiz.model.Country;
+import com.example.flagquiz.model.CountryCatalog;
+import com.example.flagquiz.model.PlayedCountries;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * CountrySampler - セッション内で同じ国を出題しないことと、全ての国を出題し終えた後のリセットの確認
+ */
+class CountrySamplerTest {
+
+    private final CountryCatalog catalog = CountryCatalog.getDefault();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private CountrySampler sampler;
+
+    @BeforeEach
+    void setUp() {
+        sampler = new CountrySampler();
+        ReflectionTestUtils.setField(sampler, "countryCatalog", catalog);
+        ReflectionTestUtils.setField(sampler, "meterRegistry", meterRegistry);
+        sampler.init();
+    }
+
+    @Test
+    void doesNotRepeatUntilEveryCountryIsPlayed() {
+        PlayedCountries played = sampler.newPlayedCountries();
+        Set<Country> seen = new HashSet<>();
+        Country previous = null;
+
+        for (int i = 0; i < catalog.size(); i++) {
+            previous = sampler.sample(played, previous);
+            assertThat(seen.add(previous)).as("%d回目に出題済みの国 %s を選んだ", i + 1, previous).isTrue();
+        }
+
+        assertThat(seen).hasSize(catalog.size());
+        assertThat(played.remaining()).isZero();
+        assertThat(meterRegistry.counter("country.sampler.resets").count()).isZero();
+    }
+
+    @Test
+    void startsNewCycleWithoutRepeatingLastCountry() {
+        PlayedCountries played = sampler.newPlayedCountries();
+        Country previous = null;
+        for (int i = 0; i < catalog.size(); i++) {
+            previous = sampler.sample(played, previous);
+        }
+
+        Country next = sampler.sample(played, previous);
+
+        assertThat(next).isNotEqualTo(previous);
+        assertThat(meterRegistry.counter("country.sampler.resets").count()).isEqualTo(1);
+        // 直前の国と新しく選んだ国のみ出題済み
+        assertThat(played.remaining()).isEqualTo(catalog.size() - 2);
+
+        // 新しい周回でも、残りの国を出題し終えるまで同じ国を選ばない
+        Set<Country> seen = new HashSet<>(Set.of(previous, next));
+        previous = next;
+        for (int i = 0; i < catalog.size() - 2; i++) {
+            previous = sampler.sample(played, previous);
+            assertThat(seen.add(previous)).isTrue();
+        }
+        assertThat(meterRegistry.counter("country.sampler.resets").count()).isEqualTo(1);
+    }
+
+    @Test
+    void keepsSessionsIndependent() {
+        PlayedCountries first = sampler.newPlayedCountries();
+        PlayedCountries second = sampler.newPlayedCountries();
+
+        sampler.sample(first, null);
+
+        assertThat(first.remaining()).isEqualTo(catalog.size() - 1);
+        assertThat(second.remaining()).isEqualTo(catalog.size());
+    }
+}
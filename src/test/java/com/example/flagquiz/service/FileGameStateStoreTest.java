@@ -0,0 +1,238 @@
+package com.example.flagquiz.service;
+
+import com.example.flagquiz.model.GameState;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.MappedByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * FileGameStateStore - 再起動時のログの読み直し・期限切れ・コンパクションの確認
+ */
+class FileGameStateStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private final List<FileGameStateStore> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeStores() throws Exception {
+        for (FileGameStateStore store : opened) {
+            store.close();
+        }
+    }
+
+    @Test
+    void replaysLatestStateAfterRestart() throws Exception {
+        FileGameStateStore store = open(Duration.ofMinutes(30));
+        store.save("a", game(1));
+        store.save("b", game(1));
+        store.save("a", game(2));
+        store.delete("b");
+        store.close();
+        opened.remove(store);
+
+        FileGameStateStore reopened = open(Duration.ofMinutes(30));
+        assertThat(reopened.load("a").getCurrentCountryEnglish()).isEqualTo("Country 2");
+        assertThat(reopened.load("b")).isNull();
+    }
+
+    @Test
+    void ignoresTruncatedRecord() throws Exception {
+        FileGameStateStore store = open(Duration.ofMinutes(30));
+        store.save("a", game(1));
+        store.save("b", game(2));
+        // 2件目のレコードの長さを書き込む前に停止した状態にする（2件は同じ大きさ）
+        int second = (int) ReflectionTestUtils.getField(store, "writePosition") / 2;
+        MappedByteBuffer buffer = (MappedByteBuffer) ReflectionTestUtils.getField(store, "buffer");
+        buffer.putInt(second, 0);
+        store.close();
+        opened.remove(store);
+
+        FileGameStateStore reopened = open(Duration.ofMinutes(30));
+        assertThat(reopened.load("a").getCurrentCountryEnglish()).isEqualTo("Country 1");
+        assertThat(reopened.load("b")).isNull();
+    }
+
+    @Test
+    void sweepsGamesThatExpireWithoutBeingLoaded() throws Exception {
+        FileGameStateStore store = open(Duration.ofMillis(50));
+        store.save("a", game(1));
+        assertThat(liveBytes(store)).isPositive();
+
+        Thread.sleep(100);
+        store.maintain();
+
+        assertThat(liveBytes(store)).isZero();
+        assertThat(store.load("a")).isNull();
+    }
+
+    @Test
+    void compactionKeepsOnlyLiveRecords() throws Exception {
+        FileGameStateStore store = open(Duration.ofMinutes(30));
+        for (int i = 0; i < 100; i++) {
+            store.save("a", game(i));
+        }
+        store.save("b", game(7));
+        store.save("c", game(8));
+        store.delete("c");
+        int before = writePosition(store);
+
+        store.compact();
+
+        assertThat(writePosition(store)).isLessThan(before / 10);
+        assertThat(liveBytes(store)).isEqualTo(writePosition(store));
+        assertThat(store.load("a").getCurrentCountryEnglish()).isEqualTo("Country 99");
+        assertThat(store.load("b").getCurrentCountryEnglish()).isEqualTo("Country 7");
+        assertThat(store.load("c")).isNull();
+
+        store.close();
+        opened.remove(store);
+        FileGameStateStore reopened = open(Duration.ofMinutes(30));
+        assertThat(reopened.load("a").getCurrentCountryEnglish()).isEqualTo("Country 99");
+        assertThat(reopened.load("b").getCurrentCountryEnglish()).isEqualTo("Country 7");
+        assertThat(reopened.load("c")).isNull();
+    }
+
+    @Test
+    void writesDuringCompactionAreKept() throws Exception {
+        FileGameStateStore store = open(Duration.ofMinutes(30));
+        int writers = 4;
+        int gamesPerWriter = 20;
+        int rounds = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int round = 0; round < rounds; round++) {
+                    for (int g = 0; g < gamesPerWriter; g++) {
+                        String gameId = writer + "-" + g;
+                        // 最後のラウンドで偶数のゲームは削除する
+                        if (round == rounds - 1 && g % 2 == 0) {
+                            store.delete(gameId);
+                        } else {
+                            store.save(gameId, game(round));
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        int compacted = 0;
+        while (futures.stream().anyMatch(future -> !future.isDone())) {
+            store.compact();
+            compacted++;
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(compacted).isPositive();
+
+        assertLatest(store, writers, gamesPerWriter, rounds);
+        store.close();
+        opened.remove(store);
+        assertLatest(open(Duration.ofMinutes(30)), writers, gamesPerWriter, rounds);
+    }
+
+    @Test
+    void concurrentUpdatesAreNotLost() throws Exception {
+        FileGameStateStore store = open(Duration.ofMinutes(30));
+        store.save("a", game(1));
+
+        int threads = 8;
+        int updatesPerThread = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < updatesPerThread; i++) {
+                    store.update("a", state -> {
+                        state.addLog("質問", "はい");
+                        return state;
+                    });
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertThat(store.load("a").getGameLog()).hasSize(threads * updatesPerThread);
+    }
+
+    @Test
+    void failedUpdateKeepsStoredState() {
+        FileGameStateStore store = open(Duration.ofMinutes(30));
+        store.save("a", game(1));
+
+        assertThatThrownBy(() -> store.update("a", state -> {
+            state.setQuestionsLeft(0);
+            throw new IllegalStateException("rejected");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(store.load("a").getQuestionsLeft()).isEqualTo(game(1).getQuestionsLeft());
+        assertThat(store.update("missing", state -> state)).isNull();
+    }
+
+    private static void assertLatest(FileGameStateStore store, int writers, int gamesPerWriter, int rounds) {
+        for (int w = 0; w < writers; w++) {
+            for (int g = 0; g < gamesPerWriter; g++) {
+                GameState state = store.load(w + "-" + g);
+                if (g % 2 == 0) {
+                    assertThat(state).as("%d-%d", w, g).isNull();
+                } else {
+                    assertThat(state.getCurrentCountryEnglish()).as("%d-%d", w, g).isEqualTo("Country " + (rounds - 1));
+                }
+            }
+        }
+    }
+
+    private FileGameStateStore open(Duration ttl) {
+        // バックグラウンドのコンパクションは起こさず、テストから明示的に呼び出す
+        FileGameStateStore store = new FileGameStateStore(new SimpleMeterRegistry(), ttl,
+            dir.resolve("games.log").toString(), DataSize.ofKilobytes(4), DataSize.ofGigabytes(1), Duration.ofHours(1));
+        opened.add(store);
+        return store;
+    }
+
+    private static GameState game(int version) {
+        return new GameState("Country " + version, "国" + version, "/flags/xx.png");
+    }
+
+    private static long liveBytes(FileGameStateStore store) {
+        return (long) ReflectionTestUtils.getField(store, "liveBytes");
+    }
+
+    private static int writePosition(FileGameStateStore store) {
+        return (int) ReflectionTestUtils.getField(store, "writePosition");
+    }
+}
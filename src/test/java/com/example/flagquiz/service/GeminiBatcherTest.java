@@ -0,0 +1,145 @@
+package com.example.flagquiz.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * GeminiBatcher - スタブサーバーに対するバッチの送信・回答の振り分け・個別呼び出しへの切り替えの確認
+ */
+class GeminiBatcherTest {
+
+    private static final String BATCH_MARKER = "\n### 依頼";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private GeminiStubServer server;
+    private GeminiClient client;
+    private GeminiBatcher batcher;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new GeminiStubServer();
+        client = server.newClient(meterRegistry);
+    }
+
+    @AfterEach
+    void stop() {
+        if (batcher != null) {
+            batcher.shutdown();
+        }
+        client.shutdown();
+        server.close();
+    }
+
+    @Test
+    void demultiplexesAnswersInRequestOrder() throws Exception {
+        server.respondWith(this::answerEach);
+        open(Duration.ofSeconds(10), 3);
+
+        List<CompletableFuture<String>> results = submit("質問A", "質問B", "質問C");
+
+        assertThat(results.get(0).get(5, TimeUnit.SECONDS)).isEqualTo("回答:質問A");
+        assertThat(results.get(1).get(5, TimeUnit.SECONDS)).isEqualTo("回答:質問B");
+        assertThat(results.get(2).get(5, TimeUnit.SECONDS)).isEqualTo("回答:質問C");
+        assertThat(server.prompts()).hasSize(1);
+        assertThat(meterRegistry.counter("gemini.batch.fallbacks").count()).isZero();
+    }
+
+    @Test
+    void resendsIndividuallyWhenReplyIsMalformed() throws Exception {
+        server.respondWith(prompt -> prompt.contains(BATCH_MARKER) ? "すみません、回答できません。" : "回答:" + prompt);
+        open(Duration.ofSeconds(10), 2);
+
+        assertFallback(submit("質問A", "質問B"));
+    }
+
+    @Test
+    void resendsIndividuallyWhenReplyIsShort() throws Exception {
+        server.respondWith(prompt -> prompt.contains(BATCH_MARKER) ? "```json\n[\"はい\"]\n```" : "回答:" + prompt);
+        open(Duration.ofSeconds(10), 2);
+
+        assertFallback(submit("質問A", "質問B"));
+    }
+
+    @Test
+    void flushesWhenWindowElapses() throws Exception {
+        server.respondWith(this::answerEach);
+        open(Duration.ofMillis(50), 16);
+
+        List<CompletableFuture<String>> results = submit("質問A", "質問B");
+
+        assertThat(results.get(0).get(5, TimeUnit.SECONDS)).isEqualTo("回答:質問A");
+        assertThat(results.get(1).get(5, TimeUnit.SECONDS)).isEqualTo("回答:質問B");
+        assertThat(server.prompts()).hasSize(1);
+    }
+
+    @Test
+    void flushesWithoutWaitingWhenBatchIsFull() throws Exception {
+        server.respondWith(this::answerEach);
+        // 待ち時間を長くし、上限に達した時点で送信されることを確認する
+        open(Duration.ofMinutes(1), 2);
+
+        List<CompletableFuture<String>> results = submit("質問A", "質問B", "質問C");
+
+        assertThat(results.get(0).get(5, TimeUnit.SECONDS)).isEqualTo("回答:質問A");
+        assertThat(results.get(1).get(5, TimeUnit.SECONDS)).isEqualTo("回答:質問B");
+        // 3件目は次のバッチの待ち時間が経過するまで送信しない
+        assertThat(results.get(2)).isNotDone();
+        assertThat(server.prompts()).hasSize(1);
+    }
+
+    private void assertFallback(List<CompletableFuture<String>> results) throws Exception {
+        assertThat(results.get(0).get(5, TimeUnit.SECONDS)).isEqualTo("回答:質問A");
+        assertThat(results.get(1).get(5, TimeUnit.SECONDS)).isEqualTo("回答:質問B");
+        assertThat(server.prompts()).hasSize(3);
+        assertThat(server.prompts().subList(1, 3)).containsExactlyInAnyOrder("質問A", "質問B");
+        assertThat(meterRegistry.counter("gemini.batch.fallbacks").count()).isEqualTo(1);
+    }
+
+    private List<CompletableFuture<String>> submit(String... prompts) {
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (String prompt : prompts) {
+            results.add(batcher.submit(prompt));
+        }
+        return results;
+    }
+
+    private void open(Duration window, int maxSize) {
+        batcher = new GeminiBatcher();
+        ReflectionTestUtils.setField(batcher, "geminiClient", client);
+        ReflectionTestUtils.setField(batcher, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(batcher, "enabled", true);
+        ReflectionTestUtils.setField(batcher, "window", window);
+        ReflectionTestUtils.setField(batcher, "maxSize", maxSize);
+        batcher.init();
+    }
+
+    /**
+     * まとめた依頼に、依頼の順番どおりのJSON配列で回答する（依頼ごとに「回答:」＋依頼文）
+     */
+    private String answerEach(String prompt) {
+        String[] sections = prompt.split(BATCH_MARKER);
+        List<String> answers = new ArrayList<>();
+        for (int i = 1; i < sections.length; i++) {
+            // 各節の1行目は依頼の番号
+            answers.add("回答:" + sections[i].substring(sections[i].indexOf('\n') + 1).strip());
+        }
+        try {
+            return "以下が回答です。\n" + objectMapper.writeValueAsString(answers);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.flagquiz.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * GeminiClient - 実行中の同じプロンプトの呼び出しの相乗り（coalescing）の確認
+ */
+class GeminiClientCoalescingTest {
+
+    private static final int CALLERS = 8;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private GeminiStubServer server;
+    private GeminiClient client;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new GeminiStubServer();
+        client = server.newClient(meterRegistry);
+    }
+
+    @AfterEach
+    void stop() {
+        client.shutdown();
+        server.close();
+    }
+
+    @Test
+    void concurrentCallsForSamePromptShareOneUpstreamCall() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        server.holdResponsesUntil(release);
+
+        CountDownLatch ready = new CountDownLatch(CALLERS);
+        CountDownLatch go = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+        List<Future<CompletableFuture<String>>> submitted = new ArrayList<>();
+        try {
+            for (int i = 0; i < CALLERS; i++) {
+                submitted.add(callers.submit(() -> {
+                    ready.countDown();
+                    go.await();
+                    return client.generateAsync("日本は島国ですか？");
+                }));
+            }
+            assertThat(ready.await(5, TimeUnit.SECONDS)).isTrue();
+            go.countDown();
+
+            // 上流の応答を保留したまま全員の呼び出しを受け付けてから、応答を返す
+            List<CompletableFuture<String>> results = new ArrayList<>();
+            for (Future<CompletableFuture<String>> future : submitted) {
+                results.add(future.get(5, TimeUnit.SECONDS));
+            }
+            release.countDown();
+
+            for (CompletableFuture<String> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("はい");
+            }
+        } finally {
+            release.countDown();
+            callers.shutdownNow();
+        }
+
+        assertThat(server.prompts()).hasSize(1);
+        assertThat(meterRegistry.counter("gemini.client.coalesced").count()).isEqualTo(CALLERS - 1);
+    }
+
+    @Test
+    void completedCallIsNotShared() throws Exception {
+        assertThat(client.generateAsync("日本は島国ですか？").get(5, TimeUnit.SECONDS)).isEqualTo("はい");
+        assertThat(client.generateAsync("日本は島国ですか？").get(5, TimeUnit.SECONDS)).isEqualTo("はい");
+
+        assertThat(server.prompts()).hasSize(2);
+        assertThat(meterRegistry.counter("gemini.client.coalesced").count()).isZero();
+    }
+}
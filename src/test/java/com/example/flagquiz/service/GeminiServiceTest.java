@@ -0,0 +1,104 @@
+package com.example.flagquiz.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * GeminiService - 検証と回答をまとめた呼び出し（gemini.question.mode=combined）の応答の扱いの確認
+ */
+class GeminiServiceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private GeminiStubServer server;
+    private GeminiClient client;
+    private GeminiService service;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new GeminiStubServer();
+        client = server.newClient(meterRegistry);
+
+        RequestTracer tracer = new RequestTracer();
+        ReflectionTestUtils.setField(tracer, "enabled", false);
+        GeminiMetrics metrics = new GeminiMetrics();
+        ReflectionTestUtils.setField(metrics, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(metrics, "tracer", tracer);
+
+        GeminiBatcher batcher = new GeminiBatcher();
+        ReflectionTestUtils.setField(batcher, "enabled", false);
+
+        QuestionCache questionCache = new QuestionCache();
+        ReflectionTestUtils.setField(questionCache, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(questionCache, "maxSize", 100L);
+        ReflectionTestUtils.setField(questionCache, "ttl", Duration.ofHours(1));
+        ReflectionTestUtils.setField(questionCache, "snapshotFile", "");
+        questionCache.init();
+
+        service = new GeminiService();
+        ReflectionTestUtils.setField(service, "geminiClient", client);
+        ReflectionTestUtils.setField(service, "geminiBatcher", batcher);
+        ReflectionTestUtils.setField(service, "questionMode", "combined");
+        ReflectionTestUtils.setField(service, "questionCache", questionCache);
+        ReflectionTestUtils.setField(service, "metrics", metrics);
+        ReflectionTestUtils.setField(service, "errorLogWindow", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(service, "meterRegistry", meterRegistry);
+        service.init();
+    }
+
+    @AfterEach
+    void stop() {
+        client.shutdown();
+        server.close();
+    }
+
+    @Test
+    void usesOneCallWhenCombinedReplyParses() throws Exception {
+        server.respondWith(prompt -> "```json\n{\"valid\": true, \"answer\": \"はい\"}\n```");
+
+        GeminiService.QuestionResult result = service.evaluateQuestion("寿司が有名ですか", "Japan").get(5, TimeUnit.SECONDS);
+
+        assertThat(result).isEqualTo(new GeminiService.QuestionResult(true, "はい"));
+        assertThat(server.prompts()).hasSize(1);
+        assertThat(outcomes("api")).isEqualTo(1);
+    }
+
+    @Test
+    void asksOnlyForTheAnswerWhenCombinedReplyIsMalformed() throws Exception {
+        server.respondWith(prompt -> prompt.contains("JSONのみで回答") ? "すみません、判定できません。" : "いいえ");
+
+        GeminiService.QuestionResult result = service.evaluateQuestion("砂漠がありますか", "Japan").get(5, TimeUnit.SECONDS);
+
+        assertThat(result).isEqualTo(new GeminiService.QuestionResult(true, "いいえ"));
+        // まとめた呼び出し＋回答のみの呼び出し（検証の呼び出しは行わない）
+        assertThat(server.prompts()).hasSize(2);
+        assertThat(server.prompts().get(1)).doesNotContain("条件を満たしているか");
+        assertThat(outcomes("invalid")).isEqualTo(1);
+        assertThat(outcomes("api")).isZero();
+    }
+
+    @Test
+    void rejectsQuestionNamingTheCountryWithoutAnotherCallWhenReplyIsMalformed() throws Exception {
+        server.respondWith(prompt -> "判定できません");
+
+        GeminiService.QuestionResult result = service.evaluateQuestion("Japanですか", "Japan").get(5, TimeUnit.SECONDS);
+
+        assertThat(result.valid()).isFalse();
+        assertThat(server.prompts()).hasSize(1);
+    }
+
+    private long outcomes(String outcome) {
+        var timer = meterRegistry.find("gemini.operation")
+            .tag("operation", "evaluateQuestion")
+            .tag("outcome", outcome)
+            .timer();
+        return timer == null ? 0 : timer.count();
+    }
+}
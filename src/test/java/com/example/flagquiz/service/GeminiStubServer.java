@@ -0,0 +1,144 @@
+package com.example.flagquiz.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+/**
+ * テスト用のGemini API（generateContent）のスタブサーバー
+ * 受け取ったプロンプトを記録し、応答関数の結果を応答テキストとして返す
+ */
+class GeminiStubServer implements AutoCloseable {
+
+    static final String MODEL = "test-model";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpServer server;
+    private final List<String> prompts = new CopyOnWriteArrayList<>();
+    private volatile UnaryOperator<String> responder = prompt -> "はい";
+    // 応答を返す前に待つラッチ（nullの場合は待たない）
+    private volatile CountDownLatch gate;
+
+    GeminiStubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/models/" + MODEL + ":generateContent", this::handle);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    /**
+     * 応答テキストを決める関数を設定
+     * @param responder プロンプト → 応答テキスト
+     */
+    void respondWith(UnaryOperator<String> responder) {
+        this.responder = responder;
+    }
+
+    /**
+     * 応答をラッチが開くまで保留する
+     * @param gate 応答を返す前に待つラッチ
+     */
+    void holdResponsesUntil(CountDownLatch gate) {
+        this.gate = gate;
+    }
+
+    /**
+     * 受け取ったプロンプト（受信順）
+     */
+    List<String> prompts() {
+        return prompts;
+    }
+
+    /**
+     * このサーバーに接続するGeminiClientを生成
+     * @param meterRegistry メトリクスの登録先
+     * @return 初期化済みのクライアント（サーキットブレーカー・メトリクスも初期化済み、レート制限は無効）
+     */
+    GeminiClient newClient(MeterRegistry meterRegistry) {
+        RequestTracer tracer = new RequestTracer();
+        ReflectionTestUtils.setField(tracer, "enabled", false);
+        GeminiMetrics metrics = new GeminiMetrics();
+        ReflectionTestUtils.setField(metrics, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(metrics, "tracer", tracer);
+
+        GeminiCircuitBreaker circuitBreaker = new GeminiCircuitBreaker();
+        ReflectionTestUtils.setField(circuitBreaker, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(circuitBreaker, "failureThreshold", 5);
+        ReflectionTestUtils.setField(circuitBreaker, "openDuration", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(circuitBreaker, "halfOpenProbes", 1);
+        ReflectionTestUtils.setField(circuitBreaker, "timeoutPercentile", 0.99);
+        ReflectionTestUtils.setField(circuitBreaker, "timeoutMultiplier", 2.0);
+        ReflectionTestUtils.setField(circuitBreaker, "minTimeout", Duration.ofSeconds(2));
+        ReflectionTestUtils.setField(circuitBreaker, "maxTimeout", Duration.ofSeconds(10));
+        circuitBreaker.init();
+
+        GeminiRateLimiter rateLimiter = new GeminiRateLimiter();
+        ReflectionTestUtils.setField(rateLimiter, "enabled", false);
+
+        GeminiClient client = new GeminiClient();
+        ReflectionTestUtils.setField(client, "circuitBreaker", circuitBreaker);
+        ReflectionTestUtils.setField(client, "rateLimiter", rateLimiter);
+        ReflectionTestUtils.setField(client, "metrics", metrics);
+        ReflectionTestUtils.setField(client, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(client, "apiKey", "test-key");
+        ReflectionTestUtils.setField(client, "model", MODEL);
+        ReflectionTestUtils.setField(client, "baseUrl",
+            "http://127.0.0.1:" + server.getAddress().getPort());
+        ReflectionTestUtils.setField(client, "maxInFlight", 8);
+        ReflectionTestUtils.setField(client, "maxQueued", 32);
+        ReflectionTestUtils.setField(client, "maxIdleConnections", 2);
+        ReflectionTestUtils.setField(client, "keepAlive", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(client, "http2", false);
+        ReflectionTestUtils.setField(client, "connectTimeout", Duration.ofSeconds(2));
+        ReflectionTestUtils.setField(client, "readTimeout", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(client, "coalesceEnabled", true);
+        client.init();
+        return client;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String prompt = objectMapper.readTree(exchange.getRequestBody())
+                .path("contents").path(0).path("parts").path(0).path("text").asText();
+            prompts.add(prompt);
+
+            CountDownLatch currentGate = gate;
+            if (currentGate != null && !currentGate.await(10, TimeUnit.SECONDS)) {
+                exchange.sendResponseHeaders(504, -1);
+                return;
+            }
+
+            Map<String, Object> body = Map.of("candidates", List.of(
+                Map.of("content", Map.of("parts", List.of(Map.of("text", responder.apply(prompt)))))));
+            byte[] json = objectMapper.writeValueAsBytes(body);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(200, json.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(json);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
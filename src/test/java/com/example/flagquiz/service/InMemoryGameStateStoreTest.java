@@ -0,0 +1,77 @@
+package com.example.flagquiz.service;
+
+import com.example.flagquiz.model.GameState;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * InMemoryGameStateStore - 同じゲームへの同時の更新の確認
+ */
+class InMemoryGameStateStoreTest {
+
+    private InMemoryGameStateStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new InMemoryGameStateStore(new SimpleMeterRegistry(), Duration.ofMinutes(30));
+    }
+
+    @Test
+    void concurrentUpdatesAreNotLost() throws Exception {
+        store.save("a", game());
+
+        int threads = 8;
+        int updatesPerThread = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < updatesPerThread; i++) {
+                    store.update("a", state -> {
+                        state.addLog("質問", "はい");
+                        return state;
+                    });
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertThat(store.load("a").getGameLog()).hasSize(threads * updatesPerThread);
+    }
+
+    @Test
+    void failedUpdateKeepsStoredState() {
+        store.save("a", game());
+
+        assertThatThrownBy(() -> store.update("a", state -> {
+            state.setQuestionsLeft(0);
+            throw new IllegalStateException("rejected");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(store.load("a").getQuestionsLeft()).isEqualTo(game().getQuestionsLeft());
+        assertThat(store.update("missing", state -> state)).isNull();
+    }
+
+    private static GameState game() {
+        return new GameState("France", "フランス", "/flags/fr.png");
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.flagquiz.service;
+
+import com.example.flagquiz.model.Country;
+import com.example.flagquiz.model.CountryCatalog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * QuestionRules - ローカルで回答する質問と、Gemini APIに回す質問の振り分けの確認
+ */
+class QuestionRulesTest {
+
+    private final CountryCatalog catalog = CountryCatalog.getDefault();
+    private QuestionRules rules;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        HintTable hintTable = new HintTable();
+        ReflectionTestUtils.setField(hintTable, "countryCatalog", catalog);
+        hintTable.init();
+        AnswerMatcher answerMatcher = new AnswerMatcher();
+        ReflectionTestUtils.setField(answerMatcher, "countryCatalog", catalog);
+        ReflectionTestUtils.setField(answerMatcher, "meterRegistry", meterRegistry);
+        answerMatcher.init();
+
+        rules = new QuestionRules();
+        ReflectionTestUtils.setField(rules, "countryCatalog", catalog);
+        ReflectionTestUtils.setField(rules, "hintTable", hintTable);
+        ReflectionTestUtils.setField(rules, "answerMatcher", answerMatcher);
+        ReflectionTestUtils.setField(rules, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(rules, "enabled", true);
+        rules.init();
+    }
+
+    @Test
+    void answersAttributeQuestionsLocally() {
+        assertThat(rules.answer("ヨーロッパの国ですか？", country("fr"))).isEqualTo("はい");
+        assertThat(rules.answer("内陸国ですか", country("fr"))).isEqualTo("いいえ");
+        assertThat(rules.answer("海に面していない国ですか", country("ch"))).isEqualTo("はい");
+        assertThat(rules.answer("国旗に赤と白はありますか", country("jp"))).isEqualTo("はい");
+        assertThat(rules.answer("人口は日本より少ないですか", country("fr"))).isEqualTo("はい");
+    }
+
+    @Test
+    void leavesAlternativesBetweenAnyConditionsToGemini() {
+        assertThat(rules.answer("ヨーロッパか内陸国ですか", country("ru"))).isNull();
+        assertThat(rules.answer("アジアまたはアフリカの国ですか", country("jp"))).isNull();
+        assertThat(rules.answer("国旗は赤か青ですか", country("jp"))).isNull();
+        assertThat(rules.answer("Is it in Europe or landlocked?", country("ru"))).isNull();
+    }
+
+    @Test
+    void leavesStrayKaToGemini() {
+        assertThat(rules.answer("アジアの国か、島国ですか", country("jp"))).isNull();
+    }
+
+    @Test
+    void leavesNegatedQuestionsToGemini() {
+        assertThat(rules.answer("海に面していませんか", country("fr"))).isNull();
+        assertThat(rules.answer("海に面していないですか", country("fr"))).isNull();
+        assertThat(rules.answer("内陸国ではないですか", country("ch"))).isNull();
+        assertThat(rules.answer("島国じゃないですか？", country("jp"))).isNull();
+    }
+
+    @Test
+    void leavesMidSentenceNegationToGemini() {
+        assertThat(rules.answer("島国ではないアジアの国ですか", country("jp"))).isNull();
+        assertThat(rules.answer("英語圏でもないヨーロッパの国ですか", country("fr"))).isNull();
+        assertThat(rules.answer("赤を使わない国旗ですか", country("fr"))).isNull();
+        // 条件そのものに含まれる否定は認識した条件として判定する
+        assertThat(rules.answer("海に面していないヨーロッパの国ですか", country("ch"))).isEqualTo("はい");
+    }
+
+    @Test
+    void leavesQuestionsWithLeftoverWordsToGemini() {
+        assertThat(rules.answer("ヨーロッパのものですか", country("fr"))).isNull();
+        assertThat(rules.answer("国旗に赤いものがありますか", country("jp"))).isNull();
+        assertThat(rules.answer("アジアの国ですよね", country("jp"))).isEqualTo("はい");
+    }
+
+    private Country country(String iso) {
+        return catalog.findByIso(iso);
+    }
+}